@@ -23,6 +23,9 @@ import static org.junit.Assert.assertEquals;
 public class GeofenceNotificationTest {
 
     private static final long TIMEOUT = 1000 * 5;
+    // Identifiers of the notifications posted by the tests.
+    private static final int NOTIFICATION_ID_ENTER = 1 << 1;
+    private static final int NOTIFICATION_ID_EXIT = 1 << 2;
 
     private Context mContext;
 
@@ -45,7 +48,7 @@ public class GeofenceNotificationTest {
     @Test
     public void testWithGeofenceEnter() {
         // Notify the result of geofence trigger
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_ENTER);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, NOTIFICATION_ID_ENTER);
 
         // Query
         UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
@@ -65,7 +68,7 @@ public class GeofenceNotificationTest {
     @Test
     public void testWithGeofenceExit() {
         // Notify the result of geofence trigger
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_EXIT);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, NOTIFICATION_ID_EXIT);
 
         // Query
         UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
@@ -85,8 +88,8 @@ public class GeofenceNotificationTest {
     @Test
     public void testWithBoth() {
         // Notify the result of geofence trigger
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_ENTER);
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_EXIT);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, NOTIFICATION_ID_ENTER);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, NOTIFICATION_ID_EXIT);
 
         UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
         device.openNotification();
@@ -111,12 +114,12 @@ public class GeofenceNotificationTest {
     @Test
     public void testWithBothAndOutOfOrder() {
         // Notify the result of geofence trigger
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_ENTER);
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_EXIT);
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_ENTER);
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_EXIT);
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_EXIT);
-        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, GeofenceNotification.NOTIFICATION_ID_GEOFENCE_ENTER);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, NOTIFICATION_ID_ENTER);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, NOTIFICATION_ID_EXIT);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, NOTIFICATION_ID_ENTER);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, NOTIFICATION_ID_EXIT);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceExit, mNotificationMessageGeofenceExit, NOTIFICATION_ID_EXIT);
+        GeofenceNotification.notify(mContext, mNotificationTitleGeofenceEnter, mNotificationMessageGeofenceEnter, NOTIFICATION_ID_ENTER);
 
         UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
         device.openNotification();
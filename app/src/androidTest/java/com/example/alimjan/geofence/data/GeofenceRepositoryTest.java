@@ -0,0 +1,126 @@
+package com.example.alimjan.geofence.data;
+
+import android.Manifest;
+import android.content.Context;
+
+import com.example.alimjan.geofence.db.GeofenceDao;
+import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.rule.GrantPermissionRule;
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented test for {@link GeofenceRepository}, runs against an in-memory database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeofenceRepositoryTest {
+
+    @Rule
+    public GrantPermissionRule mPermissionRule = GrantPermissionRule.grant(Manifest.permission.ACCESS_FINE_LOCATION);
+
+    private GeofenceDataBase mDataBase;
+    private GeofenceDao mDao;
+    private GeofenceRepository mRepository;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        this.mDataBase = Room.inMemoryDatabaseBuilder(context, GeofenceDataBase.class).build();
+        this.mDao = mDataBase.getDao();
+        this.mRepository = new GeofenceRepository(context, mDao);
+    }
+
+    @After
+    public void tearDown() {
+        mRepository.onCleared();
+        mDataBase.close();
+    }
+
+    @Test
+    public void addGeofencesAsync_insertsInBatchesAndRegistersToEngine() throws InterruptedException {
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            geofences.add(new Geofence("Place " + i, 31 + i * 1e-4, 121, 0));
+        }
+        List<Integer> progress = new ArrayList<>();
+        List<List<Long>> result = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        mRepository.addGeofencesAsync(geofences, (completed, total) -> progress.add(completed), new OnAsyncTaskCallback<List<Long>>() {
+            @Override
+            public void onSuccess(@NonNull List<Long> data) {
+                result.add(data);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(@NonNull Throwable throwable) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        // One progress report per batch, callbacks run on main thread in order
+        assertEquals(Arrays.asList(1000, 2000, 2500), progress);
+        assertEquals(1, result.size());
+        assertEquals(2500, result.get(0).size());
+        assertEquals(2500, mDao.count());
+        GeofenceEngine engine = GeofenceEngine.getInstance();
+        for (int i = 0; i < geofences.size(); i++) {
+            long id = result.get(0).get(i);
+            assertEquals(id, geofences.get(i).getId());
+            assertNotNull(engine.getIndex().get(id));
+            // Expire time is set before insert
+            assertTrue(mDao.getGeofence(id).getExpireTime() > System.currentTimeMillis());
+        }
+        for (long id : result.get(0)) {
+            engine.remove(id);
+        }
+        assertNull(engine.getIndex().get(result.get(0).get(0)));
+    }
+
+    @Test
+    public void geofenceChanges_publishedByWrites() throws InterruptedException {
+        long id = mDao.insert(new Geofence("The Bund", 31.2397, 121.4998, 0));
+        List<GeofenceChangeSet> changes = new ArrayList<>();
+        CountDownLatch updated = new CountDownLatch(2);
+        Disposable subscription = mRepository.getGeofenceChanges().subscribe(change -> {
+            changes.add(change);
+            updated.countDown();
+        });
+
+        // First change set is the table, the update is only the updated row
+        Geofence geofence = mDao.getGeofence(id);
+        geofence.setTriggered(true);
+        mRepository.updateGeofenceAsync(geofence);
+        assertTrue(updated.await(10, TimeUnit.SECONDS));
+        subscription.dispose();
+        assertEquals(1, changes.get(0).getAdded().size());
+        assertEquals(1, changes.get(changes.size() - 1).getUpdated().size());
+        assertTrue(changes.get(changes.size() - 1).getUpdated().get(0).isTriggered());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.alimjan.geofence.db;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Instrumented test for {@link GeofenceDao}, runs against an in-memory database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeofenceDaoTest {
+
+    private GeofenceDataBase mDataBase;
+    private GeofenceDao mDao;
+
+    @Before
+    public void setUp() {
+        this.mDataBase = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), GeofenceDataBase.class)
+                .allowMainThreadQueries()
+                .build();
+        this.mDao = mDataBase.getDao();
+    }
+
+    @After
+    public void tearDown() {
+        mDataBase.close();
+    }
+
+    @Test
+    public void getNearestGeofence_withinTolerance() {
+        long bund = mDao.insert(new Geofence("The Bund", 31.2397, 121.4998, 0));
+        long museum = mDao.insert(new Geofence("Museum", 31.2397 + GeoMath.latitudeDelta(30), 121.4998, 0));
+
+        // Drifted coordinate, as read back from a map annotation
+        assertEquals(bund, mDao.getNearestGeofence(31.2397 + GeoMath.latitudeDelta(5), 121.4998, 20).getId());
+        assertEquals(museum, mDao.getNearestGeofence(31.2397 + GeoMath.latitudeDelta(20), 121.4998, 20).getId());
+        // Longitude tolerance is scaled by latitude
+        assertEquals(bund, mDao.getNearestGeofence(31.2397, 121.4998 - GeoMath.longitudeDelta(31.2397, 15), 20).getId());
+        assertNull(mDao.getNearestGeofence(31.2397 - GeoMath.latitudeDelta(25), 121.4998, 20));
+        assertNull(mDao.getNearestGeofence(0, 0, 20));
+    }
+
+    @Test
+    public void getNearestGeofence_acrossAntimeridian() {
+        long east = mDao.insert(new Geofence("East", -17, 179.9999, 0));
+        long west = mDao.insert(new Geofence("West", -16.99, -179.9999, 0));
+
+        // About 20m apart on either side of the antimeridian, the tolerance box wraps around it
+        assertEquals(east, mDao.getNearestGeofence(-17, -179.9999, 30).getId());
+        assertEquals(west, mDao.getNearestGeofence(-16.99, 179.9999, 30).getId());
+        assertNull(mDao.getNearestGeofence(-17, -179.9999, 10));
+    }
+
+    @Test
+    public void getGeofence_matchesE7Coordinate() {
+        long id = mDao.insert(new Geofence("The Bund", 31.2397, 121.4998, 0));
+
+        assertEquals(id, mDao.getGeofence(31.2397, 121.4998).getId());
+        assertEquals(id, mDao.getGeofence(31.23970000001, 121.49979999999).getId());
+        assertNull(mDao.getGeofence(31.2398, 121.4998));
+
+        List<Geofence> geofences = mDao.getGeofencesInRangeE7(GeoMath.toE7(31.2), GeoMath.toE7(121.4),
+                GeoMath.toE7(31.3), GeoMath.toE7(121.5));
+        assertEquals(1, geofences.size());
+        assertEquals(GeoMath.toE7(121.4998), geofences.get(0).getLongitudeE7());
+    }
+
+    @Test
+    public void insertAllInBatches_reportsEveryBatch() {
+        long existing = mDao.insert(new Geofence("Existing", 10, 10, 0));
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            geofences.add(new Geofence("Place " + i, 31 + i * 1e-4, 121, 0));
+        }
+        // Conflicting id is ignored, the rest is still inserted
+        Geofence conflicting = new Geofence("Conflicting", 20, 20, 0);
+        conflicting.setId(existing);
+        geofences.set(1500, conflicting);
+
+        List<Integer> progress = new ArrayList<>();
+        List<Long> ids = mDao.insertAllInBatches(geofences, 1000, progress::add);
+
+        assertEquals(Arrays.asList(1000, 2000, 2500), progress);
+        assertEquals(2500, ids.size());
+        assertEquals(-1, (long) ids.get(1500));
+        assertEquals(2500, mDao.count());
+        assertEquals("Place 2499", mDao.getGeofence(ids.get(2499)).getAddress());
+        assertEquals("Existing", mDao.getGeofence(existing).getAddress());
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.alimjan.geofence.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.Geohash;
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumented test for {@link GeofenceDataBase} migrations. A database is created with the
+ * geofence table of the first version and migrated step by step, schema isn't exported so the
+ * first version is written out here.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeofenceDataBaseMigrationTest {
+    private static final String NAME = "migration-test.db";
+    // Geofence table of the first version, as Room created it.
+    private static final String GEOFENCE_V1 = "CREATE TABLE IF NOT EXISTS geofence (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+            + "address TEXT, latitude REAL NOT NULL, longitude REAL NOT NULL, expireTime INTEGER NOT NULL, isTriggered INTEGER NOT NULL)";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        this.mContext = ApplicationProvider.getApplicationContext();
+        mContext.deleteDatabase(NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(NAME);
+    }
+
+    @Test
+    public void migration1To2_backfillsGeohash() {
+        SupportSQLiteDatabase database = createVersion1();
+        GeofenceDataBase.MIGRATION_1_2.migrate(database);
+
+        try (Cursor cursor = database.query("SELECT geohash FROM geofence ORDER BY id")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(Geohash.encode(31.2397, 121.4998, Geohash.PRECISION), cursor.getString(0));
+            assertTrue(cursor.moveToNext());
+            assertEquals(Geohash.encode(-33.8568, 151.2153, Geohash.PRECISION), cursor.getString(0));
+        }
+        // Prefix queries are served by the new index
+        try (Cursor cursor = database.query("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'geofence'")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals("index_geofence_geohash", cursor.getString(0));
+        }
+        database.close();
+    }
+
+    @Test
+    public void migration2To3_backfillsE7Coordinates() {
+        SupportSQLiteDatabase database = createVersion1();
+        GeofenceDataBase.MIGRATION_1_2.migrate(database);
+        GeofenceDataBase.MIGRATION_2_3.migrate(database);
+
+        try (Cursor cursor = database.query("SELECT latitudeE7, longitudeE7 FROM geofence ORDER BY id")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(GeoMath.toE7(31.2397), cursor.getInt(0));
+            assertEquals(GeoMath.toE7(121.4998), cursor.getInt(1));
+            assertTrue(cursor.moveToNext());
+            assertEquals(GeoMath.toE7(-33.8568), cursor.getInt(0));
+            assertEquals(GeoMath.toE7(151.2153), cursor.getInt(1));
+        }
+        // Exact coordinate lookup is an index seek
+        try (Cursor cursor = database.query("SELECT id FROM geofence WHERE latitudeE7 = ? AND longitudeE7 = ?",
+                new Object[]{GeoMath.toE7(-33.8568), GeoMath.toE7(151.2153)})) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(2, cursor.getLong(0));
+        }
+        database.close();
+    }
+
+    @Test
+    public void migration5To6_createsTransitionTables() {
+        SupportSQLiteDatabase database = createVersion1();
+        GeofenceDataBase.MIGRATION_1_2.migrate(database);
+        GeofenceDataBase.MIGRATION_2_3.migrate(database);
+        GeofenceDataBase.MIGRATION_3_4.migrate(database);
+        GeofenceDataBase.MIGRATION_4_5.migrate(database);
+        GeofenceDataBase.MIGRATION_5_6.migrate(database);
+
+        database.execSQL("INSERT INTO transition_event (geofenceId, direction, time, accuracy) VALUES (1, 1, 1000, 10)");
+        database.execSQL("INSERT INTO transition_daily (day, geofenceId, enters, exits) VALUES (0, 1, 2, 1)");
+        try (Cursor cursor = database.query("SELECT geofenceId, direction, time FROM transition_event")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(1, cursor.getLong(0));
+            assertEquals(1, cursor.getInt(1));
+            assertEquals(1000, cursor.getLong(2));
+        }
+        // Compaction looks events up by time, statistics by geofence
+        try (Cursor cursor = database.query("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'transition_event' ORDER BY name")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals("index_transition_event_geofenceId", cursor.getString(0));
+            assertTrue(cursor.moveToNext());
+            assertEquals("index_transition_event_time", cursor.getString(0));
+        }
+        // Daily counts are keyed by day and geofence
+        try {
+            database.execSQL("INSERT INTO transition_daily (day, geofenceId, enters, exits) VALUES (0, 1, 0, 0)");
+            fail();
+        } catch (SQLiteConstraintException expected) {
+            // Primary key holds
+        }
+        database.close();
+    }
+
+    @Test
+    public void allMigrations_matchEntities() {
+        createVersion1().close();
+
+        // Room validates migrated schema against entities on open
+        GeofenceDataBase dataBase = Room.databaseBuilder(mContext, GeofenceDataBase.class, NAME)
+                .addMigrations(GeofenceDataBase.MIGRATION_1_2, GeofenceDataBase.MIGRATION_2_3, GeofenceDataBase.MIGRATION_3_4,
+                        GeofenceDataBase.MIGRATION_4_5, GeofenceDataBase.MIGRATION_5_6, GeofenceDataBase.MIGRATION_6_7)
+                .allowMainThreadQueries()
+                .build();
+        List<Geofence> geofences = dataBase.getDao().getGeofences();
+        assertEquals(2, geofences.size());
+        assertEquals(Geohash.encode(31.2397, 121.4998, Geohash.PRECISION), geofences.get(0).getGeohash());
+        assertEquals(GeoMath.toE7(151.2153), geofences.get(1).getLongitudeE7());
+        assertTrue(dataBase.getStateDao().getStates().isEmpty());
+        dataBase.close();
+    }
+
+    /**
+     * Creates a database of the first version holding two geofences.
+     */
+    private SupportSQLiteDatabase createVersion1() {
+        SupportSQLiteOpenHelper.Configuration configuration = SupportSQLiteOpenHelper.Configuration.builder(mContext)
+                .name(NAME)
+                .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase database) {
+                        database.execSQL(GEOFENCE_V1);
+                    }
+
+                    @Override
+                    public void onUpgrade(@NonNull SupportSQLiteDatabase database, int oldVersion, int newVersion) {
+                    }
+                })
+                .build();
+        SupportSQLiteDatabase database = new FrameworkSQLiteOpenHelperFactory().create(configuration).getWritableDatabase();
+        database.execSQL("INSERT INTO geofence (address, latitude, longitude, expireTime, isTriggered) VALUES ('The Bund', 31.2397, 121.4998, 0, 0)");
+        database.execSQL("INSERT INTO geofence (address, latitude, longitude, expireTime, isTriggered) VALUES ('Opera House', -33.8568, 151.2153, 0, 1)");
+        return database;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.alimjan.geofence;
 
+import com.example.alimjan.geofence.service.LocationUpdates;
 import com.mapbox.mapboxsdk.Mapbox;
 
 import timber.log.Timber;
@@ -13,5 +14,8 @@ public class Application extends android.app.Application {
 
         // Initialize Timber
         Timber.plant(new Timber.DebugTree());
+
+        // Location request of an earlier process may be gone, for example after a force stop
+        LocationUpdates.restore(this, null);
     }
 }
@@ -0,0 +1,391 @@
+package com.example.alimjan.geofence.data;
+
+import com.example.alimjan.geofence.model.Geofence;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A streaming geofence importer for CSV and GeoJSON files. Records are parsed one at a time and
+ * handed to a {@link Sink} in fixed size chunks, so memory use stays constant regardless of file
+ * size. The chunk list is reused, a sink must not keep a reference to it.
+ * <p>
+ * CSV records are {@code address,latitude,longitude,radius,expireTime} with quoted fields and empty
+ * radius or expire time. A first record naming latitude and longitude columns, for example
+ * {@code name,lat,lng}, is a header, columns are matched by position either way. GeoJSON has to be
+ * a FeatureCollection of Point features with optional {@code address} (or {@code name}),
+ * {@code radius} and {@code expireTime} properties. Records that can't be parsed are skipped and
+ * counted.
+ */
+public class GeofenceImporter {
+    // Default number of geofences handed to the sink at once.
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    // Names of latitude and longitude columns of a CSV header, lower case.
+    private static final List<String> LATITUDE_COLUMNS = Arrays.asList("latitude", "lat");
+    private static final List<String> LONGITUDE_COLUMNS = Arrays.asList("longitude", "lon", "lng", "long");
+
+    /**
+     * Supported file formats.
+     */
+    public enum Format {
+        CSV,
+        GEOJSON
+    }
+
+    /**
+     * Receives parsed geofences chunk by chunk.
+     */
+    public interface Sink {
+
+        /**
+         * @param chunk    Parsed geofences, the list is reused after this call returns.
+         * @param imported Number of geofences imported so far including this chunk.
+         */
+        void accept(@NonNull List<Geofence> chunk, int imported) throws Exception;
+    }
+
+    private final int mChunkSize;
+    private final Sink mSink;
+    private final List<Geofence> mChunk;
+    private int mImported;
+    private int mSkipped;
+    private long mPeakHeap;
+
+    public GeofenceImporter(int chunkSize, @NonNull Sink sink) {
+        this.mChunkSize = chunkSize;
+        this.mSink = sink;
+        this.mChunk = new ArrayList<>(chunkSize);
+    }
+
+    /**
+     * Imports all records from a reader, reader is not closed.
+     *
+     * @return A throughput report of the import.
+     */
+    @NonNull
+    public Report importFrom(@NonNull Reader reader, @NonNull Format format) throws Exception {
+        long start = System.nanoTime();
+        mImported = 0;
+        mSkipped = 0;
+        mPeakHeap = usedHeap();
+        if (format == Format.CSV) {
+            importCsv(reader);
+        } else {
+            importGeoJson(reader);
+        }
+        flush();
+        return new Report(mImported, mSkipped, (System.nanoTime() - start) / 1000000, mPeakHeap);
+    }
+
+    private void importCsv(Reader reader) throws Exception {
+        CsvParser parser = new CsvParser(reader);
+        List<String> fields = new ArrayList<>(5);
+        boolean first = true;
+        while (parser.next(fields)) {
+            if (first) {
+                first = false;
+                if (isHeader(fields)) {
+                    continue;
+                }
+            }
+            Geofence geofence = null;
+            if (fields.size() >= 3) {
+                try {
+                    geofence = new Geofence(fields.get(0), Double.parseDouble(fields.get(1).trim()),
+                            Double.parseDouble(fields.get(2).trim()), 0);
+                    if (fields.size() > 3 && !fields.get(3).trim().isEmpty()) {
+                        geofence.setRadius(Double.parseDouble(fields.get(3).trim()));
+                    }
+                    if (fields.size() > 4 && !fields.get(4).trim().isEmpty()) {
+                        geofence.setExpireTime(Long.parseLong(fields.get(4).trim()));
+                    }
+                } catch (NumberFormatException e) {
+                    geofence = null;
+                }
+            }
+            if (geofence != null) {
+                add(geofence);
+            } else {
+                mSkipped++;
+            }
+        }
+    }
+
+    /**
+     * Returns true if a record names latitude and longitude columns.
+     */
+    private static boolean isHeader(List<String> fields) {
+        return fields.size() >= 3 && LATITUDE_COLUMNS.contains(fields.get(1).trim().toLowerCase(Locale.US))
+                && LONGITUDE_COLUMNS.contains(fields.get(2).trim().toLowerCase(Locale.US));
+    }
+
+    private void importGeoJson(Reader reader) throws Exception {
+        JsonReader json = new JsonReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            if ("features".equals(json.nextName())) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    Geofence geofence = readFeature(json);
+                    if (geofence != null) {
+                        add(geofence);
+                    } else {
+                        mSkipped++;
+                    }
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Reads a feature object, returns null if it is not a valid point feature.
+     */
+    private static Geofence readFeature(JsonReader json) throws IOException {
+        double[] coordinates = null;
+        String address = null;
+        double radius = Geofence.DEFAULT_RADIUS;
+        long expireTime = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("geometry".equals(name) && json.peek() == JsonToken.BEGIN_OBJECT) {
+                coordinates = readPoint(json);
+            } else if ("properties".equals(name) && json.peek() == JsonToken.BEGIN_OBJECT) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    String property = json.nextName();
+                    JsonToken token = json.peek();
+                    if (("address".equals(property) || ("name".equals(property) && address == null))
+                            && token == JsonToken.STRING) {
+                        address = json.nextString();
+                    } else if ("radius".equals(property) && token == JsonToken.NUMBER) {
+                        radius = json.nextDouble();
+                    } else if (("expireTime".equals(property) || "expiry".equals(property)) && token == JsonToken.NUMBER) {
+                        expireTime = json.nextLong();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (coordinates == null) {
+            return null;
+        }
+        Geofence geofence = new Geofence(address, coordinates[1], coordinates[0], expireTime);
+        geofence.setRadius(radius);
+        return geofence;
+    }
+
+    /**
+     * Reads a geometry object, returns longitude and latitude if it is a point.
+     */
+    private static double[] readPoint(JsonReader json) throws IOException {
+        String type = null;
+        double[] coordinates = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("type".equals(name) && json.peek() == JsonToken.STRING) {
+                type = json.nextString();
+            } else if ("coordinates".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                if (json.hasNext() && json.peek() == JsonToken.NUMBER) {
+                    double longitude = json.nextDouble();
+                    if (json.hasNext() && json.peek() == JsonToken.NUMBER) {
+                        coordinates = new double[]{longitude, json.nextDouble()};
+                    }
+                }
+                while (json.hasNext()) {
+                    json.skipValue();
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return "Point".equals(type) ? coordinates : null;
+    }
+
+    private void add(Geofence geofence) throws Exception {
+        if (geofence.getLatitude() < -90 || geofence.getLatitude() > 90
+                || geofence.getLongitude() < -180 || geofence.getLongitude() > 180 || geofence.getRadius() <= 0) {
+            mSkipped++;
+            return;
+        }
+        mChunk.add(geofence);
+        if (mChunk.size() == mChunkSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws Exception {
+        if (!mChunk.isEmpty()) {
+            mImported += mChunk.size();
+            mSink.accept(mChunk, mImported);
+            mChunk.clear();
+            mPeakHeap = Math.max(mPeakHeap, usedHeap());
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A minimal RFC 4180 CSV record reader, quoted fields may contain separators, escaped quotes
+     * and line breaks.
+     */
+    private static final class CsvParser {
+        private final Reader mReader;
+        private final StringBuilder mField = new StringBuilder();
+        private final char[] mBuffer = new char[8192];
+        private int mPosition;
+        private int mLimit;
+
+        CsvParser(Reader reader) {
+            this.mReader = reader;
+        }
+
+        /**
+         * Reads next non empty record into fields.
+         *
+         * @return False at the end of input.
+         */
+        boolean next(List<String> fields) throws IOException {
+            while (true) {
+                fields.clear();
+                mField.setLength(0);
+                boolean quoted = false;
+                boolean any = false;
+                int c;
+                while ((c = read()) != -1) {
+                    any = true;
+                    if (quoted) {
+                        if (c == '"') {
+                            if (peek() == '"') {
+                                read();
+                                mField.append('"');
+                            } else {
+                                quoted = false;
+                            }
+                        } else {
+                            mField.append((char) c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(mField.toString());
+                        mField.setLength(0);
+                    } else if (c == '\n' || c == '\r') {
+                        if (c == '\r' && peek() == '\n') {
+                            read();
+                        }
+                        break;
+                    } else {
+                        mField.append((char) c);
+                    }
+                }
+                if (!any) {
+                    return false;
+                }
+                fields.add(mField.toString());
+                // Skip blank lines
+                if (fields.size() > 1 || !fields.get(0).trim().isEmpty()) {
+                    return true;
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (mPosition == mLimit && !fill()) {
+                return -1;
+            }
+            return mBuffer[mPosition++];
+        }
+
+        private int peek() throws IOException {
+            if (mPosition == mLimit && !fill()) {
+                return -1;
+            }
+            return mBuffer[mPosition];
+        }
+
+        private boolean fill() throws IOException {
+            mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A throughput report of an import.
+     */
+    public static class Report {
+        private final int imported;
+        private final int skipped;
+        private final long elapsedMillis;
+        private final long peakHeapBytes;
+
+        Report(int imported, int skipped, long elapsedMillis, long peakHeapBytes) {
+            this.imported = imported;
+            this.skipped = skipped;
+            this.elapsedMillis = elapsedMillis;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns highest used heap sampled between chunks, includes everything else living in the
+         * heap so it is an upper bound of importer memory use.
+         */
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis > 0 ? imported * 1000.0 / elapsedMillis : imported;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Report {imported = '%d', skipped = '%d', elapsed = '%dms', rows/sec = '%.0f', peak heap = '%.1fMB'}",
+                    imported, skipped, elapsedMillis, getRowsPerSecond(), peakHeapBytes / 1024.0 / 1024.0);
+        }
+    }
+}
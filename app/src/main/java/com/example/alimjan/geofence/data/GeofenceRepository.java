@@ -5,33 +5,61 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.location.LocationManager;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.room.EmptyResultSetException;
 
 import com.example.alimjan.geofence.R;
 import com.example.alimjan.geofence.db.GeofenceDao;
+import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.geo.BoundingBox;
+import com.example.alimjan.geofence.geo.ClusterIndex;
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.Geohash;
+import com.example.alimjan.geofence.geocode.CachedReverseGeocoder;
+import com.example.alimjan.geofence.geocode.FallbackReverseGeocoder;
+import com.example.alimjan.geofence.geocode.GeocodeRequestCoalescer;
+import com.example.alimjan.geofence.geocode.MapboxReverseGeocoder;
+import com.example.alimjan.geofence.geocode.OfflineReverseGeocoder;
+import com.example.alimjan.geofence.geocode.ReverseGeocoder;
 import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+import com.example.alimjan.geofence.model.GeofenceState;
 import com.example.alimjan.geofence.model.Place;
 import com.example.alimjan.geofence.model.Point;
 import com.example.alimjan.geofence.service.GeofenceTransitionsService;
-import com.mapbox.api.geocoding.v5.GeocodingCriteria;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
-import com.mapbox.api.geocoding.v5.models.CarmenFeature;
-import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
-import com.mapbox.core.exceptions.ServicesException;
+import com.example.alimjan.geofence.service.LocationUpdates;
 
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.processors.UnicastProcessor;
 import io.reactivex.schedulers.Schedulers;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import timber.log.Timber;
 
 import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
@@ -43,11 +71,32 @@ import static android.Manifest.permission.ACCESS_FINE_LOCATION;
 public class GeofenceRepository {
     // Geofence alert expire time.
     private static final long EXPIRATION_TIME = 1000 * 60 * 60 * 24 * 7;// A week
-    private static final int GEOFENCE_RADIUS = 200; // 200 meters in radius.
+    // Number of geofences inserted and registered at once by a bulk add.
+    private static final int BATCH_SIZE = 1000;
+    // Maximum number of geohash cells scanned for a viewport query.
+    private static final int MAX_VIEWPORT_CELLS = 32;
+    // Delay before a failed engine sync subscribes again.
+    private static final long ENGINE_SYNC_RETRY_DELAY = 5000; // 5 seconds
+
+    // Gazetteer asset used by offline reverse geocoder.
+    private static final String GAZETTEER_ASSET = "gazetteer.tsv";
+
+    // Reverse geocoding cache shared by every repository.
+    private static CachedReverseGeocoder GEOCODE_CACHE;
+    // Reverse geocoder shared by every repository, cached online geocoder combined with offline one.
+    private static ReverseGeocoder GEOCODER;
+    // Process wide subscription that applies geofence table changes to the engine.
+    private static Disposable ENGINE_SYNC;
+    // Changes published by writes to geofence table.
+    private static final FlowableProcessor<GeofenceChangeSet> WRITES = PublishProcessor.<GeofenceChangeSet>create().toSerialized();
 
     private Context mContext;
     // Dao for database access.
     private GeofenceDao mDao;
+    // Two-tier cache in front of geocoding api.
+    private CachedReverseGeocoder mGeocodeCache;
+    // Debounces selected points and cancels superseded lookups.
+    private GeocodeRequestCoalescer mPlaceRequests;
     // A place retrieved from geocoding api
     private MutableLiveData<Place> mPlace = new MutableLiveData<>();
     // Includes all the Rx disposable.
@@ -57,6 +106,52 @@ public class GeofenceRepository {
         this.mCompositeDisposable = new CompositeDisposable();
         this.mContext = context;
         this.mDao = mDao;
+        this.mGeocodeCache = getGeocodeCache(context);
+        this.mPlaceRequests = new GeocodeRequestCoalescer(getGeocoder(context), GeocodeRequestCoalescer.DEFAULT_DEBOUNCE, Schedulers.io(), place -> {
+            // Show coordinate while there is no place name.
+            if (place.getAddress() == null) {
+                place.setAddress(String.format(mContext.getString(R.string.address_in_coordinates_format),
+                        place.getPoint().getLatitude(), place.getPoint().getLongitude()));
+            }
+            this.mPlace.postValue(place);
+            Timber.d("getPlace: %s %s", this.mPlaceRequests.getStats(), this.mGeocodeCache.getStats());
+        });
+        syncGeofenceEngine();
+    }
+
+    /**
+     * Keeps {@link GeofenceEngine} in sync with geofence table for the lifetime of the process,
+     * first change set of a subscription reloads the engine and later ones are applied as they
+     * are, so every write that publishes its changes, for example an update, reaches the engine. A
+     * failed sync subscribes again after a delay, the reload catches up on what it missed.
+     */
+    private void syncGeofenceEngine() {
+        synchronized (GeofenceRepository.class) {
+            if (ENGINE_SYNC == null) {
+                ENGINE_SYNC = Flowable.defer(() -> {
+                    boolean[] first = {true};
+                    return getGeofenceChanges().doOnNext(changes -> {
+                        GeofenceEngine engine = GeofenceEngine.getInstance();
+                        if (first[0]) {
+                            // First change set has every geofence as added, inside state is kept
+                            // in memory once loaded and read from the database before that
+                            engine.setGeofences(changes.getAdded(), engine.isLoaded()
+                                    ? Collections.<GeofenceState>emptyList() : GeofenceDataBase.getInstance(mContext).getStateDao().getStates());
+                            first[0] = false;
+                        } else {
+                            engine.apply(changes);
+                        }
+                    });
+                }).retryWhen(errors -> errors.flatMap(error -> {
+                    Timber.e(error, "Geofence engine sync failed, retrying");
+                    return Flowable.timer(ENGINE_SYNC_RETRY_DELAY, TimeUnit.MILLISECONDS);
+                })).subscribe(
+                        changes -> {
+                        },
+                        Timber::e
+                );
+            }
+        }
     }
 
     /**
@@ -68,6 +163,66 @@ public class GeofenceRepository {
         return this.mDao.getGeofencesObserver();
     }
 
+    /**
+     * Returns changes of geofence table. First change set has every geofence as added, even when
+     * the table is empty, and is the only one that reads the whole table. Later ones are published
+     * by the writes themselves through {@link #publishChanges}, so they cost as much as the write
+     * and are never empty. A write made while the table is read may show up in both.
+     *
+     * @return A {@link Flowable} of change sets, first one emitted on io thread and later ones on
+     * the thread of the write.
+     */
+    public Flowable<GeofenceChangeSet> getGeofenceChanges() {
+        return Flowable.defer(() -> {
+            // Writes are subscribed before the table is read so none falls in between
+            UnicastProcessor<GeofenceChangeSet> writes = UnicastProcessor.create();
+            Disposable subscription = WRITES.subscribe(writes::onNext);
+            return Flowable.fromCallable(() -> GeofenceChangeSet.added(this.mDao.getGeofences()))
+                    .subscribeOn(Schedulers.io())
+                    .concatWith(writes)
+                    .doFinally(subscription::dispose);
+        });
+    }
+
+    /**
+     * Publishes changes of a write to subscribers of {@link #getGeofenceChanges()}, every write
+     * to geofence table publishes what it changed right after the write.
+     */
+    public static void publishChanges(@NonNull GeofenceChangeSet changes) {
+        if (!changes.isEmpty()) {
+            WRITES.onNext(changes);
+        }
+    }
+
+    /**
+     * Returns geofence alerts whose center is inside of a bounding box, the query is a latitude
+     * range seek on the coordinate index.
+     *
+     * @param bounds A bounding box, it may cross the antimeridian.
+     * @return A {@link LiveData} that you can observe geofences inside of the bounding box.
+     */
+    public LiveData<List<Geofence>> getGeofencesObserver(@NonNull BoundingBox bounds) {
+        return this.mDao.getGeofencesInBoundsE7Observer(GeoMath.toE7(bounds.getSouth()), GeoMath.toE7(bounds.getWest()),
+                GeoMath.toE7(bounds.getNorth()), GeoMath.toE7(bounds.getEast()));
+    }
+
+    /**
+     * Returns a clustering index of geofences that is rebuilt off the main thread whenever source
+     * geofences change, an outdated build is cancelled.
+     *
+     * @param source Geofences to cluster, for example {@link #getGeofencesObserver()}.
+     */
+    public LiveData<ClusterIndex<Geofence>> getGeofenceClustersObserver(@NonNull LiveData<List<Geofence>> source) {
+        MediatorLiveData<ClusterIndex<Geofence>> clusters = new MediatorLiveData<>();
+        SerialDisposable build = new SerialDisposable();
+        this.mCompositeDisposable.add(build);
+        clusters.addSource(source, geofences -> build.set(
+                Single.fromCallable(() -> new ClusterIndex<>(geofences, Geofence::getLatitude, Geofence::getLongitude))
+                        .subscribeOn(Schedulers.computation())
+                        .subscribe(clusters::postValue, Timber::e)));
+        return clusters;
+    }
+
     /**
      * Retrieve a geofence data from database synchronously.
      *
@@ -77,6 +232,95 @@ public class GeofenceRepository {
         return this.mDao.getGeofence(id);
     }
 
+    /**
+     * Retrieve the geofence nearest to a point within specified distance from database
+     * asynchronously, lookup is an index seek on E7 fixed-point coordinates so small coordinate
+     * drift, for example through map annotations, doesn't cause a miss.
+     *
+     * @param point    A point on the map.
+     * @param meters   Tolerance in meters.
+     * @param callback An asynchronous result callback called on main thread, an
+     *                 {@link EmptyResultSetException} is delivered when nothing is within tolerance.
+     */
+    public void getNearestGeofenceAsync(@NonNull Point point, double meters, @NonNull final OnAsyncTaskCallback<Geofence> callback) {
+        //noinspection Convert2MethodRef
+        mCompositeDisposable.add(Single.fromCallable(() -> {
+            Geofence geofence = this.mDao.getNearestGeofence(point.getLatitude(), point.getLongitude(), meters);
+            if (geofence == null) {
+                throw new EmptyResultSetException("No geofence within " + meters + " meters");
+            }
+            return geofence;
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        result -> callback.onSuccess(result),
+                        throwable -> callback.onError(throwable)
+                ));
+    }
+
+    /**
+     * Retrieve geofences whose center is within specified distance of the point from database
+     * asynchronously, only geohash cells around the point are scanned.
+     *
+     * @param point    A point on the map.
+     * @param meters   Search radius in meters.
+     * @param callback An asynchronous result callback called on main thread.
+     */
+    @SuppressWarnings("unused")
+    public void getGeofencesNearbyAsync(@NonNull Point point, double meters, @NonNull final OnAsyncTaskCallback<List<Geofence>> callback) {
+        //noinspection Convert2MethodRef
+        mCompositeDisposable.add(Single.fromCallable(() -> {
+            int precision = Geohash.precisionFor(point.getLatitude(), meters);
+            String cell = Geohash.encode(point.getLatitude(), point.getLongitude(), precision);
+            List<Geofence> result = new ArrayList<>();
+            for (Geofence geofence : this.mDao.getGeofencesInCells(Geohash.withNeighbours(cell))) {
+                if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), point.getLatitude(), point.getLongitude()) <= meters) {
+                    result.add(geofence);
+                }
+            }
+            return result;
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        result -> callback.onSuccess(result),
+                        throwable -> callback.onError(throwable)
+                ));
+    }
+
+    /**
+     * Retrieve geofences whose center is in a bounding box from database asynchronously, only
+     * geohash cells covering the bounding box are scanned.
+     *
+     * @param southWest South west corner of the bounding box.
+     * @param northEast North east corner of the bounding box, west of south west corner if the
+     *                  bounding box crosses the antimeridian.
+     * @param callback  An asynchronous result callback called on main thread.
+     */
+    @SuppressWarnings("unused")
+    public void getGeofencesWithinAsync(@NonNull Point southWest, @NonNull Point northEast, @NonNull final OnAsyncTaskCallback<List<Geofence>> callback) {
+        //noinspection Convert2MethodRef
+        mCompositeDisposable.add(Single.fromCallable(() -> {
+            BoundingBox bounds = new BoundingBox(southWest.getLatitude(), southWest.getLongitude(),
+                    northEast.getLatitude(), northEast.getLongitude());
+            List<String> cells = Geohash.cover(bounds.getSouth(), bounds.getWest(), bounds.getNorth(), bounds.getEast(), MAX_VIEWPORT_CELLS);
+            List<Geofence> result = new ArrayList<>();
+            for (Geofence geofence : this.mDao.getGeofencesInCells(cells)) {
+                if (bounds.contains(geofence.getLatitude(), geofence.getLongitude())) {
+                    result.add(geofence);
+                }
+            }
+            return result;
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        result -> callback.onSuccess(result),
+                        throwable -> callback.onError(throwable)
+                ));
+    }
+
     /**
      * Retrieve a geofence data from database asynchronously.
      *
@@ -116,7 +360,8 @@ public class GeofenceRepository {
 
 
     /**
-     * Add a geofence data to database and proximity alert to {@link LocationManager} asynchronously.
+     * Add a geofence data to database and {@link GeofenceEngine} asynchronously, location updates
+     * requested from {@link LocationManager} as well if they are not requested yet.
      *
      * @param geofence A model class that includes geofence data.
      * @param callback An asynchronous result callback called on main thread.
@@ -126,35 +371,33 @@ public class GeofenceRepository {
     public void addGeofenceAsync(@NonNull final Geofence geofence, @Nullable OnAsyncTaskCallback<Long> callback) {
         double latitude = geofence.getLatitude();
         double longitude = geofence.getLongitude();
+        // Expire time is persisted so that engine can drop expired geofences.
+        geofence.setExpireTime(System.currentTimeMillis() + EXPIRATION_TIME);
 
         // Add geofence to database
         this.mCompositeDisposable.add(this.mDao.insertAsync(geofence)
+                .doOnSuccess(insertedRecordId -> {
+                    if (insertedRecordId != -1) {
+                        geofence.setId(insertedRecordId);
+                        publishChanges(GeofenceChangeSet.added(Collections.singletonList(geofence)));
+                    }
+                })
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(
                         insertedRecordId -> {
-                            // Initiate LocationManger instance
-                            LocationManager locationManager = (LocationManager) mContext.getSystemService(Context.LOCATION_SERVICE);
-                            // Add a geofence
-                            if (locationManager != null) {
-                                // Supply missing attributes
-                                geofence.setId(insertedRecordId);
-                                geofence.setExpireTime(EXPIRATION_TIME);
-
-                                // Service that handles geofence trigger
-                                Intent intent = new Intent(this.mContext, GeofenceTransitionsService.class);
-                                intent.putExtra(GeofenceTransitionsService.KEY_ID, insertedRecordId);
-
-                                // Add geofence to location manager
-                                locationManager.addProximityAlert(latitude, longitude, GEOFENCE_RADIUS, EXPIRATION_TIME,
-                                        PendingIntent.getService(this.mContext, insertedRecordId.intValue(), intent, PendingIntent.FLAG_UPDATE_CURRENT));
-
-                                // Inform the observer
-                                if (callback != null) {
-                                    callback.onSuccess(insertedRecordId);
-                                }
-                                Timber.d("addGeofenceAsync: Succeed latitude: %f longitude: %f", latitude, longitude);
+                            // Supply missing attributes
+                            geofence.setId(insertedRecordId);
+
+                            // Add geofence to engine and make sure it receives location fixes
+                            GeofenceEngine.getInstance().add(geofence);
+                            requestLocationUpdates();
+
+                            // Inform the observer
+                            if (callback != null) {
+                                callback.onSuccess(insertedRecordId);
                             }
+                            Timber.d("addGeofenceAsync: Succeed latitude: %f longitude: %f", latitude, longitude);
                         }, throwable -> {
                             if (callback != null) {
                                 callback.onError(throwable);
@@ -165,8 +408,146 @@ public class GeofenceRepository {
 
 
     /**
-     * Remove a geofence data from database and proximity alert from {@link LocationManager}
-     * asynchronously.
+     * Add a large list of geofences to database and {@link GeofenceEngine} asynchronously. All
+     * geofences are inserted in a single transaction in batches of {@link #BATCH_SIZE}, then
+     * registered to the engine batch by batch, location updates are requested once at the end.
+     *
+     * @param geofences        A list of geofences, typically thousands of them.
+     * @param progressCallback A callback called on main thread as batches are inserted.
+     * @param callback         An asynchronous result callback called on main thread with inserted
+     *                         record ids, -1 for ignored records.
+     */
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(anyOf = {ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION})
+    public void addGeofencesAsync(@NonNull final List<Geofence> geofences, @Nullable OnProgressCallback progressCallback,
+                                  @Nullable OnAsyncTaskCallback<List<Long>> callback) {
+        // Expire time is persisted so that engine can drop expired geofences.
+        long expireTime = System.currentTimeMillis() + EXPIRATION_TIME;
+        for (Geofence geofence : geofences) {
+            geofence.setExpireTime(expireTime);
+        }
+
+        final List<Long> insertedRecordIds = new ArrayList<>(geofences.size());
+        this.mCompositeDisposable.add(Observable.<Integer>create(emitter -> {
+            // Insert all in one transaction, progress emitted per batch
+            insertedRecordIds.addAll(this.mDao.insertAllInBatches(geofences, BATCH_SIZE, emitter::onNext));
+
+            // Register inserted geofences to engine batch by batch
+            GeofenceEngine engine = GeofenceEngine.getInstance();
+            List<Geofence> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < geofences.size(); i++) {
+                long id = insertedRecordIds.get(i);
+                if (id != -1) {
+                    Geofence geofence = geofences.get(i);
+                    geofence.setId(id);
+                    batch.add(geofence);
+                }
+                if (batch.size() == BATCH_SIZE || i == geofences.size() - 1) {
+                    engine.addAll(batch);
+                    publishChanges(GeofenceChangeSet.added(new ArrayList<>(batch)));
+                    batch.clear();
+                }
+            }
+            emitter.onComplete();
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        insertedCount -> {
+                            if (progressCallback != null) {
+                                progressCallback.onProgress(insertedCount, geofences.size());
+                            }
+                        },
+                        throwable -> {
+                            if (callback != null) {
+                                callback.onError(throwable);
+                            }
+                        },
+                        () -> {
+                            requestLocationUpdates();
+                            if (callback != null) {
+                                callback.onSuccess(insertedRecordIds);
+                            }
+                            Timber.d("addGeofencesAsync: Succeed count: %d", insertedRecordIds.size());
+                        }
+                ));
+    }
+
+    /**
+     * Imports geofences from a CSV or GeoJSON file asynchronously, the file is streamed and each
+     * chunk is inserted and registered to {@link GeofenceEngine} before the next one is parsed, so
+     * memory used by the import doesn't grow with the file size. Geofences without an expire time
+     * get the default one.
+     *
+     * @param uri              Uri of the file.
+     * @param format           Format of the file.
+     * @param progressCallback Progress callback called on main thread with number of geofences
+     *                         imported so far, total is unknown.
+     * @param callback         An asynchronous result callback called on main thread.
+     */
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(anyOf = {ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION})
+    public void importGeofencesAsync(@NonNull final Uri uri, @NonNull final GeofenceImporter.Format format,
+                                     @Nullable OnProgressCallback progressCallback,
+                                     @Nullable OnAsyncTaskCallback<GeofenceImporter.Report> callback) {
+        final GeofenceImporter.Report[] report = new GeofenceImporter.Report[1];
+        this.mCompositeDisposable.add(Observable.<Integer>create(emitter -> {
+            long expireTime = System.currentTimeMillis() + EXPIRATION_TIME;
+            GeofenceEngine engine = GeofenceEngine.getInstance();
+            GeofenceImporter importer = new GeofenceImporter(GeofenceImporter.DEFAULT_CHUNK_SIZE, (chunk, imported) -> {
+                for (Geofence geofence : chunk) {
+                    if (geofence.getExpireTime() == 0) {
+                        geofence.setExpireTime(expireTime);
+                    }
+                }
+                List<Long> ids = this.mDao.insertAll(chunk);
+                List<Geofence> inserted = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (ids.get(i) != -1) {
+                        Geofence geofence = chunk.get(i);
+                        geofence.setId(ids.get(i));
+                        inserted.add(geofence);
+                    }
+                }
+                engine.addAll(inserted);
+                publishChanges(GeofenceChangeSet.added(inserted));
+                emitter.onNext(imported);
+            });
+            InputStream inputStream = this.mContext.getContentResolver().openInputStream(uri);
+            if (inputStream == null) {
+                throw new FileNotFoundException("Unable to open " + uri);
+            }
+            try (Reader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"))) {
+                report[0] = importer.importFrom(reader, format);
+            }
+            emitter.onComplete();
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        imported -> {
+                            if (progressCallback != null) {
+                                progressCallback.onProgress(imported, -1);
+                            }
+                        },
+                        throwable -> {
+                            if (callback != null) {
+                                callback.onError(throwable);
+                            }
+                        },
+                        () -> {
+                            requestLocationUpdates();
+                            if (callback != null) {
+                                callback.onSuccess(report[0]);
+                            }
+                            Timber.d("importGeofencesAsync: %s", report[0]);
+                        }
+                ));
+    }
+
+    /**
+     * Remove a geofence data from database and {@link GeofenceEngine} asynchronously, location
+     * updates are removed from {@link LocationManager} when there is no geofence left.
      *
      * @param geofence A model class that includes geofence data.
      * @param callback An asynchronous result callback called on main thread.
@@ -181,15 +562,27 @@ public class GeofenceRepository {
         if (locationManager != null) {
             // Service that handles geofence trigger
             Intent intent = new Intent(this.mContext, GeofenceTransitionsService.class);
-            intent.putExtra(GeofenceTransitionsService.KEY_ID, geofence);
+            intent.putExtra(GeofenceTransitionsService.KEY_ID, geofence.getId());
 
-            // Remove geofence from location manager
+            // Remove proximity alert registered by earlier versions
             locationManager.removeProximityAlert(PendingIntent.getService(this.mContext
                     , (int) geofence.getId(), intent, PendingIntent.FLAG_CANCEL_CURRENT));
 
+            // Remove geofence from engine, stop location updates if nothing left to monitor
+            GeofenceEngine engine = GeofenceEngine.getInstance();
+            engine.remove(geofence.getId());
+            if (engine.isLoaded() && engine.size() == 0) {
+                LocationUpdates.remove(this.mContext);
+            }
+
             // Remove from database
             //noinspection Convert2MethodRef
             this.mCompositeDisposable.add(this.mDao.deleteAsync(geofence)
+                    .doOnSuccess(deletedRecordCount -> {
+                        if (deletedRecordCount > 0) {
+                            publishChanges(GeofenceChangeSet.removed(Collections.singletonList(geofence)));
+                        }
+                    })
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(
@@ -208,6 +601,16 @@ public class GeofenceRepository {
         }
     }
 
+    /**
+     * Requests location updates that feed {@link GeofenceEngine}, at initial cadence so geofences
+     * just added near the device are sampled closely.
+     */
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(anyOf = {ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION})
+    private void requestLocationUpdates() {
+        LocationUpdates.request(this.mContext);
+    }
+
     /**
      * Update a geofence data asynchronously.
      *
@@ -227,6 +630,11 @@ public class GeofenceRepository {
     public void updateGeofenceAsync(Geofence geofence, @Nullable final OnAsyncTaskCallback<Integer> callback) {
         this.mCompositeDisposable
                 .add(this.mDao.updateAsync(geofence)
+                        .doOnSuccess(updatedRecordCount -> {
+                            if (updatedRecordCount > 0) {
+                                publishChanges(GeofenceChangeSet.updated(Collections.singletonList(geofence)));
+                            }
+                        })
                         .subscribeOn(Schedulers.io())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(
@@ -243,60 +651,88 @@ public class GeofenceRepository {
     }
 
     /**
-     * Converts a point on the map to a place.
+     * Converts a point on the map to a place, results are cached so that taps near an earlier one
+     * resolve without a network request, and answered from the offline gazetteer when geocoding
+     * api is unreachable. Rapid taps are debounced and a newer point cancels the
+     * lookup of an older one, so the returned LiveData only ever receives the latest point's place.
      *
      * @param point A point on the map,
      * @return A place that contains contextual information about specified point.
      */
     public LiveData<Place> getPlace(Point point) {
-        try {
-            // Build a Mapbox geocoding request
-            MapboxGeocoding client = MapboxGeocoding.builder()
-                    .accessToken(this.mContext.getString(R.string.mapbox_access_token))
-                    .query(com.mapbox.geojson.Point.fromLngLat(point.getLongitude(), point.getLatitude()))
-                    .geocodingTypes(GeocodingCriteria.TYPE_POI)
-                    .mode(GeocodingCriteria.MODE_PLACES)
-                    .build();
-
-            // Request data
-            client.enqueueCall(new Callback<GeocodingResponse>() {
-                @Override
-                public void onResponse(@NonNull Call<GeocodingResponse> call,
-                                       @NonNull Response<GeocodingResponse> response) {
-                    if (response.body() != null) {
-                        List<CarmenFeature> results = response.body().features();
-                        if (results.size() > 0) {
-                            // Get the first Feature from the successful geocoding response
-                            CarmenFeature feature = results.get(0);
-                            Place place = new Place();
-                            String placeName = feature.placeName();
-                            // Show coordinate while there is no place name.
-                            if (placeName != null) {
-                                place.setAddress(placeName);
-                            } else {
-                                place.setAddress(String.format(mContext.getString(R.string.address_in_coordinates_format), point.getLatitude(), point.getLongitude()));
-                            }
-                            place.setPoint(point);
-                            mPlace.postValue(place);
-                        } else {
-                            Place place = new Place();
-                            place.setAddress(String.format(mContext.getString(R.string.address_in_coordinates_format), point.getLatitude(), point.getLongitude()));
-                            place.setPoint(point);
-                            mPlace.postValue(place);
-                        }
-                    }
+        this.mPlaceRequests.request(point);
+        return this.mPlace;
+    }
+
+    /**
+     * Returns hit and miss counters of the reverse geocoding cache.
+     */
+    @NonNull
+    public CachedReverseGeocoder.Stats getGeocodeStats() {
+        return this.mGeocodeCache.getStats();
+    }
+
+    /**
+     * Returns request counters of place lookups, including requests saved by debouncing.
+     */
+    @NonNull
+    public GeocodeRequestCoalescer.Stats getPlaceRequestStats() {
+        return this.mPlaceRequests.getStats();
+    }
+
+    /**
+     * Returns process wide reverse geocoding cache, so that in-memory cache outlives a repository.
+     */
+    private static CachedReverseGeocoder getGeocodeCache(Context context) {
+        if (GEOCODE_CACHE == null) {
+            synchronized (GeofenceRepository.class) {
+                if (GEOCODE_CACHE == null) {
+                    ReverseGeocoder geocoder = new MapboxReverseGeocoder(context.getString(R.string.mapbox_access_token));
+                    GEOCODE_CACHE = new CachedReverseGeocoder(geocoder, GeofenceDataBase.getInstance(context).getGeocodeCacheDao());
+                    // Drop expired results once per process
+                    Schedulers.io().scheduleDirect(GEOCODE_CACHE::evictExpired);
                 }
+            }
+        }
+        return GEOCODE_CACHE;
+    }
 
-                @Override
-                public void onFailure(@NonNull Call<GeocodingResponse> call, @NonNull Throwable throwable) {
-                    Timber.e("Geocoding Failure: %s", throwable.getMessage());
+    /**
+     * Returns process wide reverse geocoder. Cached online geocoder is asked first and offline
+     * gazetteer is the fallback, or the other way around when offline geocoder is preferred by
+     * configuration. Without a gazetteer asset the cached online geocoder is used alone.
+     */
+    private static ReverseGeocoder getGeocoder(Context context) {
+        if (GEOCODER == null) {
+            synchronized (GeofenceRepository.class) {
+                if (GEOCODER == null) {
+                    Context applicationContext = context.getApplicationContext();
+                    ReverseGeocoder online = getGeocodeCache(context);
+                    if (!hasAsset(applicationContext, GAZETTEER_ASSET)) {
+                        Timber.i("No %s asset, offline geocoder disabled", GAZETTEER_ASSET);
+                        GEOCODER = online;
+                        return GEOCODER;
+                    }
+                    ReverseGeocoder offline = new OfflineReverseGeocoder(
+                            () -> new InputStreamReader(applicationContext.getAssets().open(GAZETTEER_ASSET), "UTF-8"),
+                            OfflineReverseGeocoder.DEFAULT_MAX_DISTANCE);
+                    GEOCODER = context.getResources().getBoolean(R.bool.prefer_offline_geocoder)
+                            ? new FallbackReverseGeocoder(offline, online)
+                            : new FallbackReverseGeocoder(online, offline);
                 }
-            });
-        } catch (ServicesException servicesException) {
-            Timber.e("Error geocoding: %s", servicesException.toString());
+            }
         }
+        return GEOCODER;
+    }
 
-        return this.mPlace;
+    private static boolean hasAsset(Context context, String name) {
+        try {
+            String[] assets = context.getAssets().list("");
+            return assets != null && Arrays.asList(assets).contains(name);
+        } catch (IOException e) {
+            Timber.e(e);
+            return false;
+        }
     }
 
     /**
@@ -304,5 +740,6 @@ public class GeofenceRepository {
      */
     public void onCleared() {
         this.mCompositeDisposable.dispose();
+        this.mPlaceRequests.dispose();
     }
 }
@@ -0,0 +1,16 @@
+package com.example.alimjan.geofence.data;
+
+import androidx.annotation.UiThread;
+
+/**
+ * A callback interface that reports progress of a long running asynchronous task.
+ */
+public interface OnProgressCallback {
+
+    /**
+     * @param completed Number of items completed so far.
+     * @param total     Total number of items, -1 if it is not known in advance.
+     */
+    @UiThread
+    void onProgress(int completed, int total);
+}
@@ -0,0 +1,229 @@
+package com.example.alimjan.geofence.data;
+
+import android.content.Context;
+
+import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.db.TransitionEventDao;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.model.TransitionDailyCount;
+import com.example.alimjan.geofence.model.TransitionEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * An append only log of geofence transitions. Appended events are buffered in memory and written
+ * in a single transaction once the buffer holds {@code maxBatchSize} events or the oldest buffered
+ * event is {@code maxDelay} old, whichever comes first, so appending never touches the disk.
+ * Events still buffered when the process dies are lost, a host that may be stopped calls
+ * {@link #flush()} first, as the transition processor does once its queue drains.
+ * <p>
+ * Events older than retention are rolled into {@link TransitionDailyCount} rows, compaction runs
+ * after a flush at most once per {@link #COMPACTION_INTERVAL}.
+ */
+public class TransitionEventLog {
+    // Default number of buffered events that triggers a flush.
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    // Default time an event may stay buffered.
+    public static final long DEFAULT_MAX_DELAY = 1000 * 30; // 30 seconds
+    // Default time events are kept before they are rolled into daily counts.
+    public static final long DEFAULT_RETENTION = TransitionDailyCount.DAY * 30; // 30 days
+    // Minimum time between two compactions.
+    public static final long COMPACTION_INTERVAL = TransitionDailyCount.DAY;
+
+    private static TransitionEventLog INSTANCE;
+
+    private final TransitionEventDao mDao;
+    private final int mMaxBatchSize;
+    private final long mMaxDelay;
+    private final long mRetention;
+    private final Scheduler mScheduler;
+
+    private final Object mLock = new Object();
+    // Buffered events, guarded by mLock.
+    private List<TransitionEvent> mBuffer = new ArrayList<>();
+    // Flush scheduled by the oldest buffered event, guarded by mLock.
+    private Disposable mScheduledFlush;
+    // Time of last compaction, guarded by this.
+    private long mLastCompaction = Long.MIN_VALUE;
+
+    private final AtomicLong mAppended = new AtomicLong();
+    private final AtomicLong mWritten = new AtomicLong();
+    private final AtomicLong mFlushes = new AtomicLong();
+    private final AtomicLong mCompacted = new AtomicLong();
+
+    /**
+     * Returns process wide log writing to the app database.
+     */
+    public static TransitionEventLog getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (TransitionEventLog.class) {
+                if (INSTANCE == null) {
+                    TransitionEventDao dao = GeofenceDataBase.getInstance(context.getApplicationContext()).getTransitionEventDao();
+                    INSTANCE = new TransitionEventLog(dao, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY, DEFAULT_RETENTION, Schedulers.io());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * @param dao          Dao events are written to.
+     * @param maxBatchSize Number of buffered events that triggers a flush.
+     * @param maxDelay     Time in milliseconds an event may stay buffered.
+     * @param retention    Time in milliseconds events are kept before compaction.
+     * @param scheduler    Scheduler that times and runs flushes, typically io.
+     */
+    public TransitionEventLog(@NonNull TransitionEventDao dao, int maxBatchSize, long maxDelay, long retention,
+                              @NonNull Scheduler scheduler) {
+        this.mDao = dao;
+        this.mMaxBatchSize = maxBatchSize;
+        this.mMaxDelay = maxDelay;
+        this.mRetention = retention;
+        this.mScheduler = scheduler;
+    }
+
+    /**
+     * Appends a transition to the buffer.
+     */
+    public void append(@NonNull GeofenceTransition transition) {
+        append(new TransitionEvent(transition.getGeofence().getId(),
+                transition.getType() == GeofenceTransition.Type.ENTER ? TransitionEvent.DIRECTION_ENTER : TransitionEvent.DIRECTION_EXIT,
+                transition.getTime(), transition.getAccuracy() >= 0 ? transition.getAccuracy() : TransitionEvent.UNKNOWN_ACCURACY));
+    }
+
+    /**
+     * Appends an event to the buffer.
+     */
+    public void append(@NonNull TransitionEvent event) {
+        mAppended.incrementAndGet();
+        synchronized (mLock) {
+            mBuffer.add(event);
+            if (mBuffer.size() >= mMaxBatchSize) {
+                cancelScheduledFlush();
+                mScheduler.scheduleDirect(this::flush);
+            } else if (mScheduledFlush == null) {
+                mScheduledFlush = mScheduler.scheduleDirect(this::flush, mMaxDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes buffered events synchronously, then compacts old events if it is due.
+     */
+    @WorkerThread
+    public void flush() {
+        List<TransitionEvent> events;
+        synchronized (mLock) {
+            cancelScheduledFlush();
+            if (mBuffer.isEmpty()) {
+                return;
+            }
+            events = mBuffer;
+            mBuffer = new ArrayList<>();
+        }
+        try {
+            mDao.insertAll(events);
+            mWritten.addAndGet(events.size());
+            mFlushes.incrementAndGet();
+        } catch (Exception e) {
+            // History is best effort, a failed write must not break transition handling
+            Timber.e(e);
+        }
+        compactIfDue();
+    }
+
+    /**
+     * Returns a snapshot of the log counters.
+     */
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mAppended.get(), mWritten.get(), mFlushes.get(), mCompacted.get());
+    }
+
+    private void cancelScheduledFlush() {
+        if (mScheduledFlush != null) {
+            mScheduledFlush.dispose();
+            mScheduledFlush = null;
+        }
+    }
+
+    private synchronized void compactIfDue() {
+        long now = mScheduler.now(TimeUnit.MILLISECONDS);
+        if (mLastCompaction != Long.MIN_VALUE && now - mLastCompaction < COMPACTION_INTERVAL) {
+            return;
+        }
+        mLastCompaction = now;
+        // Cut at a day boundary so a compacted day is complete
+        long before = (now - mRetention) / TransitionDailyCount.DAY * TransitionDailyCount.DAY;
+        try {
+            int compacted = mDao.compact(before);
+            mCompacted.addAndGet(compacted);
+            Timber.d("compact: %d events before %d", compacted, before);
+        } catch (Exception e) {
+            Timber.e(e);
+        }
+    }
+
+    /**
+     * Counters of a {@link TransitionEventLog}.
+     */
+    public static class Stats {
+        private final long appended;
+        private final long written;
+        private final long flushes;
+        private final long compacted;
+
+        Stats(long appended, long written, long flushes, long compacted) {
+            this.appended = appended;
+            this.written = written;
+            this.flushes = flushes;
+            this.compacted = compacted;
+        }
+
+        /**
+         * Returns number of appended events.
+         */
+        public long getAppended() {
+            return appended;
+        }
+
+        /**
+         * Returns number of events written to database.
+         */
+        public long getWritten() {
+            return written;
+        }
+
+        /**
+         * Returns number of write transactions.
+         */
+        public long getFlushes() {
+            return flushes;
+        }
+
+        /**
+         * Returns number of events rolled into daily counts.
+         */
+        public long getCompacted() {
+            return compacted;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Stats {appended = '%d', written = '%d', flushes = '%d', compacted = '%d'}",
+                    appended, written, flushes, compacted);
+        }
+    }
+}
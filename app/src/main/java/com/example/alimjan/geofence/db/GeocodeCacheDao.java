@@ -0,0 +1,45 @@
+package com.example.alimjan.geofence.db;
+
+import com.example.alimjan.geofence.model.CachedPlace;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * A Data Access Object for the {@link com.example.alimjan.geofence.model.CachedPlace} class.
+ */
+@Dao
+public interface GeocodeCacheDao {
+
+    /**
+     * Returns cached result of a geohash cell synchronously.
+     *
+     * @param geohash A geohash cell.
+     * @return A cached place, null if the cell is not cached.
+     */
+    @Query("SELECT * FROM geocode_cache WHERE geohash = :geohash")
+    CachedPlace get(String geohash);
+
+    /**
+     * Inserts a cached place synchronously, replaces existing result of the same cell.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(CachedPlace place);
+
+    /**
+     * Deletes results fetched before specified time synchronously.
+     *
+     * @param time Time in milliseconds since epoch.
+     * @return Number of deleted results.
+     */
+    @Query("DELETE FROM geocode_cache WHERE createdAt < :time")
+    int deleteOlderThan(long time);
+
+    /**
+     * Returns number of cached results synchronously.
+     */
+    @Query("SELECT COUNT(*) FROM geocode_cache")
+    int count();
+}
@@ -1,16 +1,24 @@
 package com.example.alimjan.geofence.db;
 
+import com.example.alimjan.geofence.geo.BoundingBox;
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.Geohash;
 import com.example.alimjan.geofence.model.Geofence;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
 
 /**
@@ -40,27 +48,113 @@ public interface GeofenceDao {
     Single<Geofence> getGeofenceAsync(long id);
 
     /**
-     * Returns a geofence data associated with latitude and longitude synchronously.
+     * Returns a geofence data associated with latitude and longitude synchronously, coordinates
+     * are matched exactly in E7 fixed-point with a composite index seek.
      *
      * @param latitude  Latitude.
      * @param longitude Longitude.
      * @return A geofence instance.
      */
     @SuppressWarnings("unused")
-    @Query("SELECT * FROM Geofence WHERE latitude = :latitude AND longitude = :longitude")
-    Geofence getGeofence(double latitude, double longitude);
+    default Geofence getGeofence(double latitude, double longitude) {
+        return getGeofenceE7(GeoMath.toE7(latitude), GeoMath.toE7(longitude));
+    }
 
     /**
-     * Returns a geofence data associated with latitude and longitude asynchronously.
+     * Returns a geofence data associated with latitude and longitude asynchronously, coordinates
+     * are matched exactly in E7 fixed-point with a composite index seek.
      *
      * @param latitude  Latitude.
      * @param longitude Longitude.
      * @return Geofence instance wrapped with {@link Single}.
      */
     @SuppressWarnings("unused")
-    @Query("SELECT * FROM Geofence WHERE latitude = :latitude AND longitude = :longitude")
-    Single<Geofence> getGeofenceAsync(double latitude, double longitude);
+    default Single<Geofence> getGeofenceAsync(double latitude, double longitude) {
+        return getGeofenceE7Async(GeoMath.toE7(latitude), GeoMath.toE7(longitude));
+    }
 
+    /**
+     * Returns a geofence data associated with E7 fixed-point coordinate synchronously.
+     *
+     * @param latitudeE7  Latitude in E7 fixed-point.
+     * @param longitudeE7 Longitude in E7 fixed-point.
+     * @return A geofence instance.
+     */
+    @Query("SELECT * FROM Geofence WHERE latitudeE7 = :latitudeE7 AND longitudeE7 = :longitudeE7")
+    Geofence getGeofenceE7(int latitudeE7, int longitudeE7);
+
+    /**
+     * Returns a geofence data associated with E7 fixed-point coordinate asynchronously.
+     *
+     * @param latitudeE7  Latitude in E7 fixed-point.
+     * @param longitudeE7 Longitude in E7 fixed-point.
+     * @return Geofence instance wrapped with {@link Single}.
+     */
+    @Query("SELECT * FROM Geofence WHERE latitudeE7 = :latitudeE7 AND longitudeE7 = :longitudeE7")
+    Single<Geofence> getGeofenceE7Async(int latitudeE7, int longitudeE7);
+
+    /**
+     * Returns geofences inside an E7 fixed-point bounding box synchronously, the latitude range is
+     * an index seek on the composite coordinate index and longitude is filtered from the same
+     * index entries.
+     *
+     * @return List of geofence instances.
+     */
+    @Query("SELECT * FROM Geofence WHERE latitudeE7 BETWEEN :minLatitudeE7 AND :maxLatitudeE7 "
+            + "AND longitudeE7 BETWEEN :minLongitudeE7 AND :maxLongitudeE7")
+    List<Geofence> getGeofencesInRangeE7(int minLatitudeE7, int minLongitudeE7, int maxLatitudeE7, int maxLongitudeE7);
+
+    /**
+     * Returns geofences inside an E7 fixed-point bounding box, result is wrapped with
+     * {@link LiveData} observer which you can observe every data change. West edge greater than
+     * east edge means the box crosses the antimeridian.
+     *
+     * @return List of geofence instances wrapped with {@link LiveData}.
+     */
+    @Query("SELECT * FROM Geofence WHERE latitudeE7 BETWEEN :southE7 AND :northE7 "
+            + "AND ((:westE7 <= :eastE7 AND longitudeE7 BETWEEN :westE7 AND :eastE7) "
+            + "OR (:westE7 > :eastE7 AND (longitudeE7 >= :westE7 OR longitudeE7 <= :eastE7)))")
+    LiveData<List<Geofence>> getGeofencesInBoundsE7Observer(int southE7, int westE7, int northE7, int eastE7);
+
+    /**
+     * Returns geofences inside an E7 fixed-point bounding box synchronously. West edge greater
+     * than east edge means the box crosses the antimeridian.
+     *
+     * @return List of geofence instances.
+     */
+    @Query("SELECT * FROM Geofence WHERE latitudeE7 BETWEEN :southE7 AND :northE7 "
+            + "AND ((:westE7 <= :eastE7 AND longitudeE7 BETWEEN :westE7 AND :eastE7) "
+            + "OR (:westE7 > :eastE7 AND (longitudeE7 >= :westE7 OR longitudeE7 <= :eastE7)))")
+    List<Geofence> getGeofencesInBoundsE7(int southE7, int westE7, int northE7, int eastE7);
+
+    /**
+     * Returns the geofence nearest to a coordinate within specified distance synchronously, only
+     * the tolerance bounding box is read from the coordinate index. The bounding box wraps around
+     * the antimeridian.
+     *
+     * @param latitude  Latitude.
+     * @param longitude Longitude.
+     * @param meters    Tolerance in meters.
+     * @return Nearest geofence instance, null if there is no geofence within the tolerance.
+     */
+    @Nullable
+    default Geofence getNearestGeofence(double latitude, double longitude, double meters) {
+        double dLat = GeoMath.latitudeDelta(meters);
+        double dLon = GeoMath.longitudeDelta(latitude, meters);
+        BoundingBox bounds = new BoundingBox(latitude - dLat, longitude - dLon, latitude + dLat, longitude + dLon);
+        List<Geofence> candidates = getGeofencesInBoundsE7(GeoMath.toE7(bounds.getSouth()), GeoMath.toE7(bounds.getWest()),
+                GeoMath.toE7(bounds.getNorth()), GeoMath.toE7(bounds.getEast()));
+        Geofence nearest = null;
+        double nearestDistance = meters;
+        for (Geofence geofence : candidates) {
+            double distance = GeoMath.distance(latitude, longitude, geofence.getLatitude(), geofence.getLongitude());
+            if (distance <= nearestDistance) {
+                nearest = geofence;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
 
     /**
      * Returns all geofences, result is wrapped with {@link LiveData} observer which you can
@@ -72,6 +166,94 @@ public interface GeofenceDao {
     @Query("SELECT * FROM Geofence")
     LiveData<List<Geofence>> getGeofencesObserver();
 
+    /**
+     * Returns all geofences synchronously.
+     *
+     * @return List of geofence instances.
+     */
+    @Query("SELECT * FROM Geofence")
+    List<Geofence> getGeofences();
+
+    /**
+     * Returns all geofences asynchronously.
+     *
+     * @return List of geofence instances wrapped with {@link Single}.
+     */
+    @Query("SELECT * FROM Geofence")
+    Single<List<Geofence>> getGeofencesAsync();
+
+    /**
+     * Returns all geofences, result is wrapped with {@link Flowable} which emits the whole table
+     * again after every write.
+     *
+     * @return List of geofence instances wrapped with {@link Flowable}.
+     */
+    @Query("SELECT * FROM Geofence")
+    Flowable<List<Geofence>> getGeofencesFlowable();
+
+    /**
+     * Returns number of geofences synchronously.
+     *
+     * @return Number of records in geofence table.
+     */
+    @Query("SELECT COUNT(*) FROM Geofence")
+    int count();
+
+    /**
+     * Returns geofences associated with ids synchronously, missing ids are left out.
+     *
+     * @param ids Geofence ids, at most 999 of them.
+     * @return List of geofence instances.
+     */
+    @Query("SELECT * FROM Geofence WHERE id IN (:ids)")
+    List<Geofence> getGeofences(Collection<Long> ids);
+
+    /**
+     * Sets triggered state of geofences associated with ids synchronously in a single statement.
+     *
+     * @param ids       Geofence ids, at most 998 of them.
+     * @param triggered New triggered state.
+     * @return Number of updated records.
+     */
+    @Query("UPDATE Geofence SET isTriggered = :triggered WHERE id IN (:ids)")
+    int setTriggered(Collection<Long> ids, boolean triggered);
+
+    /**
+     * Returns geofences whose geohash starts with the prefix synchronously, prefix is matched as a
+     * range so that the query is a geohash index range scan.
+     *
+     * @param prefix A geohash prefix, a cell id.
+     * @return List of geofence instances.
+     */
+    @Query("SELECT * FROM Geofence WHERE geohash >= :prefix AND geohash < :prefix || '" + Geohash.RANGE_END + "'")
+    List<Geofence> getGeofencesByGeohashPrefix(String prefix);
+
+    /**
+     * Returns geofences whose geohash starts with the prefix asynchronously.
+     *
+     * @param prefix A geohash prefix, a cell id.
+     * @return List of geofence instances wrapped with {@link Single}.
+     */
+    @SuppressWarnings("unused")
+    @Query("SELECT * FROM Geofence WHERE geohash >= :prefix AND geohash < :prefix || '" + Geohash.RANGE_END + "'")
+    Single<List<Geofence>> getGeofencesByGeohashPrefixAsync(String prefix);
+
+    /**
+     * Returns geofences in a set of cells synchronously, one index range scan per cell in a single
+     * transaction. Cells must not be prefixes of each other otherwise result has duplicates.
+     *
+     * @param cells Geohash cells, typically a cell and its neighbours or cells covering a viewport.
+     * @return List of geofence instances.
+     */
+    @Transaction
+    default List<Geofence> getGeofencesInCells(Collection<String> cells) {
+        List<Geofence> geofences = new ArrayList<>();
+        for (String cell : cells) {
+            geofences.addAll(getGeofencesByGeohashPrefix(cell));
+        }
+        return geofences;
+    }
+
     /**
      * Insert a geofence synchronously.
      *
@@ -104,6 +286,39 @@ public interface GeofenceDao {
     List<Long> insertAll(List<Geofence> geofenceList);
 
 
+    /**
+     * Insert a list of geofences in fixed size batches within a single transaction synchronously,
+     * so that a large import is atomic while progress can still be reported between batches.
+     *
+     * @param geofenceList A list of geofences.
+     * @param batchSize    Number of geofences inserted per batch.
+     * @param listener     A listener notified after every batch, called on the inserting thread.
+     * @return A list of inserted record Id, -1 for ignored records.
+     */
+    @Transaction
+    default List<Long> insertAllInBatches(List<Geofence> geofenceList, int batchSize, @Nullable OnBatchInsertedListener listener) {
+        List<Long> ids = new ArrayList<>(geofenceList.size());
+        for (int start = 0; start < geofenceList.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, geofenceList.size());
+            ids.addAll(insertAll(geofenceList.subList(start, end)));
+            if (listener != null) {
+                listener.onBatchInserted(ids.size());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * A listener for batched inserts.
+     */
+    interface OnBatchInsertedListener {
+
+        /**
+         * @param insertedCount Number of geofences inserted so far.
+         */
+        void onBatchInserted(int insertedCount);
+    }
+
     /**
      * Insert a list of geofences asynchronously.
      *
@@ -1,26 +1,142 @@
 package com.example.alimjan.geofence.db;
 
 import android.content.Context;
+import android.database.Cursor;
 
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.Geohash;
+import com.example.alimjan.geofence.model.CachedPlace;
 import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceState;
+import com.example.alimjan.geofence.model.NotificationCooldown;
+import com.example.alimjan.geofence.model.TransitionDailyCount;
+import com.example.alimjan.geofence.model.TransitionEvent;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
 /**
  * A RoomDatabase implementation for data persistence.
  */
 @Database(
-        entities = Geofence.class,
-        version = 1,
+        entities = {Geofence.class, CachedPlace.class, TransitionEvent.class, TransitionDailyCount.class,
+                GeofenceState.class, NotificationCooldown.class},
+        version = 7,
         exportSchema = false
 )
 public abstract class GeofenceDataBase extends RoomDatabase {
     private static GeofenceDataBase INSTANCE;
 
+    /**
+     * Adds indexed geohash column and backfills it for existing rows.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE geofence ADD COLUMN geohash TEXT");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_geofence_geohash ON geofence (geohash)");
+
+            // Geohash can't be computed in SQL so backfill row by row
+            SupportSQLiteStatement update = database.compileStatement("UPDATE geofence SET geohash = ? WHERE id = ?");
+            try (Cursor cursor = database.query("SELECT id, latitude, longitude FROM geofence")) {
+                while (cursor.moveToNext()) {
+                    update.bindString(1, Geohash.encode(cursor.getDouble(1), cursor.getDouble(2), Geohash.PRECISION));
+                    update.bindLong(2, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            }
+        }
+    };
+
+    /**
+     * Adds E7 fixed-point coordinate columns with a composite index and backfills them for
+     * existing rows, backfill is done in Java to round exactly like new inserts.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE geofence ADD COLUMN latitudeE7 INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE geofence ADD COLUMN longitudeE7 INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_geofence_latitudeE7_longitudeE7 ON geofence (latitudeE7, longitudeE7)");
+
+            SupportSQLiteStatement update = database.compileStatement("UPDATE geofence SET latitudeE7 = ?, longitudeE7 = ? WHERE id = ?");
+            try (Cursor cursor = database.query("SELECT id, latitude, longitude FROM geofence")) {
+                while (cursor.moveToNext()) {
+                    update.bindLong(1, GeoMath.toE7(cursor.getDouble(1)));
+                    update.bindLong(2, GeoMath.toE7(cursor.getDouble(2)));
+                    update.bindLong(3, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            }
+        }
+    };
+
+    /**
+     * Adds per geofence radius column, existing rows get the radius every geofence used to have.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE geofence ADD COLUMN radius REAL NOT NULL DEFAULT 200");
+        }
+    };
+
+    /**
+     * Adds reverse geocoding cache table.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS geocode_cache (geohash TEXT NOT NULL, address TEXT, createdAt INTEGER NOT NULL, PRIMARY KEY(geohash))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_geocode_cache_createdAt ON geocode_cache (createdAt)");
+        }
+    };
+
+    /**
+     * Adds transition event log and its daily count table.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS transition_event (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, geofenceId INTEGER NOT NULL, direction INTEGER NOT NULL, time INTEGER NOT NULL, accuracy REAL NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_transition_event_geofenceId ON transition_event (geofenceId)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_transition_event_time ON transition_event (time)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS transition_daily (day INTEGER NOT NULL, geofenceId INTEGER NOT NULL, enters INTEGER NOT NULL, exits INTEGER NOT NULL, PRIMARY KEY(day, geofenceId))");
+        }
+    };
+
+    /**
+     * Adds engine state and notification cooldown tables.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS geofence_state (geofenceId INTEGER NOT NULL, inside INTEGER NOT NULL, dwellSince INTEGER, PRIMARY KEY(geofenceId))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS notification_cooldown (id INTEGER NOT NULL, time INTEGER NOT NULL, PRIMARY KEY(id))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_notification_cooldown_time ON notification_cooldown (time)");
+        }
+    };
+
     public abstract GeofenceDao getDao();
 
+    public abstract GeocodeCacheDao getGeocodeCacheDao();
+
+    public abstract TransitionEventDao getTransitionEventDao();
+
+    public abstract GeofenceStateDao getStateDao();
+
     /**
      * Returns {@link RoomDatabase} instance for database access.
      */
@@ -29,6 +145,8 @@ public abstract class GeofenceDataBase extends RoomDatabase {
             synchronized (GeofenceDataBase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context, GeofenceDataBase.class, "geofence.db")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+                                    MIGRATION_6_7)
                             .build();
                 }
             }
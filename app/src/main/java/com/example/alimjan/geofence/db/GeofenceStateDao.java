@@ -0,0 +1,87 @@
+package com.example.alimjan.geofence.db;
+
+import com.example.alimjan.geofence.model.GeofenceState;
+import com.example.alimjan.geofence.model.NotificationCooldown;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+/**
+ * A Data Access Object for {@link GeofenceState} rows of the transition engine and
+ * {@link NotificationCooldown} rows of the notification dispatcher, state that has to outlive
+ * the process.
+ */
+@Dao
+public interface GeofenceStateDao {
+
+    /**
+     * Returns all stored engine states synchronously.
+     */
+    @Query("SELECT * FROM geofence_state")
+    List<GeofenceState> getStates();
+
+    /**
+     * Inserts engine states synchronously, replaces existing states of the same geofence.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertStates(List<GeofenceState> states);
+
+    /**
+     * Deletes engine states of geofences synchronously.
+     */
+    @Query("DELETE FROM geofence_state WHERE geofenceId IN (:geofenceIds)")
+    void deleteStates(List<Long> geofenceIds);
+
+    /**
+     * Stores changed engine states in a single transaction, empty states are deleted.
+     *
+     * @param states States of at most 900 geofences.
+     */
+    @Transaction
+    default void saveStates(List<GeofenceState> states) {
+        List<GeofenceState> kept = new ArrayList<>(states.size());
+        List<Long> deleted = new ArrayList<>();
+        for (GeofenceState state : states) {
+            if (state.isEmpty()) {
+                deleted.add(state.getGeofenceId());
+            } else {
+                kept.add(state);
+            }
+        }
+        if (!kept.isEmpty()) {
+            insertStates(kept);
+        }
+        if (!deleted.isEmpty()) {
+            deleteStates(deleted);
+        }
+    }
+
+    /**
+     * Returns cooldowns notified at or after specified time synchronously.
+     *
+     * @param time Time in milliseconds since epoch.
+     */
+    @Query("SELECT * FROM notification_cooldown WHERE time >= :time")
+    List<NotificationCooldown> getCooldowns(long time);
+
+    /**
+     * Inserts cooldowns synchronously, replaces existing cooldowns of the same geofence and
+     * direction.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertCooldowns(List<NotificationCooldown> cooldowns);
+
+    /**
+     * Deletes cooldowns notified before specified time synchronously.
+     *
+     * @param time Time in milliseconds since epoch.
+     */
+    @Query("DELETE FROM notification_cooldown WHERE time < :time")
+    void deleteCooldownsBefore(long time);
+}
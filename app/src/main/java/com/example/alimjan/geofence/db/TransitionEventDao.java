@@ -0,0 +1,100 @@
+package com.example.alimjan.geofence.db;
+
+import com.example.alimjan.geofence.model.TransitionDailyCount;
+import com.example.alimjan.geofence.model.TransitionEvent;
+
+import java.util.List;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+/**
+ * A Data Access Object for the {@link TransitionEvent} log and its
+ * {@link TransitionDailyCount} aggregates.
+ */
+@Dao
+public interface TransitionEventDao {
+
+    /**
+     * Appends events synchronously in a single transaction.
+     */
+    @Insert
+    void insertAll(List<TransitionEvent> events);
+
+    /**
+     * Returns logged events of a geofence in time order synchronously.
+     */
+    @Query("SELECT * FROM transition_event WHERE geofenceId = :geofenceId ORDER BY time")
+    List<TransitionEvent> getEvents(long geofenceId);
+
+    /**
+     * Returns number of logged events synchronously.
+     */
+    @Query("SELECT COUNT(*) FROM transition_event")
+    int count();
+
+    /**
+     * Returns daily counts of a geofence in day order synchronously.
+     */
+    @Query("SELECT * FROM transition_daily WHERE geofenceId = :geofenceId ORDER BY day")
+    List<TransitionDailyCount> getDailyCounts(long geofenceId);
+
+    /**
+     * Returns daily count of a geofence synchronously, null if there is none.
+     */
+    @Query("SELECT * FROM transition_daily WHERE day = :day AND geofenceId = :geofenceId")
+    TransitionDailyCount getDailyCount(long day, long geofenceId);
+
+    /**
+     * Counts events before specified time per geofence and UTC day synchronously.
+     *
+     * @param time Time in milliseconds since epoch.
+     */
+    @Query("SELECT time / " + TransitionDailyCount.DAY + " AS day, geofenceId, "
+            + "SUM(direction = " + TransitionEvent.DIRECTION_ENTER + ") AS enters, "
+            + "SUM(direction = " + TransitionEvent.DIRECTION_EXIT + ") AS exits "
+            + "FROM transition_event WHERE time < :time GROUP BY day, geofenceId")
+    List<TransitionDailyCount> countEventsBefore(long time);
+
+    /**
+     * Inserts daily counts synchronously, replaces existing counts of the same day and geofence.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertDailyCounts(List<TransitionDailyCount> counts);
+
+    /**
+     * Deletes events before specified time synchronously.
+     *
+     * @param time Time in milliseconds since epoch.
+     * @return Number of deleted events.
+     */
+    @Query("DELETE FROM transition_event WHERE time < :time")
+    int deleteEventsBefore(long time);
+
+    /**
+     * Rolls events before specified time into daily counts and deletes them in a single
+     * transaction, counts of a day that is already compacted are added up.
+     *
+     * @param time Time in milliseconds since epoch.
+     * @return Number of compacted events.
+     */
+    @Transaction
+    default int compact(long time) {
+        List<TransitionDailyCount> counts = countEventsBefore(time);
+        if (counts.isEmpty()) {
+            return 0;
+        }
+        for (TransitionDailyCount count : counts) {
+            TransitionDailyCount existing = getDailyCount(count.getDay(), count.getGeofenceId());
+            if (existing != null) {
+                count.setEnters(count.getEnters() + existing.getEnters());
+                count.setExits(count.getExits() + existing.getExits());
+            }
+        }
+        insertDailyCounts(counts);
+        return deleteEventsBefore(time);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.example.alimjan.geofence.db.GeocodeCacheDao;
+import com.example.alimjan.geofence.geo.Geohash;
+import com.example.alimjan.geofence.model.CachedPlace;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * A two-tier cache in front of a {@link ReverseGeocoder}. Lookups go to an in-memory LRU first,
+ * then to a persistent table, and only reach the wrapped geocoder on a miss of both. Coordinates
+ * are quantized to a geohash cell so taps close to each other share one result, and results older
+ * than the time to live are fetched again.
+ * <p>
+ * Absence of a place is cached as well, failed and cancelled lookups are not.
+ */
+public class CachedReverseGeocoder implements ReverseGeocoder {
+    // Geohash precision of cache keys, cells are about 38m x 19m.
+    public static final int KEY_PRECISION = 8;
+    // Default number of results kept in memory.
+    public static final int DEFAULT_MEMORY_SIZE = 256;
+    // Default time to live of a cached result.
+    public static final long DEFAULT_TTL = 1000L * 60 * 60 * 24 * 30; // 30 days
+
+    private final ReverseGeocoder mGeocoder;
+    private final GeocodeCacheDao mDao;
+    private final long mTtl;
+    // Access ordered map, eldest entry is the least recently used one.
+    private final Map<String, CachedPlace> mMemory;
+
+    private final AtomicLong mMemoryHits = new AtomicLong();
+    private final AtomicLong mDiskHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    public CachedReverseGeocoder(@NonNull ReverseGeocoder geocoder, @NonNull GeocodeCacheDao dao) {
+        this(geocoder, dao, DEFAULT_MEMORY_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param geocoder   Geocoder called on cache miss.
+     * @param dao        Dao of the persistent cache table.
+     * @param memorySize Maximum number of results kept in memory.
+     * @param ttl        Time to live of a result in milliseconds.
+     */
+    public CachedReverseGeocoder(@NonNull ReverseGeocoder geocoder, @NonNull GeocodeCacheDao dao, final int memorySize, long ttl) {
+        this.mGeocoder = geocoder;
+        this.mDao = dao;
+        this.mTtl = ttl;
+        this.mMemory = new LinkedHashMap<String, CachedPlace>(memorySize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPlace> eldest) {
+                return size() > memorySize;
+            }
+        };
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude) throws IOException {
+        return getAddress(latitude, longitude, Cancellation.NONE);
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude, @NonNull Cancellation cancellation) throws IOException {
+        String key = Geohash.encode(latitude, longitude, KEY_PRECISION);
+        long now = System.currentTimeMillis();
+
+        CachedPlace place;
+        synchronized (mMemory) {
+            place = mMemory.get(key);
+        }
+        if (place != null && !isExpired(place, now)) {
+            mMemoryHits.incrementAndGet();
+            return place.getAddress();
+        }
+
+        place = mDao.get(key);
+        if (place != null && !isExpired(place, now)) {
+            mDiskHits.incrementAndGet();
+            synchronized (mMemory) {
+                mMemory.put(key, place);
+            }
+            return place.getAddress();
+        }
+
+        mMisses.incrementAndGet();
+        String address = mGeocoder.getAddress(latitude, longitude, cancellation);
+        // Checked before the write and not during it, a cancelled lookup leaves the table untouched
+        if (cancellation.isCancelled()) {
+            throw new CancellationException("Geocoding cancelled");
+        }
+        place = new CachedPlace(key, address, now);
+        mDao.insert(place);
+        synchronized (mMemory) {
+            mMemory.put(key, place);
+        }
+        return place.getAddress();
+    }
+
+    /**
+     * Deletes expired results from the persistent cache table.
+     *
+     * @return Number of deleted results.
+     */
+    @WorkerThread
+    public int evictExpired() {
+        return mDao.deleteOlderThan(System.currentTimeMillis() - mTtl);
+    }
+
+    /**
+     * Returns a snapshot of the hit and miss counters.
+     */
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mMemoryHits.get(), mDiskHits.get(), mMisses.get());
+    }
+
+    private boolean isExpired(CachedPlace place, long now) {
+        return now - place.getCreatedAt() > mTtl;
+    }
+
+    /**
+     * Hit and miss counters of a {@link CachedReverseGeocoder}.
+     */
+    public static class Stats {
+        private final long memoryHits;
+        private final long diskHits;
+        private final long misses;
+
+        Stats(long memoryHits, long diskHits, long misses) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+        }
+
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Returns ratio of lookups answered without calling the geocoder, 0 if there is no lookup.
+         */
+        public double getHitRate() {
+            long total = memoryHits + diskHits + misses;
+            return total > 0 ? (double) (memoryHits + diskHits) / total : 0;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Stats {memoryHits = '%d', diskHits = '%d', misses = '%d', hitRate = '%.2f'}",
+                    memoryHits, diskHits, misses, getHitRate());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.alimjan.geofence.geocode;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import timber.log.Timber;
+
+/**
+ * A {@link ReverseGeocoder} that asks a primary geocoder first and falls back to a secondary one
+ * when the primary fails or knows no place at the coordinate. A cancelled lookup doesn't fall back.
+ */
+public class FallbackReverseGeocoder implements ReverseGeocoder {
+    private final ReverseGeocoder mPrimary;
+    private final ReverseGeocoder mFallback;
+
+    public FallbackReverseGeocoder(@NonNull ReverseGeocoder primary, @NonNull ReverseGeocoder fallback) {
+        this.mPrimary = primary;
+        this.mFallback = fallback;
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude) throws IOException {
+        return getAddress(latitude, longitude, Cancellation.NONE);
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude, @NonNull Cancellation cancellation) throws IOException {
+        try {
+            String address = mPrimary.getAddress(latitude, longitude, cancellation);
+            if (address != null) {
+                return address;
+            }
+        } catch (IOException e) {
+            Timber.w("Primary geocoder failed, falling back: %s", e.getMessage());
+        }
+        if (cancellation.isCancelled()) {
+            throw new CancellationException("Geocoding cancelled");
+        }
+        return mFallback.getAddress(latitude, longitude, cancellation);
+    }
+}
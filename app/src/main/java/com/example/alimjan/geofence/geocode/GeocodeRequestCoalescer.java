@@ -0,0 +1,168 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.example.alimjan.geofence.model.Place;
+import com.example.alimjan.geofence.model.Point;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.PublishSubject;
+import timber.log.Timber;
+
+/**
+ * Turns a stream of selected points into reverse geocoding lookups. Points selected in quick
+ * succession are debounced so only the last one of a burst is looked up, and a lookup still in
+ * flight when a newer point arrives is cancelled, so only the result of the latest point is ever
+ * delivered and results can't arrive out of order.
+ * <p>
+ * A cancelled lookup is told through its {@link ReverseGeocoder.Cancellation} flag and never
+ * interrupted, so it can't be torn down in the middle of a cache read or write.
+ */
+public class GeocodeRequestCoalescer {
+    // Default time a point has to stay selected before it is looked up.
+    public static final long DEFAULT_DEBOUNCE = 250; // 250 milliseconds
+
+    private final PublishSubject<Point> mPoints = PublishSubject.create();
+    private final Disposable mDisposable;
+
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mLookups = new AtomicLong();
+    private final AtomicLong mCancelled = new AtomicLong();
+    private final AtomicLong mDelivered = new AtomicLong();
+
+    /**
+     * @param geocoder       Geocoder the lookups go to.
+     * @param debounceMillis Time a point has to stay selected before it is looked up.
+     * @param scheduler      Scheduler that times debounce and runs lookups, typically io.
+     * @param consumer       Receives a place for every delivered lookup, address of the place is
+     *                       null if there is no known place at the point.
+     */
+    public GeocodeRequestCoalescer(@NonNull ReverseGeocoder geocoder, long debounceMillis, @NonNull Scheduler scheduler,
+                                   @NonNull Consumer<Place> consumer) {
+        this.mDisposable = mPoints
+                .debounce(debounceMillis, TimeUnit.MILLISECONDS, scheduler)
+                // Switching disposes the lookup of the previous point
+                .switchMapMaybe(point -> lookup(geocoder, point, scheduler))
+                .subscribe(place -> {
+                    mDelivered.incrementAndGet();
+                    consumer.accept(place);
+                });
+    }
+
+    /**
+     * Requests the place of a point, supersedes every earlier request.
+     */
+    public void request(@NonNull Point point) {
+        mRequests.incrementAndGet();
+        mPoints.onNext(point);
+    }
+
+    /**
+     * Cancels pending lookup and stops accepting requests.
+     */
+    public void dispose() {
+        mDisposable.dispose();
+    }
+
+    /**
+     * Returns a snapshot of the request counters.
+     */
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mRequests.get(), mLookups.get(), mCancelled.get(), mDelivered.get());
+    }
+
+    private Maybe<Place> lookup(ReverseGeocoder geocoder, Point point, Scheduler scheduler) {
+        // Scheduled directly instead of subscribeOn, disposing the subscription would interrupt it
+        return Maybe.create(emitter -> scheduler.scheduleDirect(() -> {
+            if (emitter.isDisposed()) {
+                return;
+            }
+            mLookups.incrementAndGet();
+            try {
+                String address = geocoder.getAddress(point.getLatitude(), point.getLongitude(), emitter::isDisposed);
+                if (emitter.isDisposed()) {
+                    mCancelled.incrementAndGet();
+                    return;
+                }
+                Place place = new Place();
+                place.setAddress(address);
+                place.setPoint(point);
+                emitter.onSuccess(place);
+            } catch (Exception e) {
+                if (emitter.isDisposed()) {
+                    mCancelled.incrementAndGet();
+                } else {
+                    // A failed lookup delivers nothing, next selection retries
+                    Timber.e("Geocoding Failure: %s", e.getMessage());
+                    emitter.onComplete();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Request counters of a {@link GeocodeRequestCoalescer}.
+     */
+    public static class Stats {
+        private final long requests;
+        private final long lookups;
+        private final long cancelled;
+        private final long delivered;
+
+        Stats(long requests, long lookups, long cancelled, long delivered) {
+            this.requests = requests;
+            this.lookups = lookups;
+            this.cancelled = cancelled;
+            this.delivered = delivered;
+        }
+
+        /**
+         * Returns number of requested points.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Returns number of lookups that reached the geocoder.
+         */
+        public long getLookups() {
+            return lookups;
+        }
+
+        /**
+         * Returns number of lookups cancelled while in flight.
+         */
+        public long getCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Returns number of places delivered.
+         */
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /**
+         * Returns number of requests that never reached the geocoder.
+         */
+        public long getSaved() {
+            return requests - lookups;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Stats {requests = '%d', lookups = '%d', saved = '%d', cancelled = '%d', delivered = '%d'}",
+                    requests, lookups, getSaved(), cancelled, delivered);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.mapbox.api.geocoding.v5.GeocodingCriteria;
+import com.mapbox.api.geocoding.v5.MapboxGeocoding;
+import com.mapbox.api.geocoding.v5.models.CarmenFeature;
+import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
+import com.mapbox.core.exceptions.ServicesException;
+import com.mapbox.geojson.Point;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A {@link ReverseGeocoder} backed by Mapbox geocoding api, it returns name of the nearest point
+ * of interest. Cancelling the lookup cancels the http call.
+ */
+public class MapboxReverseGeocoder implements ReverseGeocoder {
+    // Interval at which a waiting lookup checks whether it is cancelled.
+    private static final long CANCELLATION_POLL = 100; // 100 milliseconds
+
+    private final String mAccessToken;
+
+    public MapboxReverseGeocoder(@NonNull String accessToken) {
+        this.mAccessToken = accessToken;
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude) throws IOException {
+        return getAddress(latitude, longitude, Cancellation.NONE);
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude, @NonNull Cancellation cancellation) throws IOException {
+        MapboxGeocoding client;
+        try {
+            client = MapboxGeocoding.builder()
+                    .accessToken(this.mAccessToken)
+                    .query(Point.fromLngLat(longitude, latitude))
+                    .geocodingTypes(GeocodingCriteria.TYPE_POI)
+                    .mode(GeocodingCriteria.MODE_PLACES)
+                    .build();
+        } catch (ServicesException e) {
+            throw new IOException(e);
+        }
+
+        // Enqueue and wait instead of executing, so that the wait can be cancelled
+        ResponseCallback callback = new ResponseCallback();
+        client.enqueueCall(callback);
+        try {
+            while (!callback.mLatch.await(CANCELLATION_POLL, TimeUnit.MILLISECONDS)) {
+                if (cancellation.isCancelled()) {
+                    client.cancelCall();
+                    throw new CancellationException("Geocoding cancelled");
+                }
+            }
+        } catch (InterruptedException e) {
+            client.cancelCall();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Geocoding cancelled");
+        }
+        if (callback.mThrowable != null) {
+            throw callback.mThrowable instanceof IOException
+                    ? (IOException) callback.mThrowable : new IOException(callback.mThrowable);
+        }
+
+        Response<GeocodingResponse> response = callback.mResponse;
+        if (!response.isSuccessful() || response.body() == null) {
+            throw new IOException("Geocoding failed with HTTP " + response.code());
+        }
+        List<CarmenFeature> results = response.body().features();
+        // First feature is the best match
+        return results.size() > 0 ? results.get(0).placeName() : null;
+    }
+
+    private static class ResponseCallback implements Callback<GeocodingResponse> {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile Response<GeocodingResponse> mResponse;
+        private volatile Throwable mThrowable;
+
+        @Override
+        public void onResponse(@NonNull Call<GeocodingResponse> call, @NonNull Response<GeocodingResponse> response) {
+            this.mResponse = response;
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onFailure(@NonNull Call<GeocodingResponse> call, @NonNull Throwable throwable) {
+            this.mThrowable = throwable;
+            mLatch.countDown();
+        }
+    }
+}
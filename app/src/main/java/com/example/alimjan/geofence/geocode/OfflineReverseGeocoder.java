@@ -0,0 +1,124 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.KdTree;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import timber.log.Timber;
+
+/**
+ * A {@link ReverseGeocoder} that answers from a local gazetteer without network access, it returns
+ * name of the nearest gazetteer place. The gazetteer is loaded into a {@link KdTree} on first
+ * lookup, a failed load is remembered and fails every later lookup without reading again.
+ * <p>
+ * Gazetteer is a UTF-8 text file with one place per line as {@code name<TAB>latitude<TAB>longitude},
+ * lines starting with {@code #} and lines that can't be parsed are ignored.
+ */
+public class OfflineReverseGeocoder implements ReverseGeocoder {
+    // Default distance beyond which the nearest place is not considered the address.
+    public static final double DEFAULT_MAX_DISTANCE = 5000; // 5 kilometers
+
+    /**
+     * Opens the gazetteer file.
+     */
+    public interface Source {
+        @NonNull
+        Reader open() throws IOException;
+    }
+
+    private final Source mSource;
+    private final double mMaxDistance;
+    private String[] mNames;
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private KdTree mTree;
+    private IOException mLoadFailure;
+
+    /**
+     * @param source      Source of the gazetteer.
+     * @param maxDistance Distance in meters beyond which the nearest place is not considered the
+     *                    address.
+     */
+    public OfflineReverseGeocoder(@NonNull Source source, double maxDistance) {
+        this.mSource = source;
+        this.mMaxDistance = maxDistance;
+    }
+
+    @Nullable
+    @Override
+    public String getAddress(double latitude, double longitude) throws IOException {
+        KdTree tree = load();
+        int nearest = tree.nearest(latitude, longitude);
+        if (nearest < 0 || GeoMath.distance(latitude, longitude, mLatitudes[nearest], mLongitudes[nearest]) > mMaxDistance) {
+            return null;
+        }
+        return mNames[nearest];
+    }
+
+    /**
+     * Loads the gazetteer if it is not loaded yet.
+     */
+    private synchronized KdTree load() throws IOException {
+        if (mTree != null) {
+            return mTree;
+        }
+        if (mLoadFailure != null) {
+            throw new IOException("Gazetteer unavailable", mLoadFailure);
+        }
+        try {
+            mTree = read();
+        } catch (IOException e) {
+            mLoadFailure = e;
+            throw e;
+        }
+        return mTree;
+    }
+
+    private KdTree read() throws IOException {
+        long start = System.nanoTime();
+        List<String> names = new ArrayList<>();
+        double[] latitudes = new double[1024];
+        double[] longitudes = new double[1024];
+        try (BufferedReader reader = new BufferedReader(mSource.open())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                int first = line.indexOf('\t');
+                int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+                if (second < 0) {
+                    continue;
+                }
+                int end = line.indexOf('\t', second + 1);
+                try {
+                    double latitude = Double.parseDouble(line.substring(first + 1, second));
+                    double longitude = Double.parseDouble(end < 0 ? line.substring(second + 1) : line.substring(second + 1, end));
+                    if (names.size() == latitudes.length) {
+                        latitudes = Arrays.copyOf(latitudes, latitudes.length * 2);
+                        longitudes = Arrays.copyOf(longitudes, longitudes.length * 2);
+                    }
+                    latitudes[names.size()] = latitude;
+                    longitudes[names.size()] = longitude;
+                    names.add(line.substring(0, first));
+                } catch (NumberFormatException ignored) {
+                    // Not a place line
+                }
+            }
+        }
+        mNames = names.toArray(new String[0]);
+        mLatitudes = Arrays.copyOf(latitudes, names.size());
+        mLongitudes = Arrays.copyOf(longitudes, names.size());
+        KdTree tree = new KdTree(mLatitudes, mLongitudes);
+        Timber.d("Gazetteer loaded: %d places in %dms", mNames.length, (System.nanoTime() - start) / 1000000);
+        return tree;
+    }
+}
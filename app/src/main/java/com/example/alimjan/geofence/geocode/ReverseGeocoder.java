@@ -0,0 +1,54 @@
+package com.example.alimjan.geofence.geocode;
+
+import java.io.IOException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Converts a coordinate to a human readable address. Lookups are cancelled through a
+ * {@link Cancellation} flag that implementations check between the steps of a lookup, a lookup
+ * thread is never interrupted so a step such as a cache write always runs to its end.
+ */
+public interface ReverseGeocoder {
+
+    /**
+     * Tells a running lookup whether its result is still wanted.
+     */
+    interface Cancellation {
+        // A lookup that is never cancelled.
+        Cancellation NONE = () -> false;
+
+        boolean isCancelled();
+    }
+
+    /**
+     * Looks up the address of a coordinate synchronously.
+     *
+     * @param latitude  Latitude.
+     * @param longitude Longitude.
+     * @return Address of the coordinate, null if there is no known place at the coordinate.
+     * @throws IOException If the lookup failed, for example there is no network connection.
+     */
+    @Nullable
+    @WorkerThread
+    String getAddress(double latitude, double longitude) throws IOException;
+
+    /**
+     * Looks up the address of a coordinate synchronously and stops at the next step once the
+     * lookup is cancelled. By default the flag is ignored and the lookup runs to its end.
+     *
+     * @param latitude     Latitude.
+     * @param longitude    Longitude.
+     * @param cancellation Flag checked between the steps of the lookup.
+     * @return Address of the coordinate, null if there is no known place at the coordinate.
+     * @throws IOException                                If the lookup failed.
+     * @throws java.util.concurrent.CancellationException If the lookup stopped because it was cancelled.
+     */
+    @Nullable
+    @WorkerThread
+    default String getAddress(double latitude, double longitude, @NonNull Cancellation cancellation) throws IOException {
+        return getAddress(latitude, longitude);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.alimjan.geofence.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Parcelable adapter of a {@link Geofence}, which lives in the Android free core module, for
+ * passing geofences through intents and saved instance state.
+ * <p>
+ * No screen or intent of the app passes a geofence yet, they pass ids. The adapter is kept for
+ * saved instance state of future screens and is measured by the parcel benchmark of the
+ * benchmark module, which compiles this file.
+ */
+public class ParcelableGeofence implements Parcelable {
+    private final Geofence geofence;
+
+    public ParcelableGeofence(@NonNull Geofence geofence) {
+        this.geofence = geofence;
+    }
+
+    protected ParcelableGeofence(Parcel in) {
+        long id = in.readLong();
+        String address = in.readString();
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        long expireTime = in.readLong();
+        this.geofence = new Geofence(address, latitude, longitude, expireTime);
+        this.geofence.setId(id);
+        this.geofence.setTriggered(in.readByte() != 0);
+        this.geofence.setRadius(in.readDouble());
+    }
+
+    @NonNull
+    public Geofence getGeofence() {
+        return geofence;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(geofence.getId());
+        dest.writeString(geofence.getAddress());
+        dest.writeDouble(geofence.getLatitude());
+        dest.writeDouble(geofence.getLongitude());
+        dest.writeLong(geofence.getExpireTime());
+        dest.writeByte((byte) (geofence.isTriggered() ? 1 : 0));
+        dest.writeDouble(geofence.getRadius());
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<ParcelableGeofence> CREATOR = new Creator<ParcelableGeofence>() {
+        @Override
+        public ParcelableGeofence createFromParcel(Parcel in) {
+            return new ParcelableGeofence(in);
+        }
+
+        @Override
+        public ParcelableGeofence[] newArray(int size) {
+            return new ParcelableGeofence[size];
+        }
+    };
+}
@@ -0,0 +1,22 @@
+package com.example.alimjan.geofence.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * A BroadcastReceiver that requests location updates again after a reboot or an app upgrade,
+ * both drop the location request that feeds geofence engine.
+ */
+public class BootReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action) || Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            // Keep the receiver alive until the geofence table is checked
+            PendingResult result = goAsync();
+            LocationUpdates.restore(context, result::finish);
+        }
+    }
+}
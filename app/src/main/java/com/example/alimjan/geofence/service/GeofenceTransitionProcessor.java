@@ -0,0 +1,485 @@
+package com.example.alimjan.geofence.service;
+
+import android.content.Context;
+
+import com.example.alimjan.geofence.data.GeofenceRepository;
+import com.example.alimjan.geofence.data.TransitionEventLog;
+import com.example.alimjan.geofence.db.GeofenceDao;
+import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+import com.example.alimjan.geofence.model.GeofenceState;
+import com.example.alimjan.geofence.ui.notification.GeofenceNotificationDispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import timber.log.Timber;
+
+/**
+ * Handles geofence transitions in batches. Location fixes and legacy proximity alerts are queued
+ * as they arrive and drained by a single worker, everything queued while a batch is processed
+ * forms the next batch. A batch evaluates its fixes with {@link GeofenceEngine}, resolves every
+ * geofence involved with one query, writes all triggered state changes in one transaction and
+ * then hands the transitions to a {@link Listener}, so a burst of transitions costs a couple of
+ * database round trips instead of a couple per transition.
+ * <p>
+ * Engine state changed by a batch is stored after its triggered state, a restarted process seeds
+ * the engine with it so geofences entered before the restart aren't entered again.
+ */
+public class GeofenceTransitionProcessor {
+    // Largest number of queued events handled in one batch.
+    public static final int MAX_BATCH_SIZE = 500;
+    // Largest number of ids bound to a single query, below SQLite variable limit.
+    private static final int MAX_QUERY_IDS = 900;
+
+    private static GeofenceTransitionProcessor INSTANCE;
+
+    /**
+     * Geofence storage used by the processor.
+     */
+    public interface Store {
+
+        /**
+         * Returns all geofences, used once to load the engine.
+         */
+        @NonNull
+        List<Geofence> getGeofences();
+
+        /**
+         * Returns geofences associated with ids, missing ids are left out.
+         *
+         * @param ids At most {@link #MAX_QUERY_IDS} ids.
+         */
+        @NonNull
+        List<Geofence> getGeofences(@NonNull List<Long> ids);
+
+        /**
+         * Marks geofences triggered in a single transaction.
+         */
+        void setTriggered(@NonNull List<Long> ids);
+
+        /**
+         * Returns stored engine states, used once to load the engine.
+         */
+        @NonNull
+        List<GeofenceState> getStates();
+
+        /**
+         * Stores changed engine states in a single transaction, empty states are deleted.
+         */
+        void saveStates(@NonNull List<GeofenceState> states);
+    }
+
+    /**
+     * Receives transitions of every batch on the worker thread.
+     */
+    public interface Listener {
+
+        /**
+         * @param transitions Transitions in arrival order with current geofence data.
+         */
+        @WorkerThread
+        void onTransitions(@NonNull List<GeofenceTransition> transitions);
+
+        /**
+         * Called once the queue is empty, before callbacks of the last batch run, so anything
+         * buffered can be written before the host of the processor stops.
+         */
+        @WorkerThread
+        default void onDrained() {
+        }
+    }
+
+    private final Store mStore;
+    private final GeofenceEngine mEngine;
+    private final Listener mListener;
+    private final Executor mExecutor;
+
+    // Events waiting for a batch, guarded by itself.
+    private final List<Event> mPending = new ArrayList<>();
+    // Indicates a drain is scheduled or running, guarded by mPending.
+    private boolean mDraining;
+
+    private final AtomicLong mBatches = new AtomicLong();
+    private final AtomicLong mEvents = new AtomicLong();
+    private final AtomicLong mTransitions = new AtomicLong();
+    private final AtomicLong mTotalLatency = new AtomicLong();
+    private final AtomicLong mMaxLatency = new AtomicLong();
+    private final AtomicLong mLastLatency = new AtomicLong();
+
+    /**
+     * Returns process wide processor instance, transitions are written to the app database and
+     * shown as notifications.
+     */
+    public static GeofenceTransitionProcessor getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (GeofenceTransitionProcessor.class) {
+                if (INSTANCE == null) {
+                    Context applicationContext = context.getApplicationContext();
+                    GeofenceDataBase dataBase = GeofenceDataBase.getInstance(applicationContext);
+                    TransitionEventLog log = TransitionEventLog.getInstance(applicationContext);
+                    GeofenceNotificationDispatcher dispatcher = GeofenceNotificationDispatcher.getInstance(applicationContext);
+                    INSTANCE = new GeofenceTransitionProcessor(new DaoStore(dataBase), GeofenceEngine.getInstance(),
+                            new Listener() {
+                                @Override
+                                public void onTransitions(@NonNull List<GeofenceTransition> transitions) {
+                                    for (GeofenceTransition transition : transitions) {
+                                        log.append(transition);
+                                    }
+                                    dispatcher.dispatch(transitions);
+                                }
+
+                                @Override
+                                public void onDrained() {
+                                    // The service stops once callbacks run, buffered events would wait for a later process
+                                    log.flush();
+                                }
+                            },
+                            Executors.newSingleThreadExecutor());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public GeofenceTransitionProcessor(@NonNull Store store, @NonNull GeofenceEngine engine, @NonNull Listener listener,
+                                       @NonNull Executor executor) {
+        this.mStore = store;
+        this.mEngine = engine;
+        this.mListener = listener;
+        this.mExecutor = executor;
+    }
+
+    /**
+     * Queues a location fix, it is evaluated against all geofences in the next batch.
+     *
+     * @param accuracy    Accuracy of the fix in meters, negative when unknown.
+     * @param onProcessed Called on the worker thread once the batch holding the fix is processed.
+     */
+    public void submitLocation(double latitude, double longitude, float accuracy, long time, @Nullable Runnable onProcessed) {
+        submit(new Event(latitude, longitude, accuracy, time, -1, null, onProcessed));
+    }
+
+    /**
+     * Queues a transition reported by a proximity alert.
+     *
+     * @param id          Id of the geofence.
+     * @param entering    True for enter, false for exit.
+     * @param onProcessed Called on the worker thread once the batch holding the transition is
+     *                    processed.
+     */
+    public void submitProximity(long id, boolean entering, long time, @Nullable Runnable onProcessed) {
+        submit(new Event(0, 0, -1, time, id, entering ? GeofenceTransition.Type.ENTER : GeofenceTransition.Type.EXIT, onProcessed));
+    }
+
+    /**
+     * Returns a snapshot of the batch counters.
+     */
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mBatches.get(), mEvents.get(), mTransitions.get(), mTotalLatency.get(), mMaxLatency.get(),
+                mLastLatency.get());
+    }
+
+    private void submit(Event event) {
+        synchronized (mPending) {
+            mPending.add(event);
+            if (mDraining) {
+                return;
+            }
+            mDraining = true;
+        }
+        mExecutor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            List<Event> batch;
+            synchronized (mPending) {
+                if (mPending.isEmpty()) {
+                    mDraining = false;
+                    return;
+                }
+                List<Event> head = mPending.subList(0, Math.min(MAX_BATCH_SIZE, mPending.size()));
+                batch = new ArrayList<>(head);
+                head.clear();
+            }
+            try {
+                process(batch);
+            } catch (Exception e) {
+                // A failed batch is dropped, like a failed intent of an IntentService
+                Timber.e(e);
+            }
+            boolean drained;
+            synchronized (mPending) {
+                drained = mPending.isEmpty();
+            }
+            if (drained) {
+                try {
+                    mListener.onDrained();
+                } catch (Exception e) {
+                    Timber.e(e);
+                }
+            }
+            for (Event event : batch) {
+                if (event.onProcessed != null) {
+                    event.onProcessed.run();
+                }
+            }
+        }
+    }
+
+    private void process(List<Event> batch) {
+        long start = System.nanoTime();
+        if (!mEngine.isLoaded()) {
+            mEngine.setGeofences(mStore.getGeofences(), mStore.getStates());
+        }
+
+        // Collect transitions in arrival order, geofences are resolved afterwards
+        List<Long> ids = new ArrayList<>();
+        List<GeofenceTransition.Type> types = new ArrayList<>();
+        List<Event> causes = new ArrayList<>();
+        for (Event event : batch) {
+            if (event.type == null) {
+                for (GeofenceTransition transition : mEngine.onLocation(event.latitude, event.longitude, event.accuracy, event.time)) {
+                    ids.add(transition.getGeofence().getId());
+                    types.add(transition.getType());
+                    causes.add(event);
+                }
+            } else {
+                ids.add(event.id);
+                types.add(event.type);
+                causes.add(event);
+            }
+        }
+
+        List<GeofenceTransition> transitions = Collections.emptyList();
+        if (!ids.isEmpty()) {
+            Map<Long, Geofence> geofences = resolve(new ArrayList<>(new LinkedHashSet<>(ids)));
+
+            // Exiting a geofence means all of its actions are triggered
+            Set<Long> triggered = new LinkedHashSet<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Geofence geofence = geofences.get(ids.get(i));
+                if (types.get(i) == GeofenceTransition.Type.EXIT && geofence != null && !geofence.isTriggered()) {
+                    triggered.add(geofence.getId());
+                }
+            }
+            if (!triggered.isEmpty()) {
+                mStore.setTriggered(new ArrayList<>(triggered));
+                for (Long id : triggered) {
+                    geofences.get(id).setTriggered(true);
+                }
+            }
+
+            // Transitions of removed geofences are dropped
+            transitions = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Geofence geofence = geofences.get(ids.get(i));
+                if (geofence != null) {
+                    transitions.add(new GeofenceTransition(geofence, types.get(i), causes.get(i).time, causes.get(i).accuracy));
+                }
+            }
+        }
+
+        // Stored after triggered state, losing the process in between repeats a transition instead
+        // of losing a trigger
+        List<GeofenceState> states = mEngine.drainStateChanges();
+        if (!states.isEmpty()) {
+            mStore.saveStates(states);
+        }
+        if (!transitions.isEmpty()) {
+            mListener.onTransitions(transitions);
+        }
+
+        long latency = (System.nanoTime() - start) / 1000000;
+        mBatches.incrementAndGet();
+        mEvents.addAndGet(batch.size());
+        mTransitions.addAndGet(transitions.size());
+        mTotalLatency.addAndGet(latency);
+        mLastLatency.set(latency);
+        long max;
+        while ((max = mMaxLatency.get()) < latency && !mMaxLatency.compareAndSet(max, latency)) {
+            // Retry until the larger latency is stored
+        }
+        Timber.d("process: %d events, %d transitions in %dms", batch.size(), transitions.size(), latency);
+    }
+
+    /**
+     * Returns geofences keyed by id, one query unless there are more ids than a query can bind.
+     */
+    private Map<Long, Geofence> resolve(List<Long> ids) {
+        Map<Long, Geofence> geofences = new HashMap<>(ids.size() * 2);
+        for (int start = 0; start < ids.size(); start += MAX_QUERY_IDS) {
+            for (Geofence geofence : mStore.getGeofences(ids.subList(start, Math.min(start + MAX_QUERY_IDS, ids.size())))) {
+                geofences.put(geofence.getId(), geofence);
+            }
+        }
+        return geofences;
+    }
+
+    /**
+     * A queued location fix or proximity alert transition.
+     */
+    private static class Event {
+        private final double latitude;
+        private final double longitude;
+        private final float accuracy;
+        private final long time;
+        private final long id;
+        // Null for a location fix.
+        private final GeofenceTransition.Type type;
+        private final Runnable onProcessed;
+
+        Event(double latitude, double longitude, float accuracy, long time, long id, GeofenceTransition.Type type,
+              Runnable onProcessed) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.time = time;
+            this.id = id;
+            this.type = type;
+            this.onProcessed = onProcessed;
+        }
+    }
+
+    /**
+     * A {@link Store} backed by the app database, or by any other instance of it such as an
+     * in-memory database.
+     */
+    public static class DaoStore implements Store {
+        private final GeofenceDataBase mDataBase;
+        private final GeofenceDao mDao;
+
+        public DaoStore(@NonNull GeofenceDataBase dataBase) {
+            this.mDataBase = dataBase;
+            this.mDao = dataBase.getDao();
+        }
+
+        @NonNull
+        @Override
+        public List<Geofence> getGeofences() {
+            return mDao.getGeofences();
+        }
+
+        @NonNull
+        @Override
+        public List<Geofence> getGeofences(@NonNull List<Long> ids) {
+            return mDao.getGeofences(ids);
+        }
+
+        @Override
+        public void setTriggered(@NonNull List<Long> ids) {
+            mDataBase.runInTransaction(() -> {
+                for (int start = 0; start < ids.size(); start += MAX_QUERY_IDS) {
+                    mDao.setTriggered(ids.subList(start, Math.min(start + MAX_QUERY_IDS, ids.size())), true);
+                }
+            });
+            // Only the written rows are read back for subscribers of geofence changes
+            for (int start = 0; start < ids.size(); start += MAX_QUERY_IDS) {
+                GeofenceRepository.publishChanges(GeofenceChangeSet.updated(
+                        mDao.getGeofences(ids.subList(start, Math.min(start + MAX_QUERY_IDS, ids.size())))));
+            }
+        }
+
+        @NonNull
+        @Override
+        public List<GeofenceState> getStates() {
+            return mDataBase.getStateDao().getStates();
+        }
+
+        @Override
+        public void saveStates(@NonNull List<GeofenceState> states) {
+            mDataBase.runInTransaction(() -> {
+                for (int start = 0; start < states.size(); start += MAX_QUERY_IDS) {
+                    mDataBase.getStateDao().saveStates(states.subList(start, Math.min(start + MAX_QUERY_IDS, states.size())));
+                }
+            });
+        }
+    }
+
+    /**
+     * Batch counters of a {@link GeofenceTransitionProcessor}.
+     */
+    public static class Stats {
+        private final long batches;
+        private final long events;
+        private final long transitions;
+        private final long totalLatency;
+        private final long maxLatency;
+        private final long lastLatency;
+
+        Stats(long batches, long events, long transitions, long totalLatency, long maxLatency, long lastLatency) {
+            this.batches = batches;
+            this.events = events;
+            this.transitions = transitions;
+            this.totalLatency = totalLatency;
+            this.maxLatency = maxLatency;
+            this.lastLatency = lastLatency;
+        }
+
+        /**
+         * Returns number of processed batches.
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Returns number of processed location fixes and proximity alerts.
+         */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * Returns number of delivered transitions.
+         */
+        public long getTransitions() {
+            return transitions;
+        }
+
+        /**
+         * Returns average time in milliseconds a batch took to process.
+         */
+        public double getAverageLatency() {
+            return batches > 0 ? (double) totalLatency / batches : 0;
+        }
+
+        /**
+         * Returns longest time in milliseconds a batch took to process.
+         */
+        public long getMaxLatency() {
+            return maxLatency;
+        }
+
+        /**
+         * Returns time in milliseconds the last batch took to process.
+         */
+        public long getLastLatency() {
+            return lastLatency;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Stats {batches = '%d', events = '%d', transitions = '%d', average latency = '%.1fms', max latency = '%dms'}",
+                    batches, events, transitions, getAverageLatency(), maxLatency);
+        }
+    }
+}
@@ -1,74 +1,72 @@
 package com.example.alimjan.geofence.service;
 
-import android.app.IntentService;
-import android.content.Context;
+import android.app.Service;
 import android.content.Intent;
+import android.location.Location;
 import android.location.LocationManager;
+import android.os.IBinder;
 
-import com.example.alimjan.geofence.R;
-import com.example.alimjan.geofence.data.GeofenceRepository;
-import com.example.alimjan.geofence.db.GeofenceDao;
-import com.example.alimjan.geofence.db.GeofenceDataBase;
-import com.example.alimjan.geofence.model.Geofence;
-import com.example.alimjan.geofence.ui.notification.GeofenceNotification;
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.ui.notification.GeofenceNotificationDispatcher;
+
+import androidx.annotation.Nullable;
 
 /**
- * An IntentService that handles geofence updateAsync from LocationManager.
+ * A Service that receives location updates from LocationManager and hands them to
+ * {@link GeofenceTransitionProcessor}, which evaluates them with {@link GeofenceEngine} and
+ * handles resulting geofence transitions in batches. After each fix {@link LocationUpdates} picks
+ * cadence of next fixes. The service stops itself once every delivered intent is processed and no
+ * notification post is delayed, the processor has flushed buffered transition events by then.
  */
-public class GeofenceTransitionsService extends IntentService {
+public class GeofenceTransitionsService extends Service {
 
     // Key for data transfer
     public static final String KEY_ID = "id";
+    // Action of location updates that feed geofence engine.
+    public static final String ACTION_LOCATION_UPDATE = "com.example.alimjan.geofence.action.LOCATION_UPDATE";
 
-    // Repository that handles all the data related to geofence
-    private GeofenceRepository mRepository;
-
-    public GeofenceTransitionsService() {
-        super("GeofenceTransitionsService");
-    }
+    // Processor shared by every delivered intent
+    private GeofenceTransitionProcessor mProcessor;
+    // Dispatcher whose delayed posts the service waits for
+    private GeofenceNotificationDispatcher mDispatcher;
 
     @Override
     public void onCreate() {
         super.onCreate();
-
-        // Initialize repository and updateAsync the geofence data
-        Context context = getApplicationContext();
-        GeofenceDao geofenceDao = GeofenceDataBase.getInstance(context).getDao();
-        this.mRepository = new GeofenceRepository(context, geofenceDao);
+        this.mProcessor = GeofenceTransitionProcessor.getInstance(getApplicationContext());
+        this.mDispatcher = GeofenceNotificationDispatcher.getInstance(getApplicationContext());
     }
 
     @Override
-    protected void onHandleIntent(Intent intent) {
-        if (intent != null) {
-            // Extract data from intent
-            // Indicating enter when flag is true, exit when flag is false
-            boolean triggerFlag = intent.getBooleanExtra(LocationManager.KEY_PROXIMITY_ENTERING, false);
-            long id = intent.getLongExtra(KEY_ID, -1);
-            Geofence geofence = this.mRepository.getGeofence(id);
-
-            // If this is a exit trigger which means all geofence action triggered and data should be
-            // updated.
-            if (!triggerFlag) {
-                geofence.setTriggered(true);
-                this.mRepository.updateGeofenceAsync(geofence);
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        // Stopping with an outdated start id is ignored, so the last processed intent stops the service
+        Runnable onProcessed = () -> this.mDispatcher.whenIdle(() -> stopSelf(startId));
+        if (intent != null && intent.hasExtra(LocationManager.KEY_LOCATION_CHANGED)) {
+            Location location = intent.getParcelableExtra(LocationManager.KEY_LOCATION_CHANGED);
+            if (location != null) {
+                float accuracy = location.hasAccuracy() ? location.getAccuracy() : -1;
+                // Cadence of next fixes is chosen once the fix is evaluated and geofences are loaded
+                this.mProcessor.submitLocation(location.getLatitude(), location.getLongitude(), accuracy, location.getTime(), () -> {
+                    LocationUpdates.onLocation(getApplicationContext(), location.getLatitude(), location.getLongitude(),
+                            accuracy, location.hasSpeed() ? location.getSpeed() : -1, location.getTime());
+                    onProcessed.run();
+                });
+                return START_NOT_STICKY;
             }
-
-            // Show different message according to flag
-            String title;
-            String message;
-            int notificationId;
-            if (triggerFlag) {
-                notificationId = GeofenceNotification.NOTIFICATION_ID_GEOFENCE_ENTER;
-                title = getString(R.string.title_geofence_enter);
-                message = String.format(getString(R.string.message_geofence_enter_format), geofence.getAddress());
-            } else {
-                notificationId = GeofenceNotification.NOTIFICATION_ID_GEOFENCE_EXIT;
-                title = getString(R.string.title_geofence_exit);
-                message = String.format(getString(R.string.message_geofence_exit_format), geofence.getAddress());
-            }
-
-            // Notify the result of geofence trigger
-            GeofenceNotification.notify(this, title, message, notificationId);
+        } else if (intent != null && intent.hasExtra(LocationManager.KEY_PROXIMITY_ENTERING)) {
+            // Proximity alerts registered by earlier versions keep firing until they expire
+            boolean entering = intent.getBooleanExtra(LocationManager.KEY_PROXIMITY_ENTERING, false);
+            long id = intent.getLongExtra(KEY_ID, -1);
+            this.mProcessor.submitProximity(id, entering, System.currentTimeMillis(), onProcessed);
+            return START_NOT_STICKY;
         }
+        stopSelf(startId);
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
     }
 }
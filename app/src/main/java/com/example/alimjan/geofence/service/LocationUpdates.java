@@ -0,0 +1,151 @@
+package com.example.alimjan.geofence.service;
+
+import android.annotation.SuppressLint;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.location.Criteria;
+import android.location.LocationManager;
+
+import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.engine.SamplingScheduler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+import androidx.core.content.ContextCompat;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
+import static android.Manifest.permission.ACCESS_FINE_LOCATION;
+
+/**
+ * Location updates that feed {@link GeofenceEngine} through {@link GeofenceTransitionsService}.
+ * Cadence and accuracy come from a process wide {@link SamplingScheduler}, the request is replaced
+ * whenever the scheduler picks a different one.
+ */
+public final class LocationUpdates {
+    // Request code of the location update pending intent.
+    private static final int REQUEST_CODE_LOCATION_UPDATE = 0;
+
+    private static SamplingScheduler SCHEDULER;
+
+    private LocationUpdates() {
+    }
+
+    /**
+     * Returns process wide scheduler sampling around geofences of {@link GeofenceEngine}.
+     */
+    @NonNull
+    public static SamplingScheduler getScheduler() {
+        if (SCHEDULER == null) {
+            synchronized (LocationUpdates.class) {
+                if (SCHEDULER == null) {
+                    SCHEDULER = new SamplingScheduler(GeofenceEngine.getInstance());
+                }
+            }
+        }
+        return SCHEDULER;
+    }
+
+    /**
+     * Requests location updates at initial cadence, for example after geofences changed near the
+     * device. Next fix lets the scheduler pick cadence again. Requesting again with the same
+     * pending intent replaces previous request so calling it multiple times is harmless.
+     */
+    @SuppressLint("MissingPermission")
+    @RequiresPermission(anyOf = {ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION})
+    public static void request(@NonNull Context context) {
+        request(context, getScheduler().reset());
+    }
+
+    /**
+     * Requests location updates again when there are geofences to monitor, a location request
+     * doesn't survive a reboot or an app upgrade. Geofence table is checked off the main thread,
+     * nothing is requested without location permission.
+     *
+     * @param onRestored Called on a worker thread once done, whether updates were requested or not.
+     */
+    @SuppressLint("MissingPermission")
+    public static void restore(@NonNull Context context, @Nullable Runnable onRestored) {
+        Context applicationContext = context.getApplicationContext();
+        Schedulers.io().scheduleDirect(() -> {
+            try {
+                if (!hasLocationPermission(applicationContext)) {
+                    Timber.d("restore: No location permission");
+                } else if (GeofenceDataBase.getInstance(applicationContext).getDao().count() > 0) {
+                    request(applicationContext);
+                }
+            } catch (Exception e) {
+                Timber.e(e);
+            } finally {
+                if (onRestored != null) {
+                    onRestored.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands a fix to the scheduler and replaces location request if the scheduler picked a
+     * different one.
+     *
+     * @param accuracy Accuracy of the fix in meters, negative when unknown.
+     * @param speed    Speed of the fix in meters per second, negative when unknown.
+     */
+    @SuppressLint("MissingPermission")
+    public static void onLocation(@NonNull Context context, double latitude, double longitude, float accuracy, float speed,
+                                  long time) {
+        SamplingScheduler scheduler = getScheduler();
+        SamplingScheduler.Request previous = scheduler.getRequest();
+        SamplingScheduler.Request request = scheduler.onLocation(latitude, longitude, accuracy, speed, time);
+        if (request != previous) {
+            try {
+                request(context, request);
+            } catch (SecurityException e) {
+                // Permission revoked since the fix, nothing to request
+                Timber.e(e);
+            }
+        }
+    }
+
+    /**
+     * Stops location updates, for example when there is no geofence left.
+     */
+    public static void remove(@NonNull Context context) {
+        LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        if (locationManager != null) {
+            locationManager.removeUpdates(getPendingIntent(context));
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private static void request(Context context, SamplingScheduler.Request request) {
+        LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        if (locationManager != null) {
+            // Coarse fixes come from network location and leave GPS off
+            Criteria criteria = new Criteria();
+            criteria.setAccuracy(request.isHighAccuracy() ? Criteria.ACCURACY_FINE : Criteria.ACCURACY_COARSE);
+            criteria.setPowerRequirement(Criteria.POWER_LOW);
+            locationManager.requestLocationUpdates(request.getInterval(), request.getMinDistance(), criteria, getPendingIntent(context));
+            Timber.d("request: %s", request);
+        }
+    }
+
+    private static boolean hasLocationPermission(Context context) {
+        return ContextCompat.checkSelfPermission(context, ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Returns pending intent that delivers location updates to {@link GeofenceTransitionsService}.
+     */
+    private static PendingIntent getPendingIntent(Context context) {
+        Intent intent = new Intent(context, GeofenceTransitionsService.class);
+        intent.setAction(GeofenceTransitionsService.ACTION_LOCATION_UPDATE);
+        return PendingIntent.getService(context, REQUEST_CODE_LOCATION_UPDATE, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
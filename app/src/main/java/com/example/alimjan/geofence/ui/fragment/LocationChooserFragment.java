@@ -12,17 +12,23 @@ import android.widget.Toast;
 
 import com.example.alimjan.geofence.R;
 import com.example.alimjan.geofence.data.OnAsyncTaskCallback;
+import com.example.alimjan.geofence.geo.BoundingBox;
+import com.example.alimjan.geofence.geo.CircleGeometry;
+import com.example.alimjan.geofence.geo.ClusterIndex;
 import com.example.alimjan.geofence.model.Geofence;
 import com.example.alimjan.geofence.model.Place;
 import com.example.alimjan.geofence.model.Point;
+import com.example.alimjan.geofence.ui.map.GeofenceLayer;
 import com.example.alimjan.geofence.ui.viewmodel.LocationChooserViewModel;
 import com.google.android.material.snackbar.Snackbar;
+import com.mapbox.mapboxsdk.annotations.Annotation;
 import com.mapbox.mapboxsdk.annotations.Marker;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
 import com.mapbox.mapboxsdk.annotations.Polygon;
 import com.mapbox.mapboxsdk.annotations.PolygonOptions;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.location.LocationComponent;
 import com.mapbox.mapboxsdk.location.modes.CameraMode;
 import com.mapbox.mapboxsdk.location.modes.RenderMode;
@@ -31,7 +37,10 @@ import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -54,6 +63,14 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
     // Marker and geofence radius specifically indicates user clicked position.
     private Marker mUserClickMarker;
     private Polygon mUserClickPointRadius;
+    // Geofences on the map, rendered from a single GeoJSON source.
+    private GeofenceLayer mGeofenceLayer;
+    // Vertex buffer reused by circle computations, annotations copy vertices into LatLng.
+    private double[] mCircleBuffer;
+    // Clustering index of all geofences, null until the first one is built.
+    private ClusterIndex<Geofence> mClusterIndex;
+    // Markers of clusters on the map keyed by cluster id.
+    private final Map<Integer, ClusterMarker> mClusterMarkers = new HashMap<>();
     // ViewModel instance that includes UI related data.
     private LocationChooserViewModel mViewModel;
 
@@ -130,6 +147,11 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
 
         // UI setup
         configureUiSettings();
+        this.mGeofenceLayer = new GeofenceLayer(this.mMap,
+                getResources().getColor(R.color.geofence_circle_color_default),
+                getResources().getColor(R.color.geofence_circle_color_default_stroke),
+                getResources().getColor(R.color.geofence_circle_color_triggered),
+                getResources().getColor(R.color.geofence_circle_color_triggered_stroke));
 
         // ViewModel created and essential data observed
         this.mViewModel = ViewModelProviders.of(this).get(LocationChooserViewModel.class);
@@ -142,19 +164,21 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
             this.mMap.animateCamera(CameraUpdateFactory.newLatLng(new LatLng(place.getPoint().getLatitude(), place.getPoint().getLongitude())));
         });
 
-        // Add geofence markers on the map
-        // refresh geofences
-        this.mViewModel.getGeofences().observe(this, this::refreshGeofences);
-    }
-
-
-    /**
-     * Clear all the markers on the map including user click marker.
-     */
-    private void clearMarkers() {
-        this.mMap.clear();
-        this.mUserClickMarker = null;
-        this.mUserClickPointRadius = null;
+        // Add geofence markers on the map, clustered by zoom level
+        // refresh geofences when they change or camera settles
+        this.mViewModel.getGeofenceClusters().observe(this, clusterIndex -> {
+            // Cluster ids are positions in an index, they mean other clusters in a rebuilt one
+            if (clusterIndex != this.mClusterIndex) {
+                clearClusterMarkers();
+            }
+            this.mClusterIndex = clusterIndex;
+            renderClusters();
+        });
+        this.mViewModel.setVisibleRegion(getVisibleRegion());
+        this.mMap.addOnCameraIdleListener(() -> {
+            this.mViewModel.setVisibleRegion(getVisibleRegion());
+            renderClusters();
+        });
     }
 
 
@@ -192,64 +216,96 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
         super.onDestroy();
         // Sync activity lifecycle to map lifecycle
         mMapView.onDestroy();
-
+        if (this.mGeofenceLayer != null) {
+            this.mGeofenceLayer.dispose();
+        }
     }
 
     /**
-     * Refresh all geofence indicator on th map.
-     *
-     * @param geofences A List of geofence instance.
+     * Returns visible region of the map.
      */
-    private void refreshGeofences(List<Geofence> geofences) {
-        clearMarkers();
-
-        this.addGeofenceMarkers(geofences);
-        this.addGeofenceRadiusPolygons(geofences);
+    private BoundingBox getVisibleRegion() {
+        LatLngBounds bounds = this.mMap.getProjection().getVisibleRegion().latLngBounds;
+        return new BoundingBox(bounds.getLatSouth(), bounds.getLonWest(), bounds.getLatNorth(), bounds.getLonEast());
+    }
 
-        // Redraw user selected position as well.
-        Point selectedPoint = this.mViewModel.getSelectedPoint();
-        // Selected point can be null before user selection
-        if (selectedPoint != null) {
-            positionGeofenceIndicator(new LatLng(selectedPoint.getLatitude(), selectedPoint.getLongitude()));
+    /**
+     * Render geofences visible in the viewport, dense areas are shown as a single cluster marker
+     * and single geofences as regular geofence indicators.
+     */
+    private void renderClusters() {
+        if (this.mClusterIndex == null) {
+            return;
         }
+        LatLngBounds bounds = this.mMap.getProjection().getVisibleRegion().latLngBounds;
+        double zoom = this.mMap.getCameraPosition().zoom;
+        List<ClusterIndex.Cluster<Geofence>> clusters = this.mClusterIndex.getClusters(bounds.getLonWest(), bounds.getLatSouth(),
+                bounds.getLonEast(), bounds.getLatNorth(), zoom);
+
+        List<Geofence> geofences = new ArrayList<>();
+        Map<Integer, ClusterIndex.Cluster<Geofence>> visibleClusters = new HashMap<>();
+        for (ClusterIndex.Cluster<Geofence> cluster : clusters) {
+            if (cluster.isCluster()) {
+                visibleClusters.put(cluster.getId(), cluster);
+            } else {
+                geofences.add(cluster.getItem());
+            }
+        }
+        this.mGeofenceLayer.setGeofences(geofences, zoom);
+        refreshClusterMarkers(visibleClusters);
     }
 
     /**
-     * Add geofence markers on the map.
-     *
-     * @param geofences A list of geofences that marked on the map.
+     * Removes every cluster marker from the map.
      */
-    private void addGeofenceMarkers(final List<Geofence> geofences) {
-        List<MarkerOptions> markerList = new ArrayList<>();
-        for (Geofence geofence : geofences) {
-            MarkerOptions markerOptions = new MarkerOptions();
-            markerOptions.setPosition(new LatLng(geofence.getLatitude(), geofence.getLongitude()));
-            markerList.add(markerOptions);
+    private void clearClusterMarkers() {
+        if (this.mClusterMarkers.isEmpty()) {
+            return;
+        }
+        List<Annotation> removed = new ArrayList<>();
+        for (ClusterMarker clusterMarker : this.mClusterMarkers.values()) {
+            removed.add(clusterMarker.marker);
         }
-        this.mMap.addMarkers(markerList);
+        this.mMap.removeAnnotations(removed);
+        this.mClusterMarkers.clear();
     }
 
     /**
-     * Add geofence radius on the map.
+     * Refresh cluster markers on the map, markers of clusters still visible are kept. Cluster ids
+     * are only stable within one {@link ClusterIndex}.
      *
-     * @param geofences A list of geofences that marked on the map.
+     * @param clusters Visible clusters keyed by cluster id.
      */
-    private void addGeofenceRadiusPolygons(List<Geofence> geofences) {
-        List<PolygonOptions> polygonOptionsList = new ArrayList<>();
-        for (Geofence geofence : geofences) {
-            PolygonOptions polygonOptions = new PolygonOptions();
-            polygonOptions.addAll(polygonCircleForPoint(new LatLng(geofence.getLatitude(), geofence.getLongitude()), 200));
-            int geofenceCircleColor = getResources().getColor(R.color.geofence_circle_color_default);
-            int geofenceCircleStokeColor = getResources().getColor(R.color.geofence_circle_color_default_stroke);
-            if (geofence.isTriggered()) {
-                geofenceCircleColor = getResources().getColor(R.color.geofence_circle_color_triggered);
-                geofenceCircleStokeColor = getResources().getColor(R.color.geofence_circle_color_triggered_stroke);
+    private void refreshClusterMarkers(Map<Integer, ClusterIndex.Cluster<Geofence>> clusters) {
+        List<Annotation> removed = new ArrayList<>();
+        Iterator<Map.Entry<Integer, ClusterMarker>> iterator = this.mClusterMarkers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, ClusterMarker> entry = iterator.next();
+            if (!clusters.containsKey(entry.getKey())) {
+                removed.add(entry.getValue().marker);
+                iterator.remove();
+            }
+        }
+        if (!removed.isEmpty()) {
+            this.mMap.removeAnnotations(removed);
+        }
+
+        List<ClusterIndex.Cluster<Geofence>> added = new ArrayList<>();
+        List<MarkerOptions> markerOptionsList = new ArrayList<>();
+        for (ClusterIndex.Cluster<Geofence> cluster : clusters.values()) {
+            if (!this.mClusterMarkers.containsKey(cluster.getId())) {
+                added.add(cluster);
+                markerOptionsList.add(new MarkerOptions()
+                        .position(new LatLng(cluster.getLatitude(), cluster.getLongitude()))
+                        .title(getString(R.string.cluster_title_format, cluster.getCount())));
+            }
+        }
+        if (!added.isEmpty()) {
+            List<Marker> markers = this.mMap.addMarkers(markerOptionsList);
+            for (int i = 0; i < added.size(); i++) {
+                this.mClusterMarkers.put(added.get(i).getId(), new ClusterMarker(added.get(i), markers.get(i)));
             }
-            polygonOptions.fillColor(geofenceCircleColor);
-            polygonOptions.strokeColor(geofenceCircleStokeColor);
-            polygonOptionsList.add(polygonOptions);
         }
-        this.mMap.addPolygons(polygonOptionsList);
     }
 
     /**
@@ -365,6 +421,13 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
      */
     @Override
     public void onMapClick(@NonNull LatLng point) {
+        // Clicking a geofence center offers removing it
+        Geofence geofence = this.mGeofenceLayer.getGeofenceAt(point);
+        if (geofence != null) {
+            showRemoveGeofenceSnackBar(geofence);
+            return;
+        }
+
         // Position a geofence indicator
         positionGeofenceIndicator(point);
 
@@ -407,13 +470,14 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
      */
     @Override
     public boolean onMarkerClick(@NonNull Marker marker) {
-        // Should show remove geofence snack bar when clicked marker is temporary user click.
-        if (mUserClickMarker != null && mUserClickMarker != marker) {
-            // show remove snackbar
-            Geofence geofence = new Geofence();
-            geofence.setLatitude(marker.getPosition().getLatitude());
-            geofence.setLongitude(marker.getPosition().getLongitude());
-            showRemoveGeofenceSnackBar(geofence);
+        // Zoom into a cluster until it breaks apart
+        for (ClusterMarker clusterMarker : this.mClusterMarkers.values()) {
+            if (clusterMarker.marker == marker) {
+                ClusterIndex.Cluster<Geofence> cluster = clusterMarker.cluster;
+                this.mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(new LatLng(cluster.getLatitude(), cluster.getLongitude()),
+                        this.mClusterIndex.getExpansionZoom(cluster)));
+                return true;
+            }
         }
 
         return false;
@@ -426,24 +490,12 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
      * @param radius   Radius in meters.
      * @return A list of points represents a circle.
      */
-    @SuppressWarnings("SameParameterValue")
     private ArrayList<LatLng> polygonCircleForPoint(LatLng position, double radius) {
-        int degreesBetweenPoints = 8; //45 sides
-        int numberOfPoints = (int) Math.floor(360 / degreesBetweenPoints);
-        double distRadians = radius / 6371000.0; // earth radius in meters
-        double centerLatRadians = position.getLatitude() * Math.PI / 180;
-        double centerLonRadians = position.getLongitude() * Math.PI / 180;
-        ArrayList<LatLng> polygons = new ArrayList<>(); //array to hold all the points
-        for (int index = 0; index < numberOfPoints; index++) {
-            double degrees = index * degreesBetweenPoints;
-            double degreeRadians = degrees * Math.PI / 180;
-            double pointLatRadians = Math.asin(Math.sin(centerLatRadians) * Math.cos(distRadians) + Math.cos(centerLatRadians) * Math.sin(distRadians) * Math.cos(degreeRadians));
-            double pointLonRadians = centerLonRadians + Math.atan2(Math.sin(degreeRadians) * Math.sin(distRadians) * Math.cos(centerLatRadians),
-                    Math.cos(distRadians) - Math.sin(centerLatRadians) * Math.sin(pointLatRadians));
-            double pointLat = pointLatRadians * 180 / Math.PI;
-            double pointLon = pointLonRadians * 180 / Math.PI;
-            LatLng point = new LatLng(pointLat, pointLon);
-            polygons.add(point);
+        this.mCircleBuffer = CircleGeometry.circle(position.getLatitude(), position.getLongitude(), radius,
+                CircleGeometry.DEFAULT_VERTEX_COUNT, this.mCircleBuffer);
+        ArrayList<LatLng> polygons = new ArrayList<>(CircleGeometry.DEFAULT_VERTEX_COUNT); //array to hold all the points
+        for (int index = 0; index < CircleGeometry.DEFAULT_VERTEX_COUNT; index++) {
+            polygons.add(new LatLng(this.mCircleBuffer[index * 2], this.mCircleBuffer[index * 2 + 1]));
         }
         return polygons;
     }
@@ -501,4 +553,17 @@ public class LocationChooserFragment extends Fragment implements OnMapReadyCallb
             }
         }
     }
+
+    /**
+     * A map marker that represents a cluster of geofences.
+     */
+    private static class ClusterMarker {
+        private final ClusterIndex.Cluster<Geofence> cluster;
+        private final Marker marker;
+
+        ClusterMarker(ClusterIndex.Cluster<Geofence> cluster, Marker marker) {
+            this.cluster = cluster;
+            this.marker = marker;
+        }
+    }
 }
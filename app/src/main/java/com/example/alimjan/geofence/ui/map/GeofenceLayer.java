@@ -0,0 +1,213 @@
+package com.example.alimjan.geofence.ui.map;
+
+import android.graphics.PointF;
+
+import com.example.alimjan.geofence.geo.CircleGeometry;
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.style.layers.CircleLayer;
+import com.mapbox.mapboxsdk.style.layers.FillLayer;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+import static com.mapbox.mapboxsdk.style.expressions.Expression.color;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.geometryType;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.switchCase;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.toBool;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleColor;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleRadius;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleStrokeColor;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleStrokeWidth;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillColor;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillOutlineColor;
+
+/**
+ * Renders geofences from a single GeoJSON source, a fill layer draws the radius of every geofence
+ * and a circle layer its center. Both are styled from feature properties so colors are resolved
+ * once by the renderer instead of per geofence, and an update replaces one feature collection
+ * instead of adding and removing thousands of annotations. Feature collections are built on a
+ * computation thread, a newer build cancels an outdated one.
+ * <p>
+ * Radius polygons have a level of detail, vertex count of every outline is chosen from its radius
+ * on screen at the integer zoom level above the camera zoom. A feature collection is cached per
+ * zoom level until geofences change, so zooming back and forth switches between cached ones.
+ */
+public class GeofenceLayer {
+    public static final String SOURCE_ID = "geofence-source";
+    public static final String FILL_LAYER_ID = "geofence-fill";
+    public static final String CENTER_LAYER_ID = "geofence-center";
+    // Feature properties.
+    static final String PROPERTY_TRIGGERED = "triggered";
+    static final String PROPERTY_RADIUS = "radius";
+    // Radius of the center dot in pixels.
+    private static final float CENTER_RADIUS = 6f;
+    // Number of zoom levels whose feature collection is cached.
+    private static final int MAX_CACHED_LEVELS = 4;
+
+    private final MapboxMap mMap;
+    private final GeoJsonSource mSource;
+    // Geofences on the map keyed by id.
+    private final Map<Long, Geofence> mGeofences = new HashMap<>();
+    // Pending feature collection build.
+    private final SerialDisposable mBuild = new SerialDisposable();
+    // Feature collections of current geofences keyed by zoom level, least recently used first.
+    private final Map<Integer, FeatureCollection> mCache = new LinkedHashMap<Integer, FeatureCollection>(MAX_CACHED_LEVELS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, FeatureCollection> eldest) {
+            return size() > MAX_CACHED_LEVELS;
+        }
+    };
+    // Zoom level shown on the map, -1 until first render.
+    private int mLevel = -1;
+
+    /**
+     * Adds geofence source and layers to the map.
+     */
+    public GeofenceLayer(@NonNull MapboxMap map, @ColorInt int circleColor, @ColorInt int circleStrokeColor,
+                         @ColorInt int triggeredCircleColor, @ColorInt int triggeredCircleStrokeColor) {
+        this.mMap = map;
+        this.mSource = new GeoJsonSource(SOURCE_ID, FeatureCollection.fromFeatures(new ArrayList<>()));
+        this.mMap.addSource(this.mSource);
+        this.mMap.addLayer(new FillLayer(FILL_LAYER_ID, SOURCE_ID)
+                .withFilter(eq(geometryType(), literal("Polygon")))
+                .withProperties(
+                        fillColor(switchCase(toBool(get(PROPERTY_TRIGGERED)), color(triggeredCircleColor), color(circleColor))),
+                        fillOutlineColor(switchCase(toBool(get(PROPERTY_TRIGGERED)), color(triggeredCircleStrokeColor), color(circleStrokeColor)))));
+        this.mMap.addLayer(new CircleLayer(CENTER_LAYER_ID, SOURCE_ID)
+                .withFilter(eq(geometryType(), literal("Point")))
+                .withProperties(
+                        circleRadius(CENTER_RADIUS),
+                        circleColor(switchCase(toBool(get(PROPERTY_TRIGGERED)), color(triggeredCircleColor), color(circleColor))),
+                        circleStrokeWidth(1f),
+                        circleStrokeColor(switchCase(toBool(get(PROPERTY_TRIGGERED)), color(triggeredCircleStrokeColor), color(circleStrokeColor)))));
+    }
+
+    /**
+     * Replaces geofences on the map and picks level of detail for the zoom, nothing is rebuilt
+     * when neither geofences nor zoom level changed.
+     *
+     * @param geofences Geofences to show.
+     * @param zoom      Camera zoom.
+     */
+    public void setGeofences(@NonNull Collection<Geofence> geofences, double zoom) {
+        int level = (int) Math.max(0, Math.floor(zoom));
+        GeofenceChangeSet changes = GeofenceChangeSet.diff(this.mGeofences, geofences);
+        if (!changes.isEmpty()) {
+            changes.applyTo(this.mGeofences);
+            this.mCache.clear();
+            Timber.d("setGeofences: %s", changes);
+        } else if (level == this.mLevel) {
+            return;
+        }
+        this.mLevel = level;
+
+        FeatureCollection cached = this.mCache.get(level);
+        if (cached != null) {
+            this.mBuild.set(null);
+            this.mSource.setGeoJson(cached);
+            return;
+        }
+        final List<Geofence> snapshot = new ArrayList<>(this.mGeofences.values());
+        this.mBuild.set(Single.fromCallable(() -> toFeatureCollection(snapshot, level))
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(featureCollection -> {
+                    // A newer change or zoom disposes this build, so the result is current
+                    this.mCache.put(level, featureCollection);
+                    this.mSource.setGeoJson(featureCollection);
+                }, Timber::e));
+    }
+
+    /**
+     * Returns the geofence whose center is rendered at a point on the map.
+     *
+     * @param point A point on the map, typically a click.
+     * @return A geofence or null if there is none.
+     */
+    @Nullable
+    public Geofence getGeofenceAt(@NonNull LatLng point) {
+        PointF pixel = this.mMap.getProjection().toScreenLocation(point);
+        for (Feature feature : this.mMap.queryRenderedFeatures(pixel, CENTER_LAYER_ID)) {
+            if (feature.id() != null) {
+                Geofence geofence = this.mGeofences.get(Long.parseLong(feature.id()));
+                if (geofence != null) {
+                    return geofence;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cancels pending build, layer shouldn't be used afterwards.
+     */
+    public void dispose() {
+        this.mBuild.dispose();
+    }
+
+    /**
+     * Converts geofences to a center point and a radius polygon feature each, features carry
+     * geofence id, triggered state and radius in meters.
+     *
+     * @param level Zoom level, radius polygons are accurate up to the next level.
+     */
+    @NonNull
+    @WorkerThread
+    static FeatureCollection toFeatureCollection(@NonNull List<Geofence> geofences, int level) {
+        List<Feature> features = new ArrayList<>(geofences.size() * 2);
+        double[] buffer = null;
+        for (Geofence geofence : geofences) {
+            String id = String.valueOf(geofence.getId());
+            int vertexCount = CircleGeometry.vertexCount(geofence.getRadius()
+                    / GeoMath.metersPerPixel(geofence.getLatitude(), level + 1));
+            buffer = CircleGeometry.circle(geofence.getLatitude(), geofence.getLongitude(), geofence.getRadius(), vertexCount, buffer);
+            // Ring is closed by repeating the first vertex
+            List<Point> ring = new ArrayList<>(vertexCount + 1);
+            for (int i = 0; i <= vertexCount; i++) {
+                int vertex = i % vertexCount;
+                ring.add(Point.fromLngLat(buffer[vertex * 2 + 1], buffer[vertex * 2]));
+            }
+
+            Feature area = Feature.fromGeometry(Polygon.fromLngLats(Collections.singletonList(ring)), new JsonObject(), id);
+            addProperties(area, geofence);
+            features.add(area);
+            Feature center = Feature.fromGeometry(Point.fromLngLat(geofence.getLongitude(), geofence.getLatitude()), new JsonObject(), id);
+            addProperties(center, geofence);
+            features.add(center);
+        }
+        return FeatureCollection.fromFeatures(features);
+    }
+
+    private static void addProperties(Feature feature, Geofence geofence) {
+        feature.addBooleanProperty(PROPERTY_TRIGGERED, geofence.isTriggered());
+        feature.addNumberProperty(PROPERTY_RADIUS, geofence.getRadius());
+    }
+}
@@ -8,10 +8,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
 import android.os.Build;
+import android.service.notification.StatusBarNotification;
 
 import com.example.alimjan.geofence.R;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
 import com.example.alimjan.geofence.ui.activity.MainActivity;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
@@ -19,34 +25,112 @@ import androidx.core.app.NotificationManagerCompat;
  * Easy to use notification wrapper for geofence notification, reason I use separate class
  * to display a notification is to make implementation concise and clean. And this is also a common
  * pattern in Android.
+ * <p>
+ * Notification channel and content intent are set up once per process. Transition notifications
+ * are tagged with their geofence id so notifications of different geofences don't replace each
+ * other. Transitions posted together go into a single summary notification, later summaries are
+ * merged into it while it is shown. Use {@link GeofenceNotificationDispatcher} to post
+ * transitions, it keeps the number of posts down.
  */
 public class GeofenceNotification {
 
-    // The unique identifier for notification.
-    @SuppressWarnings("unused")
-    public static final int NOTIFICATION_ID_GEOFENCE_ENTER = 1 << 1;
-    @SuppressWarnings("unused")
-    public static final int NOTIFICATION_ID_GEOFENCE_EXIT = 1 << 2;
+    // Identifier of transition notifications, they are told apart by geofence tag.
+    public static final int NOTIFICATION_ID_GEOFENCE = 1 << 3;
+    // Identifier of the summary notification.
+    public static final int NOTIFICATION_ID_GEOFENCE_SUMMARY = 1 << 4;
 
     // The unique identifier for notification channel.
     private static final String CHANNEL_ID = "Geofence Notification";
+    // Tag prefix of transition notifications.
+    private static final String TAG_GEOFENCE = "geofence:";
+    // Largest number of transitions listed in a summary.
+    private static final int MAX_SUMMARY_LINES = 5;
+
+    // Set once channel is registered, it can't be changed afterwards anyway.
+    private static volatile boolean CHANNEL_CREATED;
+    private static PendingIntent CONTENT_INTENT;
+    // Most recent transitions shown by the summary, guarded by the class.
+    private static final List<GeofenceTransition> SUMMARY_LINES = new ArrayList<>();
+    // Number of transitions merged into the summary, guarded by the class.
+    private static int SUMMARY_COUNT;
 
     /**
      * Shows the notification, or updates a previously shown notification of
      * this type, with the given parameters.
      */
     public static void notify(final Context context, final String title, final String message, int notificationId) {
+        NotificationManagerCompat.from(context).notify(notificationId, newBuilder(context, title, message).build());
+    }
+
+    /**
+     * Shows a notification of a single transition, or updates the one previously shown for the
+     * same geofence.
+     */
+    public static void notify(@NonNull Context context, @NonNull GeofenceTransition transition) {
+        Notification notification = newBuilder(context, getTitle(context, transition), getMessage(context, transition))
+                .setWhen(transition.getTime())
+                .build();
+        NotificationManagerCompat.from(context).notify(TAG_GEOFENCE + transition.getGeofence().getId(),
+                NOTIFICATION_ID_GEOFENCE, notification);
+    }
+
+    /**
+     * Shows a summary of transitions that happened together. While a previous summary is still
+     * shown the transitions are merged into it, otherwise they start a new one.
+     *
+     * @param transitions Transitions in arrival order.
+     */
+    public static synchronized void notifySummary(@NonNull Context context, @NonNull List<GeofenceTransition> transitions) {
+        if (!isShown(context, NOTIFICATION_ID_GEOFENCE_SUMMARY)) {
+            SUMMARY_LINES.clear();
+            SUMMARY_COUNT = 0;
+        }
+        SUMMARY_COUNT += transitions.size();
+        SUMMARY_LINES.addAll(transitions);
+        if (SUMMARY_LINES.size() > MAX_SUMMARY_LINES) {
+            SUMMARY_LINES.subList(0, SUMMARY_LINES.size() - MAX_SUMMARY_LINES).clear();
+        }
+
+        Resources res = context.getResources();
+        String title = String.format(res.getString(R.string.title_geofence_summary_format), SUMMARY_COUNT);
+        GeofenceTransition last = SUMMARY_LINES.get(SUMMARY_LINES.size() - 1);
+
+        // Most recent transitions first
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle().setBigContentTitle(title);
+        for (int i = SUMMARY_LINES.size() - 1; i >= 0; i--) {
+            style.addLine(getMessage(context, SUMMARY_LINES.get(i)));
+        }
+        if (SUMMARY_COUNT > SUMMARY_LINES.size()) {
+            style.setSummaryText(String.format(res.getString(R.string.message_geofence_summary_more_format),
+                    SUMMARY_COUNT - SUMMARY_LINES.size()));
+        }
+
+        Notification notification = newBuilder(context, title, getMessage(context, last))
+                .setWhen(last.getTime())
+                .setNumber(SUMMARY_COUNT)
+                .setStyle(style)
+                .build();
+        NotificationManagerCompat.from(context).notify(NOTIFICATION_ID_GEOFENCE_SUMMARY, notification);
+    }
+
+    /**
+     * Cancels any notifications of this type previously shown using
+     */
+    @SuppressWarnings("unused")
+    public static void cancel(final Context context, final int notificationId) {
+        final NotificationManager nm = (NotificationManager) context
+                .getSystemService(Context.NOTIFICATION_SERVICE);
+        if (nm != null) {
+            nm.cancel(notificationId);
+        }
+    }
+
+    private static NotificationCompat.Builder newBuilder(Context context, CharSequence title, CharSequence message) {
         // Create the NotificationChannel, but only on API 26+ because
         // the NotificationChannel class is new and not in the support library
         createNotificationChannel(context);
 
-        // Create PendingIntent
-        Intent intent = new Intent(context, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-
-        // Setup notification
-        final NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+        return new NotificationCompat.Builder(context, CHANNEL_ID)
 
                 // Set appropriate defaults for the notification light, sound,
                 // and vibration.
@@ -66,34 +150,67 @@ public class GeofenceNotification {
 
                 // Set the pending intent to be initiated when the user touches
                 // the notification.
-                .setContentIntent(pendingIntent)
+                .setContentIntent(getContentIntent(context))
 
                 // Automatically dismiss the notification when it is touched.
                 .setAutoCancel(true);
+    }
+
+    /**
+     * Tells whether an untagged notification is still shown. Active notifications can't be listed
+     * before API 23, a notification posted by this process is then assumed to be shown.
+     */
+    private static boolean isShown(Context context, int notificationId) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return true;
+        }
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        if (notificationManager == null) {
+            return false;
+        }
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (notification.getId() == notificationId && notification.getTag() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        // Notify:)
-        NotificationManagerCompat.from(context).notify(notificationId, builder.build());
+    private static String getTitle(Context context, GeofenceTransition transition) {
+        return context.getString(transition.getType() == GeofenceTransition.Type.ENTER
+                ? R.string.title_geofence_enter : R.string.title_geofence_exit);
+    }
+
+    private static String getMessage(Context context, GeofenceTransition transition) {
+        // Show different message according to transition type
+        String format = context.getString(transition.getType() == GeofenceTransition.Type.ENTER
+                ? R.string.message_geofence_enter_format : R.string.message_geofence_exit_format);
+        return String.format(format, transition.getGeofence().getAddress());
     }
 
     /**
-     * Cancels any notifications of this type previously shown using
+     * Returns the intent that opens the app, created once since it never changes.
      */
-    @SuppressWarnings("unused")
-    public static void cancel(final Context context, final int notificationId) {
-        final NotificationManager nm = (NotificationManager) context
-                .getSystemService(Context.NOTIFICATION_SERVICE);
-        if (nm != null) {
-            nm.cancel(notificationId);
+    private static synchronized PendingIntent getContentIntent(Context context) {
+        if (CONTENT_INTENT == null) {
+            Intent intent = new Intent(context.getApplicationContext(), MainActivity.class);
+            intent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+            CONTENT_INTENT = PendingIntent.getActivity(context.getApplicationContext(), 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
         }
+        return CONTENT_INTENT;
     }
 
     /**
      * Creates notification channel, this method have to be called before you fire notification
-     * because without valid {@link NotificationChannel} notification will fail.
+     * because without valid {@link NotificationChannel} notification will fail. Channel is
+     * registered once per process.
      *
      * @param context The Context.
      */
     private static void createNotificationChannel(Context context) {
+        if (CHANNEL_CREATED) {
+            return;
+        }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             final Resources res = context.getResources();
 
@@ -105,9 +222,11 @@ public class GeofenceNotification {
             // Register the channel with the system; you can't change the importance
             // or other notification behaviors after this
             NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
-            if (notificationManager != null) {
-                notificationManager.createNotificationChannel(channel);
+            if (notificationManager == null) {
+                return;
             }
+            notificationManager.createNotificationChannel(channel);
         }
+        CHANNEL_CREATED = true;
     }
 }
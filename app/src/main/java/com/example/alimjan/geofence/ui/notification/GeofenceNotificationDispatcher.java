@@ -0,0 +1,298 @@
+package com.example.alimjan.geofence.ui.notification;
+
+import android.content.Context;
+
+import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.db.GeofenceStateDao;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.model.NotificationCooldown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Decides which transitions are worth a notification and how many posts they take. A geofence
+ * notified within the cooldown isn't notified again for the same direction, and posts are rate
+ * limited: up to {@code maxBurst} posts go out right away, after that one post per
+ * {@code postInterval}. Transitions waiting for a post are collected and go out together as a
+ * single summary, so a burst of transitions turns into a handful of posts instead of one post per
+ * transition.
+ * <p>
+ * Notified times are kept in a {@link CooldownStore} as well, so a restarted process doesn't
+ * notify again what the previous one just notified.
+ * <p>
+ * A host that may be stopped, such as a service, stops through {@link #whenIdle(Runnable)} so a
+ * delayed post isn't lost with its process.
+ */
+public class GeofenceNotificationDispatcher {
+    // Default time a geofence isn't notified again.
+    public static final long DEFAULT_COOLDOWN = 1000 * 60 * 5; // 5 minutes
+    // Default number of posts allowed back to back.
+    public static final int DEFAULT_MAX_BURST = 3;
+    // Default time between posts once the burst is used up.
+    public static final long DEFAULT_POST_INTERVAL = 1000 * 10; // 10 seconds
+    // Number of cooldowns tracked before expired ones are dropped.
+    private static final int MAX_COOLDOWNS = 256;
+
+    private static GeofenceNotificationDispatcher INSTANCE;
+
+    /**
+     * Posts notifications chosen by the dispatcher.
+     */
+    public interface Poster {
+
+        /**
+         * Posts a notification of a single transition.
+         */
+        void post(@NonNull GeofenceTransition transition);
+
+        /**
+         * Posts a summary of several transitions.
+         *
+         * @param transitions Transitions in arrival order.
+         */
+        void postSummary(@NonNull List<GeofenceTransition> transitions);
+    }
+
+    /**
+     * Stores notified times keyed by geofence id and direction.
+     */
+    public interface CooldownStore {
+        // A store that keeps nothing.
+        CooldownStore NONE = new CooldownStore() {
+            @NonNull
+            @Override
+            public Map<Long, Long> load(long since) {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public void save(@NonNull Map<Long, Long> notified, long expiredBefore) {
+            }
+        };
+
+        /**
+         * Returns times notified at or after specified time, called once before first dispatch.
+         */
+        @NonNull
+        Map<Long, Long> load(long since);
+
+        /**
+         * Stores times notified by a dispatch and drops times notified before specified time.
+         */
+        void save(@NonNull Map<Long, Long> notified, long expiredBefore);
+    }
+
+    private final Poster mPoster;
+    private final CooldownStore mCooldownStore;
+    private final long mCooldown;
+    private final int mMaxBurst;
+    private final long mPostInterval;
+    private final Scheduler mScheduler;
+
+    // Time a geofence was last notified keyed by geofence id and direction, guarded by this.
+    private final Map<Long, Long> mNotified = new HashMap<>();
+    // Indicates stored cooldowns are read into mNotified, guarded by this.
+    private boolean mCooldownsLoaded;
+    // Transitions waiting for a post, guarded by this.
+    private final List<GeofenceTransition> mPending = new ArrayList<>();
+    // Post delayed by rate limit, guarded by this.
+    private Disposable mScheduledPost;
+    // Callbacks waiting for the delayed post, guarded by this.
+    private final List<Runnable> mIdleCallbacks = new ArrayList<>();
+    // Theoretical time of next post if posts were evenly spaced, guarded by this.
+    private long mNextPost = Long.MIN_VALUE;
+    private int mPosts;
+
+    /**
+     * Returns process wide dispatcher posting with {@link GeofenceNotification}.
+     */
+    public static GeofenceNotificationDispatcher getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (GeofenceNotificationDispatcher.class) {
+                if (INSTANCE == null) {
+                    Context applicationContext = context.getApplicationContext();
+                    INSTANCE = new GeofenceNotificationDispatcher(new Poster() {
+                        @Override
+                        public void post(@NonNull GeofenceTransition transition) {
+                            GeofenceNotification.notify(applicationContext, transition);
+                        }
+
+                        @Override
+                        public void postSummary(@NonNull List<GeofenceTransition> transitions) {
+                            GeofenceNotification.notifySummary(applicationContext, transitions);
+                        }
+                    }, new DaoCooldownStore(GeofenceDataBase.getInstance(applicationContext).getStateDao()),
+                            DEFAULT_COOLDOWN, DEFAULT_MAX_BURST, DEFAULT_POST_INTERVAL, Schedulers.computation());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * @param poster       Poster notifications are handed to.
+     * @param cooldown     Time in milliseconds a geofence isn't notified again.
+     * @param maxBurst     Number of posts allowed back to back.
+     * @param postInterval Time in milliseconds between posts once the burst is used up.
+     * @param scheduler    Scheduler that tells time and runs delayed posts.
+     */
+    public GeofenceNotificationDispatcher(@NonNull Poster poster, long cooldown, int maxBurst, long postInterval,
+                                          @NonNull Scheduler scheduler) {
+        this(poster, CooldownStore.NONE, cooldown, maxBurst, postInterval, scheduler);
+    }
+
+    /**
+     * @param cooldownStore Store notified times are kept in, it is called on the dispatching
+     *                      thread.
+     * @see #GeofenceNotificationDispatcher(Poster, long, int, long, Scheduler)
+     */
+    public GeofenceNotificationDispatcher(@NonNull Poster poster, @NonNull CooldownStore cooldownStore, long cooldown,
+                                          int maxBurst, long postInterval, @NonNull Scheduler scheduler) {
+        this.mPoster = poster;
+        this.mCooldownStore = cooldownStore;
+        this.mCooldown = cooldown;
+        this.mMaxBurst = maxBurst;
+        this.mPostInterval = postInterval;
+        this.mScheduler = scheduler;
+    }
+
+    /**
+     * Notifies transitions, right away if rate limit allows, otherwise with the next post.
+     *
+     * @param transitions Transitions in arrival order.
+     */
+    public synchronized void dispatch(@NonNull List<GeofenceTransition> transitions) {
+        long now = mScheduler.now(TimeUnit.MILLISECONDS);
+        if (!mCooldownsLoaded) {
+            mNotified.putAll(mCooldownStore.load(now - mCooldown));
+            mCooldownsLoaded = true;
+        }
+        Map<Long, Long> changed = null;
+        for (GeofenceTransition transition : transitions) {
+            long key = transition.getGeofence().getId() << 1 | (transition.getType() == GeofenceTransition.Type.EXIT ? 1 : 0);
+            Long notified = mNotified.get(key);
+            if (notified != null && now - notified < mCooldown) {
+                continue;
+            }
+            mNotified.put(key, now);
+            mPending.add(transition);
+            if (changed == null) {
+                changed = new HashMap<>();
+            }
+            changed.put(key, now);
+        }
+        if (changed != null) {
+            mCooldownStore.save(changed, now - mCooldown);
+        }
+        if (mNotified.size() > MAX_COOLDOWNS) {
+            for (Iterator<Long> iterator = mNotified.values().iterator(); iterator.hasNext(); ) {
+                if (now - iterator.next() >= mCooldown) {
+                    iterator.remove();
+                }
+            }
+        }
+        if (!mPending.isEmpty() && mScheduledPost == null) {
+            postOrSchedule(now);
+        }
+    }
+
+    /**
+     * Runs a callback once no post is delayed, right away if there is none. Callbacks waiting for
+     * a delayed post run on the scheduler after it.
+     */
+    public void whenIdle(@NonNull Runnable callback) {
+        synchronized (this) {
+            if (mScheduledPost != null) {
+                mIdleCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Returns number of posts so far.
+     */
+    public synchronized int getPosts() {
+        return mPosts;
+    }
+
+    private void postOrSchedule(long now) {
+        // Generic cell rate algorithm, a post is due once the burst allowance covers it
+        long earliest = mNextPost == Long.MIN_VALUE ? now : mNextPost - (mMaxBurst - 1) * mPostInterval;
+        if (now < earliest) {
+            mScheduledPost = mScheduler.scheduleDirect(this::onScheduledPost, earliest - now, TimeUnit.MILLISECONDS);
+            return;
+        }
+        mNextPost = Math.max(mNextPost, now) + mPostInterval;
+        mPosts++;
+        if (mPending.size() == 1) {
+            mPoster.post(mPending.get(0));
+        } else {
+            Timber.d("postOrSchedule: summary of %d transitions", mPending.size());
+            mPoster.postSummary(new ArrayList<>(mPending));
+        }
+        mPending.clear();
+    }
+
+    private void onScheduledPost() {
+        List<Runnable> callbacks;
+        synchronized (this) {
+            mScheduledPost = null;
+            if (!mPending.isEmpty()) {
+                postOrSchedule(mScheduler.now(TimeUnit.MILLISECONDS));
+            }
+            if (mScheduledPost != null || mIdleCallbacks.isEmpty()) {
+                return;
+            }
+            callbacks = new ArrayList<>(mIdleCallbacks);
+            mIdleCallbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    /**
+     * A {@link CooldownStore} backed by the app database.
+     */
+    public static class DaoCooldownStore implements CooldownStore {
+        private final GeofenceStateDao mDao;
+
+        public DaoCooldownStore(@NonNull GeofenceStateDao dao) {
+            this.mDao = dao;
+        }
+
+        @NonNull
+        @Override
+        public Map<Long, Long> load(long since) {
+            Map<Long, Long> notified = new HashMap<>();
+            for (NotificationCooldown cooldown : mDao.getCooldowns(since)) {
+                notified.put(cooldown.getId(), cooldown.getTime());
+            }
+            return notified;
+        }
+
+        @Override
+        public void save(@NonNull Map<Long, Long> notified, long expiredBefore) {
+            List<NotificationCooldown> cooldowns = new ArrayList<>(notified.size());
+            for (Map.Entry<Long, Long> entry : notified.entrySet()) {
+                cooldowns.add(new NotificationCooldown(entry.getKey(), entry.getValue()));
+            }
+            mDao.insertCooldowns(cooldowns);
+            mDao.deleteCooldownsBefore(expiredBefore);
+        }
+    }
+}
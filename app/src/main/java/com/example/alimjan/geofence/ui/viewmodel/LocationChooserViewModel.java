@@ -8,6 +8,8 @@ import com.example.alimjan.geofence.data.GeofenceRepository;
 import com.example.alimjan.geofence.data.OnAsyncTaskCallback;
 import com.example.alimjan.geofence.db.GeofenceDao;
 import com.example.alimjan.geofence.db.GeofenceDataBase;
+import com.example.alimjan.geofence.geo.BoundingBox;
+import com.example.alimjan.geofence.geo.ClusterIndex;
 import com.example.alimjan.geofence.model.Geofence;
 import com.example.alimjan.geofence.model.Place;
 import com.example.alimjan.geofence.model.Point;
@@ -30,12 +32,25 @@ import static android.Manifest.permission.ACCESS_FINE_LOCATION;
  * UI-related data in a lifecycle conscious way.
  */
 public class LocationChooserViewModel extends AndroidViewModel {
+    // Distance a geofence coordinate may drift while passing through map annotations.
+    private static final double COORDINATE_TOLERANCE = 1; // 1 meter
+    // Margin added to each side of the visible region when querying, relative to its size.
+    private static final double VIEWPORT_MARGIN = 0.5;
+    // Queried region is replaced when visible region shrinks below this fraction of it, about two
+    // zoom levels in with the margin above.
+    private static final double VIEWPORT_MIN_COVERAGE = 1.0 / 64;
     // Repository that handles all the data related to geofence
     private final GeofenceRepository mRepository;
 
     private final MutableLiveData<Point> mSelectedPoint = new MutableLiveData<>();
     // A place that contains place and point information.
     private final LiveData<Place> mPlace;
+    // Region geofences are queried for, the visible region plus a margin.
+    private final MutableLiveData<BoundingBox> mViewport = new MutableLiveData<>();
+    // Geofences inside of the queried region.
+    private final LiveData<List<Geofence>> mViewportGeofences;
+    // Clustering index of viewport geofences, created on first request.
+    private LiveData<ClusterIndex<Geofence>> mGeofenceClusters;
 
     public LocationChooserViewModel(@NonNull Application application) {
         super(application);
@@ -47,6 +62,9 @@ public class LocationChooserViewModel extends AndroidViewModel {
 
         // Initialize place LiveData
         this.mPlace = Transformations.switchMap(mSelectedPoint, this.mRepository::getPlace);
+
+        // Initialize viewport geofences LiveData
+        this.mViewportGeofences = Transformations.switchMap(mViewport, this.mRepository::getGeofencesObserver);
     }
 
 
@@ -82,13 +100,49 @@ public class LocationChooserViewModel extends AndroidViewModel {
     }
 
     /**
-     * Retrieve a geofence data from repository asynchronously.
+     * A trigger that indicates map camera settled on a new visible region. Geofences are queried
+     * again only when the region moved out of the last queried region or is much smaller than it,
+     * so small pans are served from the last result.
+     *
+     * @param visibleRegion Visible region of the map.
+     */
+    public void setVisibleRegion(@NonNull BoundingBox visibleRegion) {
+        BoundingBox viewport = this.mViewport.getValue();
+        if (viewport != null && viewport.contains(visibleRegion)
+                && visibleRegion.getArea() >= viewport.getArea() * VIEWPORT_MIN_COVERAGE) {
+            return;
+        }
+        this.mViewport.setValue(visibleRegion.expand(VIEWPORT_MARGIN));
+    }
+
+    /**
+     * Returns geofence alerts around the visible region set by {@link #setVisibleRegion}.
+     */
+    public LiveData<List<Geofence>> getViewportGeofences() {
+        return mViewportGeofences;
+    }
+
+    /**
+     * Returns a clustering index of geofence alerts around the visible region, the index is built
+     * on a background thread and replaced whenever those geofences change.
+     */
+    public LiveData<ClusterIndex<Geofence>> getGeofenceClusters() {
+        if (this.mGeofenceClusters == null) {
+            this.mGeofenceClusters = this.mRepository.getGeofenceClustersObserver(mViewportGeofences);
+        }
+        return this.mGeofenceClusters;
+    }
+
+    /**
+     * Retrieve a geofence data from repository asynchronously, geofence is matched by coordinate
+     * within a small tolerance.
      *
      * @param geofence Geofence data used for query.
      * @param callback An asynchronous result callback called on main thread.
      */
     public void getGeofenceAsync(@NonNull Geofence geofence, @NonNull OnAsyncTaskCallback<Geofence> callback) {
-        this.mRepository.getGeofenceAsync(geofence.getLatitude(), geofence.getLongitude(), callback);
+        Point point = new Point(geofence.getLatitude(), geofence.getLongitude());
+        this.mRepository.getNearestGeofenceAsync(point, COORDINATE_TOLERANCE, callback);
     }
 
     /**
@@ -0,0 +1,126 @@
+package com.example.alimjan.geofence.data;
+
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link GeofenceImporter}.
+ */
+public class GeofenceImporterTest {
+
+    @Test
+    public void csv_quotedFieldsAndHeader() throws Exception {
+        List<Geofence> geofences = new ArrayList<>();
+        GeofenceImporter importer = new GeofenceImporter(2, (chunk, imported) -> geofences.addAll(chunk));
+        GeofenceImporter.Report report = importer.importFrom(new StringReader(
+                "address,latitude,longitude,radius,expireTime\r\n"
+                        + "\"The Bund, \"\"Shanghai\"\"\",31.2397,121.4998,150,\n"
+                        + "\n"
+                        + "People's Square,31.2304,121.4737,,1000\n"
+                        + "broken,abc,121.0\n"
+                        + "out of range,91,0\n"), GeofenceImporter.Format.CSV);
+
+        assertEquals(2, report.getImported());
+        assertEquals(2, report.getSkipped());
+        assertEquals("The Bund, \"Shanghai\"", geofences.get(0).getAddress());
+        assertEquals(150, geofences.get(0).getRadius(), 0);
+        assertEquals(0, geofences.get(0).getExpireTime());
+        assertEquals(Geofence.DEFAULT_RADIUS, geofences.get(1).getRadius(), 0);
+        assertEquals(1000, geofences.get(1).getExpireTime());
+    }
+
+    @Test
+    public void csv_malformedFirstRecordCounted() throws Exception {
+        List<Geofence> geofences = new ArrayList<>();
+        GeofenceImporter importer = new GeofenceImporter(10, (chunk, imported) -> geofences.addAll(chunk));
+        GeofenceImporter.Report report = importer.importFrom(new StringReader(
+                "The Bund,31.2397,\n"
+                        + "People's Square,31.2304,121.4737\n"), GeofenceImporter.Format.CSV);
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getSkipped());
+
+        geofences.clear();
+        report = importer.importFrom(new StringReader(
+                "Name, Lat ,LNG\n"
+                        + "People's Square,31.2304,121.4737\n"), GeofenceImporter.Format.CSV);
+        assertEquals(1, report.getImported());
+        assertEquals(0, report.getSkipped());
+        assertEquals("People's Square", geofences.get(0).getAddress());
+    }
+
+    @Test
+    public void geoJson_pointFeatures() throws Exception {
+        List<Geofence> geofences = new ArrayList<>();
+        GeofenceImporter importer = new GeofenceImporter(10, (chunk, imported) -> geofences.addAll(chunk));
+        GeofenceImporter.Report report = importer.importFrom(new StringReader(
+                "{\"type\":\"FeatureCollection\",\"features\":["
+                        + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[121.4998,31.2397]},"
+                        + "\"properties\":{\"name\":\"The Bund\",\"radius\":80,\"extra\":{\"a\":[1,2]}}},"
+                        + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}}"
+                        + "]}"), GeofenceImporter.Format.GEOJSON);
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getSkipped());
+        assertEquals("The Bund", geofences.get(0).getAddress());
+        assertEquals(31.2397, geofences.get(0).getLatitude(), 1e-9);
+        assertEquals(121.4998, geofences.get(0).getLongitude(), 1e-9);
+        assertEquals(80, geofences.get(0).getRadius(), 0);
+    }
+
+    @Test
+    public void csv_millionRows_chunked() throws Exception {
+        final int rows = 1000000;
+        final int[] maxChunk = new int[1];
+        GeofenceImporter importer = new GeofenceImporter(GeofenceImporter.DEFAULT_CHUNK_SIZE,
+                (chunk, imported) -> maxChunk[0] = Math.max(maxChunk[0], chunk.size()));
+        GeofenceImporter.Report report = importer.importFrom(new GeneratedCsvReader(rows), GeofenceImporter.Format.CSV);
+
+        assertEquals(rows, report.getImported());
+        assertEquals(GeofenceImporter.DEFAULT_CHUNK_SIZE, maxChunk[0]);
+        assertTrue(report.getRowsPerSecond() > 0);
+    }
+
+    /**
+     * Generates CSV rows on the fly so the input itself doesn't occupy memory.
+     */
+    private static class GeneratedCsvReader extends Reader {
+        private final int mRows;
+        private int mRow;
+        private String mLine = "";
+        private int mPosition;
+
+        GeneratedCsvReader(int rows) {
+            this.mRows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int count = 0;
+            while (count < length) {
+                if (mPosition == mLine.length()) {
+                    if (mRow == mRows) {
+                        break;
+                    }
+                    mLine = "Place " + mRow + "," + (mRow % 180 - 89.5) + "," + (mRow % 360 - 179.5) + ",100,\n";
+                    mPosition = 0;
+                    mRow++;
+                }
+                buffer[offset + count++] = mLine.charAt(mPosition++);
+            }
+            return count == 0 && length > 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
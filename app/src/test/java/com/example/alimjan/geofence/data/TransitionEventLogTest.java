@@ -0,0 +1,195 @@
+package com.example.alimjan.geofence.data;
+
+import com.example.alimjan.geofence.db.TransitionEventDao;
+import com.example.alimjan.geofence.model.TransitionDailyCount;
+import com.example.alimjan.geofence.model.TransitionEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit test for {@link TransitionEventLog}, runs against an in-memory dao and a test
+ * scheduler.
+ */
+public class TransitionEventLogTest {
+    private static final long DAY = TransitionDailyCount.DAY;
+
+    private MemoryDao mDao;
+    private TestScheduler mScheduler;
+    private TransitionEventLog mLog;
+
+    @Before
+    public void setUp() {
+        this.mDao = new MemoryDao();
+        this.mScheduler = new TestScheduler();
+        this.mLog = new TransitionEventLog(mDao, 3, 1000, DAY * 30, mScheduler);
+    }
+
+    @Test
+    public void events_writtenInBatches() {
+        mLog.append(enter(1, 1));
+        mLog.append(exit(1, 2));
+        mScheduler.triggerActions();
+        assertEquals(0, mDao.count());
+
+        // Full buffer is flushed right away
+        mLog.append(enter(2, 3));
+        mScheduler.triggerActions();
+        assertEquals(3, mDao.count());
+        assertEquals(1, mDao.mInserts);
+
+        // A lone event is flushed after the delay
+        mLog.append(exit(2, 4));
+        mScheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        assertEquals(3, mDao.count());
+        mScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertEquals(4, mDao.count());
+        assertEquals(2, mLog.getStats().getFlushes());
+        assertEquals(4, mLog.getStats().getWritten());
+    }
+
+    @Test
+    public void oldEvents_compactedIntoDailyCounts() {
+        mScheduler.advanceTimeTo(DAY * 40, TimeUnit.MILLISECONDS);
+        mLog.append(enter(1, DAY + 5));
+        mLog.append(exit(1, DAY + 6));
+        mLog.append(enter(1, DAY * 2));
+        mLog.append(enter(1, DAY * 39));
+        mScheduler.triggerActions();
+
+        assertEquals(3, mLog.getStats().getCompacted());
+        assertEquals(1, mDao.count());
+        assertEquals(2, mDao.getDailyCounts(1).size());
+        assertEquals(1, mDao.getDailyCount(1, 1).getExits());
+        assertNull(mDao.getDailyCount(39, 1));
+
+        // Compaction runs once a day and adds up counts of a compacted day
+        mLog.append(enter(1, DAY + 7));
+        mScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        assertEquals(2, mDao.count());
+        mScheduler.advanceTimeBy(DAY, TimeUnit.MILLISECONDS);
+        mLog.append(exit(1, DAY + 8));
+        mScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        assertEquals(1, mDao.count());
+        TransitionDailyCount count = mDao.getDailyCount(1, 1);
+        assertEquals(2, count.getEnters());
+        assertEquals(2, count.getExits());
+    }
+
+    private static TransitionEvent enter(long geofenceId, long time) {
+        return new TransitionEvent(geofenceId, TransitionEvent.DIRECTION_ENTER, time, 10);
+    }
+
+    private static TransitionEvent exit(long geofenceId, long time) {
+        return new TransitionEvent(geofenceId, TransitionEvent.DIRECTION_EXIT, time, 10);
+    }
+
+    private static class MemoryDao implements TransitionEventDao {
+        private final List<TransitionEvent> mEvents = new ArrayList<>();
+        private final List<TransitionDailyCount> mCounts = new ArrayList<>();
+        private int mInserts;
+
+        @Override
+        public void insertAll(List<TransitionEvent> events) {
+            mInserts++;
+            mEvents.addAll(events);
+        }
+
+        @Override
+        public List<TransitionEvent> getEvents(long geofenceId) {
+            List<TransitionEvent> result = new ArrayList<>();
+            for (TransitionEvent event : mEvents) {
+                if (event.getGeofenceId() == geofenceId) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int count() {
+            return mEvents.size();
+        }
+
+        @Override
+        public List<TransitionDailyCount> getDailyCounts(long geofenceId) {
+            List<TransitionDailyCount> result = new ArrayList<>();
+            for (TransitionDailyCount count : mCounts) {
+                if (count.getGeofenceId() == geofenceId) {
+                    result.add(count);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public TransitionDailyCount getDailyCount(long day, long geofenceId) {
+            for (TransitionDailyCount count : mCounts) {
+                if (count.getDay() == day && count.getGeofenceId() == geofenceId) {
+                    return count;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public List<TransitionDailyCount> countEventsBefore(long time) {
+            List<TransitionDailyCount> result = new ArrayList<>();
+            for (TransitionEvent event : mEvents) {
+                if (event.getTime() >= time) {
+                    continue;
+                }
+                long day = event.getTime() / DAY;
+                TransitionDailyCount count = null;
+                for (TransitionDailyCount candidate : result) {
+                    if (candidate.getDay() == day && candidate.getGeofenceId() == event.getGeofenceId()) {
+                        count = candidate;
+                    }
+                }
+                if (count == null) {
+                    count = new TransitionDailyCount(day, event.getGeofenceId(), 0, 0);
+                    result.add(count);
+                }
+                if (event.getDirection() == TransitionEvent.DIRECTION_ENTER) {
+                    count.setEnters(count.getEnters() + 1);
+                } else {
+                    count.setExits(count.getExits() + 1);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void insertDailyCounts(List<TransitionDailyCount> counts) {
+            for (TransitionDailyCount count : counts) {
+                TransitionDailyCount existing = getDailyCount(count.getDay(), count.getGeofenceId());
+                if (existing != null) {
+                    mCounts.remove(existing);
+                }
+                mCounts.add(count);
+            }
+        }
+
+        @Override
+        public int deleteEventsBefore(long time) {
+            int deleted = 0;
+            for (Iterator<TransitionEvent> iterator = mEvents.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().getTime() < time) {
+                    iterator.remove();
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+    }
+}
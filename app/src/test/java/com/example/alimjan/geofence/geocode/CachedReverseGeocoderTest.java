@@ -0,0 +1,166 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.example.alimjan.geofence.db.GeocodeCacheDao;
+import com.example.alimjan.geofence.model.CachedPlace;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link CachedReverseGeocoder}, runs against a stub geocoder and an in-memory
+ * dao instead of Mapbox api and Room.
+ */
+public class CachedReverseGeocoderTest {
+
+    private StubGeocoder mGeocoder;
+    private MemoryDao mDao;
+    private CachedReverseGeocoder mCache;
+
+    @Before
+    public void setUp() {
+        this.mGeocoder = new StubGeocoder();
+        this.mDao = new MemoryDao();
+        this.mCache = new CachedReverseGeocoder(mGeocoder, mDao, 2, CachedReverseGeocoder.DEFAULT_TTL);
+    }
+
+    @Test
+    public void nearbyTap_hitsMemory() throws IOException {
+        assertEquals("The Bund", mCache.getAddress(31.23970, 121.49980));
+        // About 2 meters away, same cell
+        assertEquals("The Bund", mCache.getAddress(31.23971, 121.49981));
+
+        assertEquals(1, mGeocoder.mCalls);
+        assertEquals(1, mCache.getStats().getMemoryHits());
+        assertEquals(1, mCache.getStats().getMisses());
+    }
+
+    @Test
+    public void persistedResult_servedOffline() throws IOException {
+        mCache.getAddress(31.2397, 121.4998);
+
+        // A new process with the same table and no network
+        mGeocoder.mOffline = true;
+        CachedReverseGeocoder cache = new CachedReverseGeocoder(mGeocoder, mDao);
+        assertEquals("The Bund", cache.getAddress(31.2397, 121.4998));
+        assertEquals(1, cache.getStats().getDiskHits());
+    }
+
+    @Test
+    public void evictedFromMemory_hitsDisk() throws IOException {
+        mCache.getAddress(31.2397, 121.4998);
+        mCache.getAddress(10, 10);
+        mCache.getAddress(20, 20);
+
+        mCache.getAddress(31.2397, 121.4998);
+        assertEquals(3, mGeocoder.mCalls);
+        assertEquals(1, mCache.getStats().getDiskHits());
+    }
+
+    @Test
+    public void expiredResult_fetchedAgain() throws IOException {
+        CachedReverseGeocoder cache = new CachedReverseGeocoder(mGeocoder, mDao, 2, 1000);
+        cache.getAddress(31.2397, 121.4998);
+        for (CachedPlace place : mDao.mPlaces.values()) {
+            place.setCreatedAt(place.getCreatedAt() - 2000);
+        }
+
+        cache.getAddress(31.2397, 121.4998);
+        assertEquals(2, mGeocoder.mCalls);
+
+        mDao.mPlaces.values().iterator().next().setCreatedAt(0);
+        assertEquals(1, cache.evictExpired());
+    }
+
+    @Test
+    public void noPlace_cachedFailureNot() throws IOException {
+        assertNull(mCache.getAddress(0, 0));
+        assertNull(mCache.getAddress(0, 0));
+        assertEquals(1, mGeocoder.mCalls);
+
+        mGeocoder.mOffline = true;
+        try {
+            mCache.getAddress(10, 10);
+            fail();
+        } catch (IOException expected) {
+            // Failure must not be cached
+        }
+        mGeocoder.mOffline = false;
+        assertEquals("Place 10.0", mCache.getAddress(10, 10));
+        assertEquals(1, mCache.getStats().getMemoryHits());
+        assertEquals(3, mCache.getStats().getMisses());
+    }
+
+    @Test
+    public void cancelledLookup_notWritten() throws IOException {
+        try {
+            mCache.getAddress(31.2397, 121.4998, () -> true);
+            fail();
+        } catch (CancellationException expected) {
+            // Result arrived after cancellation
+        }
+        assertEquals(1, mGeocoder.mCalls);
+        assertEquals(0, mDao.count());
+
+        assertEquals("The Bund", mCache.getAddress(31.2397, 121.4998));
+        assertEquals(2, mGeocoder.mCalls);
+    }
+
+    private static class StubGeocoder implements ReverseGeocoder {
+        private int mCalls;
+        private boolean mOffline;
+
+        @Override
+        public String getAddress(double latitude, double longitude) throws IOException {
+            if (mOffline) {
+                throw new IOException("Offline");
+            }
+            mCalls++;
+            if (latitude == 0 && longitude == 0) {
+                return null;
+            }
+            return latitude > 31 ? "The Bund" : "Place " + latitude;
+        }
+    }
+
+    private static class MemoryDao implements GeocodeCacheDao {
+        private final Map<String, CachedPlace> mPlaces = new HashMap<>();
+
+        @Override
+        public CachedPlace get(String geohash) {
+            return mPlaces.get(geohash);
+        }
+
+        @Override
+        public void insert(CachedPlace place) {
+            mPlaces.put(place.getGeohash(), place);
+        }
+
+        @Override
+        public int deleteOlderThan(long time) {
+            int count = 0;
+            Iterator<CachedPlace> iterator = mPlaces.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getCreatedAt() < time) {
+                    iterator.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int count() {
+            return mPlaces.size();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.example.alimjan.geofence.model.Place;
+import com.example.alimjan.geofence.model.Point;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link GeocodeRequestCoalescer}, lookups and debounce run on a virtual clock.
+ */
+public class GeocodeRequestCoalescerTest {
+    private static final long DEBOUNCE = 250;
+
+    private TestScheduler mScheduler;
+    private List<Place> mPlaces;
+    private int mCalls;
+    private GeocodeRequestCoalescer mCoalescer;
+
+    @Before
+    public void setUp() {
+        this.mScheduler = new TestScheduler();
+        this.mPlaces = new ArrayList<>();
+        ReverseGeocoder geocoder = (latitude, longitude) -> {
+            mCalls++;
+            return "Place " + latitude;
+        };
+        this.mCoalescer = new GeocodeRequestCoalescer(geocoder, DEBOUNCE, mScheduler, mPlaces::add);
+    }
+
+    @Test
+    public void burst_onlyLastPointLookedUp() {
+        for (int i = 0; i < 10; i++) {
+            mCoalescer.request(new Point(i, 0));
+            mScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        }
+        mScheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, mCalls);
+        assertEquals(1, mPlaces.size());
+        assertEquals("Place 9.0", mPlaces.get(0).getAddress());
+    }
+
+    @Test
+    public void newerPoint_cancelsLookupInFlight() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        boolean[] interrupted = new boolean[1];
+        boolean[] cancelled = new boolean[1];
+        List<Place> places = new CopyOnWriteArrayList<>();
+        // First lookup waits until the newer point is delivered, then reads its flag
+        ReverseGeocoder geocoder = new ReverseGeocoder() {
+            @Override
+            public String getAddress(double latitude, double longitude) {
+                return "Place " + latitude;
+            }
+
+            @Override
+            public String getAddress(double latitude, double longitude, Cancellation cancellation) {
+                if (latitude == 1) {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted[0] = true;
+                    }
+                    cancelled[0] = cancellation.isCancelled();
+                    finished.countDown();
+                }
+                return getAddress(latitude, longitude);
+            }
+        };
+        GeocodeRequestCoalescer coalescer = new GeocodeRequestCoalescer(geocoder, 10, Schedulers.io(), place -> {
+            places.add(place);
+            delivered.countDown();
+        });
+
+        coalescer.request(new Point(1, 0));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        coalescer.request(new Point(2, 0));
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        assertFalse(interrupted[0]);
+        assertTrue(cancelled[0]);
+        assertEquals(1, places.size());
+        assertEquals("Place 2.0", places.get(0).getAddress());
+        // Cancelled lookup is counted on its own thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalescer.getStats().getCancelled() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, coalescer.getStats().getCancelled());
+        coalescer.dispose();
+    }
+
+    @Test
+    public void scriptedTapBurst_measureSavedRequests() {
+        // 5 bursts of 12 taps 80ms apart, a second of pause between bursts
+        for (int burst = 0; burst < 5; burst++) {
+            for (int tap = 0; tap < 12; tap++) {
+                mCoalescer.request(new Point(burst, tap));
+                mScheduler.advanceTimeBy(80, TimeUnit.MILLISECONDS);
+            }
+            mScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        }
+        GeocodeRequestCoalescer.Stats stats = mCoalescer.getStats();
+
+        assertEquals(60, stats.getRequests());
+        assertEquals(5, stats.getLookups());
+        assertEquals(55, stats.getSaved());
+        assertEquals(5, stats.getDelivered());
+        assertTrue(stats.getSaved() > stats.getLookups());
+    }
+}
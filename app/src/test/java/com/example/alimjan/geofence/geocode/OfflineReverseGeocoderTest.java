@@ -0,0 +1,80 @@
+package com.example.alimjan.geofence.geocode;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.KdTree;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link OfflineReverseGeocoder} and its {@link KdTree}.
+ */
+public class OfflineReverseGeocoderTest {
+
+    @Test
+    public void nearestPlace_withinMaxDistance() throws IOException {
+        String gazetteer = "# name\tlatitude\tlongitude\n"
+                + "The Bund\t31.2397\t121.4998\n"
+                + "People's Square\t31.2304\t121.4737\textra\n"
+                + "Fiji\t-17.7\t179.99\n"
+                + "broken line\n";
+        OfflineReverseGeocoder geocoder = new OfflineReverseGeocoder(() -> new StringReader(gazetteer), 5000);
+
+        assertEquals("The Bund", geocoder.getAddress(31.2400, 121.4990));
+        assertEquals("People's Square", geocoder.getAddress(31.2310, 121.4740));
+        // Across the antimeridian
+        assertEquals("Fiji", geocoder.getAddress(-17.7, -179.99));
+        assertNull(geocoder.getAddress(0, 0));
+    }
+
+    @Test
+    public void missingGazetteer_notReadAgain() {
+        int[] opens = new int[1];
+        OfflineReverseGeocoder geocoder = new OfflineReverseGeocoder(() -> {
+            opens[0]++;
+            throw new FileNotFoundException("gazetteer.tsv");
+        }, 5000);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                geocoder.getAddress(31.2397, 121.4998);
+                fail();
+            } catch (IOException expected) {
+                // Gazetteer unavailable
+            }
+        }
+        assertEquals(1, opens[0]);
+    }
+
+    @Test
+    public void kdTree_matchesLinearScan() {
+        Random random = new Random(7);
+        int size = 50000;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            longitudes[i] = random.nextDouble() * 360 - 180;
+        }
+        KdTree tree = new KdTree(latitudes, longitudes);
+
+        for (int i = 0; i < 100; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            int nearest = tree.nearest(latitude, longitude);
+            double best = Double.MAX_VALUE;
+            for (int j = 0; j < size; j++) {
+                best = Math.min(best, GeoMath.distance(latitude, longitude, latitudes[j], longitudes[j]));
+            }
+            assertEquals(best, GeoMath.distance(latitude, longitude, latitudes[nearest], longitudes[nearest]), 1e-3);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.alimjan.geofence.replay;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.OffsetDateTime;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A streaming reader of recorded location traces, fixes are handed to a {@link Sink} one at a time
+ * and the trace is never held in memory, so trace size is only bounded by disk. Fields are parsed
+ * through short lived strings, a fix allocates a few of them.
+ * <p>
+ * GPX: every {@code trkpt}, {@code rtept} or {@code wpt} with {@code lat} and {@code lon}
+ * attributes is a fix, {@code time} is ISO-8601 and accuracy is estimated from {@code hdop} as
+ * five meters per unit. A point without time is one second after the previous one.
+ * <p>
+ * CSV: records are {@code time,latitude,longitude[,accuracy]} with optional header row, time is
+ * either milliseconds since epoch or ISO-8601. Records that can't be parsed are skipped.
+ */
+public class TraceReader {
+    // Meters of accuracy per unit of horizontal dilution of precision.
+    private static final float METERS_PER_HDOP = 5;
+
+    /**
+     * Supported trace formats.
+     */
+    public enum Format {
+        GPX,
+        CSV;
+
+        /**
+         * Returns format of a file name by its extension.
+         */
+        @NonNull
+        public static Format of(@NonNull String fileName) {
+            return fileName.toLowerCase().endsWith(".gpx") ? GPX : CSV;
+        }
+    }
+
+    /**
+     * Receives fixes in trace order.
+     */
+    public interface Sink {
+
+        /**
+         * @param accuracy Accuracy in meters, negative when unknown.
+         * @param time     Time in milliseconds since epoch.
+         */
+        void accept(double latitude, double longitude, float accuracy, long time);
+    }
+
+    private final char[] mBuffer = new char[1 << 16];
+    private final StringBuilder mText = new StringBuilder();
+    private Reader mReader;
+    private int mPosition;
+    private int mLimit;
+    private int mSkipped;
+
+    /**
+     * Reads all fixes from a reader, reader is not closed.
+     *
+     * @return Number of fixes read.
+     */
+    public int read(@NonNull Reader reader, @NonNull Format format, @NonNull Sink sink) throws IOException {
+        mReader = reader;
+        mPosition = 0;
+        mLimit = 0;
+        mSkipped = 0;
+        return format == Format.GPX ? readGpx(sink) : readCsv(sink);
+    }
+
+    /**
+     * Returns number of records skipped by the last read.
+     */
+    public int getSkipped() {
+        return mSkipped;
+    }
+
+    private int readCsv(Sink sink) throws IOException {
+        int count = 0;
+        boolean first = true;
+        while (readLine()) {
+            String line = mText.toString();
+            int timeEnd = line.indexOf(',');
+            int latitudeEnd = timeEnd < 0 ? -1 : line.indexOf(',', timeEnd + 1);
+            if (latitudeEnd < 0) {
+                if (!line.trim().isEmpty()) {
+                    mSkipped++;
+                }
+                continue;
+            }
+            int longitudeEnd = line.indexOf(',', latitudeEnd + 1);
+            try {
+                long time = parseTime(line.substring(0, timeEnd).trim());
+                double latitude = Double.parseDouble(line.substring(timeEnd + 1, latitudeEnd).trim());
+                double longitude = Double.parseDouble(line.substring(latitudeEnd + 1, longitudeEnd < 0 ? line.length() : longitudeEnd).trim());
+                float accuracy = -1;
+                if (longitudeEnd >= 0 && !line.substring(longitudeEnd + 1).trim().isEmpty()) {
+                    accuracy = Float.parseFloat(line.substring(longitudeEnd + 1).trim());
+                }
+                sink.accept(latitude, longitude, accuracy, time);
+                count++;
+            } catch (RuntimeException e) {
+                // A first record that doesn't parse is the header
+                if (!first) {
+                    mSkipped++;
+                }
+            }
+            first = false;
+        }
+        return count;
+    }
+
+    private int readGpx(Sink sink) throws IOException {
+        int count = 0;
+        boolean inPoint = false;
+        double latitude = 0;
+        double longitude = 0;
+        long time = Long.MIN_VALUE;
+        long lastTime = -1000;
+        float accuracy = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (c != '<') {
+                continue;
+            }
+            readTag();
+            String tag = mText.toString();
+            String name = tagName(tag);
+            if (name.equals("trkpt") || name.equals("rtept") || name.equals("wpt")) {
+                String lat = attribute(tag, "lat");
+                String lon = attribute(tag, "lon");
+                if (lat == null || lon == null) {
+                    mSkipped++;
+                    continue;
+                }
+                try {
+                    latitude = Double.parseDouble(lat);
+                    longitude = Double.parseDouble(lon);
+                } catch (NumberFormatException e) {
+                    mSkipped++;
+                    continue;
+                }
+                time = Long.MIN_VALUE;
+                accuracy = -1;
+                inPoint = !tag.endsWith("/");
+                if (!inPoint) {
+                    lastTime += 1000;
+                    sink.accept(latitude, longitude, accuracy, lastTime);
+                    count++;
+                }
+            } else if (inPoint && name.equals("time")) {
+                try {
+                    time = parseTime(readText());
+                } catch (RuntimeException e) {
+                    time = Long.MIN_VALUE;
+                }
+            } else if (inPoint && name.equals("hdop")) {
+                try {
+                    accuracy = Float.parseFloat(readText()) * METERS_PER_HDOP;
+                } catch (NumberFormatException e) {
+                    accuracy = -1;
+                }
+            } else if (inPoint && (name.equals("/trkpt") || name.equals("/rtept") || name.equals("/wpt"))) {
+                inPoint = false;
+                lastTime = time != Long.MIN_VALUE ? time : lastTime + 1000;
+                sink.accept(latitude, longitude, accuracy, lastTime);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parses milliseconds since epoch or an ISO-8601 date time.
+     */
+    static long parseTime(String text) {
+        boolean digits = !text.isEmpty();
+        for (int i = 0; i < text.length() && digits; i++) {
+            digits = Character.isDigit(text.charAt(i));
+        }
+        return digits ? Long.parseLong(text) : OffsetDateTime.parse(text).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Returns element name of a tag without namespace prefix, closing tags keep their slash.
+     */
+    private static String tagName(String tag) {
+        int end = 0;
+        while (end < tag.length()) {
+            char c = tag.charAt(end);
+            if (Character.isWhitespace(c) || c == '/' && end > 0) {
+                break;
+            }
+            end++;
+        }
+        String name = tag.substring(0, end);
+        boolean closing = name.startsWith("/");
+        if (closing) {
+            name = name.substring(1);
+        }
+        int colon = name.indexOf(':');
+        if (colon >= 0) {
+            name = name.substring(colon + 1);
+        }
+        return closing ? "/" + name : name;
+    }
+
+    private static String attribute(String tag, String name) {
+        int from = 0;
+        while (true) {
+            int index = tag.indexOf(name, from);
+            if (index < 0) {
+                return null;
+            }
+            int equals = index + name.length();
+            while (equals < tag.length() && Character.isWhitespace(tag.charAt(equals))) {
+                equals++;
+            }
+            boolean isName = index > 0 && Character.isWhitespace(tag.charAt(index - 1));
+            if (isName && equals < tag.length() && tag.charAt(equals) == '=') {
+                int quote = equals + 1;
+                while (quote < tag.length() && Character.isWhitespace(tag.charAt(quote))) {
+                    quote++;
+                }
+                if (quote < tag.length()) {
+                    char q = tag.charAt(quote);
+                    int end = tag.indexOf(q, quote + 1);
+                    if (end > quote) {
+                        return tag.substring(quote + 1, end);
+                    }
+                }
+                return null;
+            }
+            from = index + name.length();
+        }
+    }
+
+    /**
+     * Reads a tag up to closing bracket into text buffer, opening bracket is already consumed.
+     */
+    private void readTag() throws IOException {
+        mText.setLength(0);
+        int c;
+        while ((c = read()) != -1 && c != '>') {
+            mText.append((char) c);
+        }
+    }
+
+    /**
+     * Reads element text up to next tag, next tag is consumed as well.
+     */
+    private String readText() throws IOException {
+        mText.setLength(0);
+        int c;
+        while ((c = read()) != -1 && c != '<') {
+            mText.append((char) c);
+        }
+        String text = mText.toString().trim();
+        readTag();
+        return text;
+    }
+
+    /**
+     * Reads next line into text buffer.
+     *
+     * @return False at the end of input.
+     */
+    private boolean readLine() throws IOException {
+        mText.setLength(0);
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        while (c != -1 && c != '\n') {
+            if (c != '\r') {
+                mText.append((char) c);
+            }
+            c = read();
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.alimjan.geofence.replay;
+
+import com.example.alimjan.geofence.data.GeofenceImporter;
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.engine.TransitionPolicy;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceState;
+import com.example.alimjan.geofence.service.GeofenceTransitionProcessor;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A headless harness that replays recorded traces through the transition path of the app,
+ * {@link GeofenceTransitionProcessor} evaluating fixes with {@link GeofenceEngine} against a
+ * {@link GeofenceTransitionProcessor.Store}. Every fix is processed on the calling thread as soon
+ * as it is read, so per fix latency covers evaluation, geofence lookup and triggered writes of the
+ * transitions it causes.
+ * <p>
+ * Geofences come from a CSV or GeoJSON file through {@link #loadGeofences} or from any store, for
+ * example a {@link GeofenceTransitionProcessor.DaoStore} over an in-memory database in an
+ * instrumented test. Run from the command line with
+ * {@code TraceReplay <geofences.csv|geojson> <trace.gpx|csv> [dwellMillis hysteresisMeters minAccuracyMeters]},
+ * the engine uses {@link TransitionPolicy#DEFAULT} like the app unless a policy is given.
+ */
+public class TraceReplay {
+
+    private final GeofenceTransitionProcessor.Store mStore;
+    private final TransitionPolicy mPolicy;
+
+    /**
+     * @param store  Geofences the trace is replayed against, triggered state is written to it.
+     * @param policy Policy of the engine.
+     */
+    public TraceReplay(@NonNull GeofenceTransitionProcessor.Store store, @NonNull TransitionPolicy policy) {
+        this.mStore = store;
+        this.mPolicy = policy;
+    }
+
+    /**
+     * Replays a trace, reader is not closed.
+     */
+    @NonNull
+    public Report replay(@NonNull Reader trace, @NonNull TraceReader.Format format) throws IOException {
+        GeofenceEngine engine = new GeofenceEngine(mPolicy);
+        engine.setGeofences(mStore.getGeofences());
+        List<GeofenceTransition> transitions = new ArrayList<>();
+        GeofenceTransitionProcessor processor = new GeofenceTransitionProcessor(mStore, engine, transitions::addAll, Runnable::run);
+
+        long[][] latencies = {new long[1 << 16]};
+        int[] count = {0};
+        TraceReader reader = new TraceReader();
+        long start = System.nanoTime();
+        reader.read(trace, format, (latitude, longitude, accuracy, time) -> {
+            long fixStart = System.nanoTime();
+            processor.submitLocation(latitude, longitude, accuracy, time, null);
+            long latency = System.nanoTime() - fixStart;
+            if (count[0] == latencies[0].length) {
+                latencies[0] = Arrays.copyOf(latencies[0], count[0] * 2);
+            }
+            latencies[0][count[0]++] = latency;
+        });
+        long elapsed = System.nanoTime() - start;
+        return new Report(count[0], reader.getSkipped(), elapsed, Arrays.copyOf(latencies[0], count[0]), transitions);
+    }
+
+    /**
+     * Loads geofences from a CSV or GeoJSON file into an in-memory store, ids are assigned in file
+     * order starting from 1.
+     */
+    @NonNull
+    public static MemoryStore loadGeofences(@NonNull Reader reader, @NonNull GeofenceImporter.Format format) throws Exception {
+        MemoryStore store = new MemoryStore();
+        new GeofenceImporter(GeofenceImporter.DEFAULT_CHUNK_SIZE, (chunk, imported) -> {
+            for (Geofence geofence : chunk) {
+                store.add(geofence);
+            }
+        }).importFrom(reader, format);
+        return store;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && args.length != 5) {
+            System.err.println("Usage: TraceReplay <geofences.csv|geojson> <trace.gpx|csv> [dwellMillis hysteresisMeters minAccuracyMeters]");
+            System.exit(2);
+        }
+        TransitionPolicy policy = args.length == 5
+                ? new TransitionPolicy(Long.parseLong(args[2]), Float.parseFloat(args[3]), Float.parseFloat(args[4]))
+                : TransitionPolicy.DEFAULT;
+        MemoryStore store;
+        try (Reader reader = open(args[0])) {
+            store = loadGeofences(reader, args[0].toLowerCase(Locale.US).endsWith(".csv")
+                    ? GeofenceImporter.Format.CSV : GeofenceImporter.Format.GEOJSON);
+        }
+        Report report;
+        try (Reader reader = open(args[1])) {
+            report = new TraceReplay(store, policy).replay(reader, TraceReader.Format.of(args[1]));
+        }
+        for (GeofenceTransition transition : report.getTransitions()) {
+            System.out.println(format(transition));
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * Formats a transition as {@code time,ENTER|EXIT,geofenceId}.
+     */
+    @NonNull
+    public static String format(@NonNull GeofenceTransition transition) {
+        return transition.getTime() + "," + transition.getType() + "," + transition.getGeofence().getId();
+    }
+
+    private static Reader open(String path) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A store holding geofences in memory, rows are read into new instances like Room does.
+     */
+    public static class MemoryStore implements GeofenceTransitionProcessor.Store {
+        private final Map<Long, Geofence> mGeofences = new HashMap<>();
+        private final Map<Long, GeofenceState> mStates = new HashMap<>();
+
+        /**
+         * Adds a geofence, it gets next id.
+         */
+        public void add(@NonNull Geofence geofence) {
+            geofence.setId(mGeofences.size() + 1);
+            mGeofences.put(geofence.getId(), copy(geofence));
+        }
+
+        @NonNull
+        @Override
+        public List<Geofence> getGeofences() {
+            List<Geofence> result = new ArrayList<>(mGeofences.size());
+            for (Geofence geofence : mGeofences.values()) {
+                result.add(copy(geofence));
+            }
+            return result;
+        }
+
+        @NonNull
+        @Override
+        public List<Geofence> getGeofences(@NonNull List<Long> ids) {
+            List<Geofence> result = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                Geofence geofence = mGeofences.get(id);
+                if (geofence != null) {
+                    result.add(copy(geofence));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void setTriggered(@NonNull List<Long> ids) {
+            for (Long id : ids) {
+                mGeofences.get(id).setTriggered(true);
+            }
+        }
+
+        @NonNull
+        @Override
+        public List<GeofenceState> getStates() {
+            return new ArrayList<>(mStates.values());
+        }
+
+        @Override
+        public void saveStates(@NonNull List<GeofenceState> states) {
+            for (GeofenceState state : states) {
+                if (state.isEmpty()) {
+                    mStates.remove(state.getGeofenceId());
+                } else {
+                    mStates.put(state.getGeofenceId(), state);
+                }
+            }
+        }
+
+        private static Geofence copy(Geofence geofence) {
+            Geofence copy = new Geofence(geofence.getAddress(), geofence.getLatitude(), geofence.getLongitude(), geofence.getExpireTime());
+            copy.setId(geofence.getId());
+            copy.setRadius(geofence.getRadius());
+            copy.setTriggered(geofence.isTriggered());
+            return copy;
+        }
+    }
+
+    /**
+     * Throughput, latency and transitions of a replay.
+     */
+    public static class Report {
+        private final int fixes;
+        private final int skipped;
+        private final long elapsedNanos;
+        // Per fix latencies in nanoseconds, sorted.
+        private final long[] latencies;
+        private final List<GeofenceTransition> transitions;
+
+        Report(int fixes, int skipped, long elapsedNanos, long[] latencies, List<GeofenceTransition> transitions) {
+            this.fixes = fixes;
+            this.skipped = skipped;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.transitions = transitions;
+            Arrays.sort(this.latencies);
+        }
+
+        public int getFixes() {
+            return fixes;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Returns wall time of the replay including trace parsing.
+         */
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        public double getFixesPerSecond() {
+            return elapsedNanos > 0 ? fixes * 1e9 / elapsedNanos : fixes;
+        }
+
+        /**
+         * Returns per fix latency in nanoseconds at a percentile.
+         *
+         * @param percentile Percentile in 0..100.
+         */
+        public long getLatencyNanos(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+        }
+
+        /**
+         * Returns transitions in emission order.
+         */
+        @NonNull
+        public List<GeofenceTransition> getTransitions() {
+            return transitions;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Report {fixes = '%d', skipped = '%d', transitions = '%d', elapsed = '%dms', fixes/sec = '%.0f', p50 = '%.2fus', p99 = '%.2fus'}",
+                    fixes, skipped, transitions.size(), getElapsedMillis(), getFixesPerSecond(),
+                    getLatencyNanos(50) / 1000.0, getLatencyNanos(99) / 1000.0);
+        }
+    }
+}
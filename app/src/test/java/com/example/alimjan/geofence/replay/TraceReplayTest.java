@@ -0,0 +1,148 @@
+package com.example.alimjan.geofence.replay;
+
+import com.example.alimjan.geofence.data.GeofenceImporter;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.engine.TransitionPolicy;
+import com.example.alimjan.geofence.geo.GeoMath;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link TraceReplay}.
+ */
+public class TraceReplayTest {
+    // Number of fixes of the random walk replay, a million with -Preplay.fixes=1000000.
+    private static final int WALK_FIXES = Integer.getInteger("replay.fixes", 20000);
+    // A geofence at the origin of the traces below, 200 meters of radius.
+    private static final String GEOFENCES = "address,latitude,longitude,radius,expireTime\n"
+            + "Office,31.2,121.4,200,\n"
+            + "Far away,40.0,116.4,200,\n";
+
+    @Test
+    public void gpxAndCsv_sameTransitions() throws Exception {
+        // Walks north through the office and back out, half of the points have no time
+        double outside = 31.2 - GeoMath.latitudeDelta(500);
+        double inside = 31.2 + GeoMath.latitudeDelta(50);
+        double beyond = 31.2 + GeoMath.latitudeDelta(500);
+        String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\"><trk><trkseg>\n"
+                + "<trkpt lat=\"" + outside + "\" lon=\"121.4\"><time>2019-11-02T08:00:00Z</time><hdop>2</hdop></trkpt>\n"
+                + "<trkpt lat='" + inside + "' lon='121.4'><ele>4</ele></trkpt>\n"
+                + "<trkpt lat=\"" + beyond + "\" lon=\"121.4\"><time>2019-11-02T08:01:00Z</time></trkpt>\n"
+                + "<trkpt lon=\"121.4\"/>\n"
+                + "<trkpt lat=\"" + inside + "\" lon=\"121.4\"/>\n"
+                + "</trkseg></trk></gpx>";
+        String csv = "time,latitude,longitude,accuracy\n"
+                + "2019-11-02T08:00:00Z," + outside + ",121.4,10\n"
+                + "1572681601000," + inside + ",121.4,\n"
+                + "1572681660000," + beyond + ",121.4\n"
+                + "not a fix\n"
+                + "1572681661000," + inside + ",121.4\n";
+
+        TraceReplay.Report fromGpx = replay(new StringReader(gpx), TraceReader.Format.GPX);
+        TraceReplay.Report fromCsv = replay(new StringReader(csv), TraceReader.Format.CSV);
+
+        assertEquals(4, fromGpx.getFixes());
+        assertEquals(1, fromGpx.getSkipped());
+        assertEquals(4, fromCsv.getFixes());
+        assertEquals(1, fromCsv.getSkipped());
+        List<String> expected = Arrays.asList(
+                "1572681601000,ENTER,1",
+                "1572681660000,EXIT,1",
+                "1572681661000,ENTER,1");
+        assertEquals(expected, format(fromGpx.getTransitions()));
+        assertEquals(expected, format(fromCsv.getTransitions()));
+        // Exit triggered the geofence in the store
+        assertTrue(fromCsv.getTransitions().get(2).getGeofence().isTriggered());
+    }
+
+    @Test
+    public void randomWalk_replayed() throws Exception {
+        final int fixes = WALK_FIXES;
+        StringBuilder geofences = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            geofences.append("Place ").append(i).append(',')
+                    .append(31.2 + GeoMath.latitudeDelta(random.nextDouble() * 20000 - 10000)).append(',')
+                    .append(121.4 + (random.nextDouble() - 0.5) * 0.2).append(",200,\n");
+        }
+        TraceReplay.MemoryStore store = TraceReplay.loadGeofences(new StringReader(geofences.toString()), GeofenceImporter.Format.CSV);
+
+        TraceReplay.Report report = new TraceReplay(store, TransitionPolicy.DEFAULT)
+                .replay(new RandomWalkCsvReader(fixes), TraceReader.Format.CSV);
+
+        assertEquals(fixes, report.getFixes());
+        assertEquals(0, report.getSkipped());
+        assertTrue(report.getTransitions().size() > 0);
+        assertTrue(report.getLatencyNanos(50) <= report.getLatencyNanos(99));
+    }
+
+    private static TraceReplay.Report replay(Reader trace, TraceReader.Format format) throws Exception {
+        TraceReplay.MemoryStore store = TraceReplay.loadGeofences(new StringReader(GEOFENCES), GeofenceImporter.Format.CSV);
+        return new TraceReplay(store, TransitionPolicy.NONE).replay(trace, format);
+    }
+
+    private static List<String> format(List<GeofenceTransition> transitions) {
+        List<String> result = new ArrayList<>();
+        for (GeofenceTransition transition : transitions) {
+            result.add(TraceReplay.format(transition));
+        }
+        return result;
+    }
+
+    /**
+     * Generates a one fix per second random walk at driving speed on the fly, so the trace itself
+     * doesn't occupy memory.
+     */
+    private static class RandomWalkCsvReader extends Reader {
+        private final int mFixes;
+        private final Random mRandom = new Random(42);
+        private int mFix;
+        private double mNorth;
+        private double mEast;
+        private double mHeading;
+        private String mLine = "";
+        private int mPosition;
+
+        RandomWalkCsvReader(int fixes) {
+            this.mFixes = fixes;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int count = 0;
+            while (count < length) {
+                if (mPosition == mLine.length()) {
+                    if (mFix == mFixes) {
+                        break;
+                    }
+                    // Turns a little every second and is pulled back toward the origin
+                    mHeading += mRandom.nextGaussian() * 0.2;
+                    mNorth += 12 * Math.cos(mHeading) - mNorth * 1e-4;
+                    mEast += 12 * Math.sin(mHeading) - mEast * 1e-4;
+                    double latitude = 31.2 + GeoMath.latitudeDelta(mNorth);
+                    double longitude = 121.4 + GeoMath.longitudeDelta(latitude, mEast);
+                    mLine = (1572681600000L + mFix * 1000L) + "," + latitude + "," + longitude + ",10\n";
+                    mPosition = 0;
+                    mFix++;
+                }
+                buffer[offset + count++] = mLine.charAt(mPosition++);
+            }
+            return count == 0 && length > 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
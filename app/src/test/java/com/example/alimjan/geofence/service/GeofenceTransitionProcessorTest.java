@@ -0,0 +1,211 @@
+package com.example.alimjan.geofence.service;
+
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link GeofenceTransitionProcessor}, runs against an in-memory store and an
+ * executor that runs queued tasks on demand.
+ */
+public class GeofenceTransitionProcessorTest {
+
+    private MemoryStore mStore;
+    private Queue<Runnable> mTasks;
+    private List<GeofenceTransition> mTransitions;
+    private GeofenceTransitionProcessor mProcessor;
+
+    @Before
+    public void setUp() {
+        this.mStore = new MemoryStore();
+        // A row of geofences 500m apart along a road
+        for (int i = 0; i < 20; i++) {
+            mStore.add(i + 1, 31.2, 121.4 + i * 0.00525);
+        }
+        this.mTasks = new LinkedList<>();
+        this.mTransitions = new ArrayList<>();
+        this.mProcessor = new GeofenceTransitionProcessor(mStore, new GeofenceEngine(), mTransitions::addAll, mTasks::add);
+    }
+
+    @Test
+    public void burst_processedAsOneBatch() {
+        AtomicInteger processed = new AtomicInteger();
+        // Driving past every geofence, fixes pile up while the worker is busy
+        for (int i = 0; i <= 40; i++) {
+            mProcessor.submitLocation(31.2, 121.4 + i * 0.002625, 10, i, processed::incrementAndGet);
+        }
+        assertEquals(1, mTasks.size());
+        mTasks.poll().run();
+
+        assertEquals(41, processed.get());
+        assertEquals(1, mProcessor.getStats().getBatches());
+        assertEquals(1, mStore.mReads);
+        assertEquals(1, mStore.mWrites);
+        // Every geofence entered and exited
+        assertEquals(40, mTransitions.size());
+        assertEquals(GeofenceTransition.Type.ENTER, mTransitions.get(0).getType());
+        assertEquals(20, mStore.countTriggered());
+        for (GeofenceTransition transition : mTransitions) {
+            if (transition.getType() == GeofenceTransition.Type.EXIT) {
+                assertTrue(transition.getGeofence().isTriggered());
+            }
+        }
+    }
+
+    @Test
+    public void proximityAlerts_resolvedByOneQuery() {
+        mProcessor.submitProximity(3, true, 1, null);
+        mProcessor.submitProximity(3, false, 2, null);
+        mProcessor.submitProximity(999, false, 3, null);
+        mTasks.poll().run();
+
+        assertEquals(2, mTransitions.size());
+        assertEquals(1, mStore.mReads);
+        assertEquals(1, mStore.countTriggered());
+
+        // Next submission schedules a new drain
+        mProcessor.submitProximity(4, false, 4, null);
+        assertEquals(1, mTasks.size());
+        mTasks.poll().run();
+        assertEquals(2, mProcessor.getStats().getBatches());
+        assertEquals(4, mProcessor.getStats().getEvents());
+    }
+
+    @Test
+    public void restartedProcess_carriesOnFromStoredState() {
+        mProcessor.submitLocation(31.2, 121.4, 10, 1, null);
+        mTasks.poll().run();
+        assertEquals(1, mTransitions.size());
+        assertEquals(1, mStore.mStates.size());
+
+        // New process, new engine, same database
+        List<GeofenceTransition> transitions = new ArrayList<>();
+        GeofenceTransitionProcessor processor = new GeofenceTransitionProcessor(mStore, new GeofenceEngine(),
+                transitions::addAll, mTasks::add);
+        processor.submitLocation(31.2, 121.4, 10, 2, null);
+        processor.submitLocation(31.21, 121.4, 10, 3, null);
+        mTasks.poll().run();
+
+        // Still inside emits nothing, leaving exits and triggers
+        assertEquals(1, transitions.size());
+        assertEquals(GeofenceTransition.Type.EXIT, transitions.get(0).getType());
+        assertEquals(1, mStore.countTriggered());
+        assertTrue(mStore.mStates.isEmpty());
+    }
+
+    @Test
+    public void drainedQueue_notifiedBeforeCallbacks() {
+        List<String> calls = new ArrayList<>();
+        GeofenceTransitionProcessor processor = new GeofenceTransitionProcessor(mStore, new GeofenceEngine(),
+                new GeofenceTransitionProcessor.Listener() {
+                    @Override
+                    public void onTransitions(@NonNull List<GeofenceTransition> transitions) {
+                        calls.add("transitions");
+                    }
+
+                    @Override
+                    public void onDrained() {
+                        calls.add("drained");
+                    }
+                }, mTasks::add);
+        processor.submitProximity(3, true, 1, () -> calls.add("processed"));
+        processor.submitProximity(4, true, 2, () -> calls.add("processed"));
+        mTasks.poll().run();
+
+        assertEquals(Arrays.asList("transitions", "drained", "processed", "processed"), calls);
+    }
+
+    private static class MemoryStore implements GeofenceTransitionProcessor.Store {
+        private final Map<Long, Geofence> mGeofences = new HashMap<>();
+        private final Map<Long, GeofenceState> mStates = new HashMap<>();
+        private int mReads;
+        private int mWrites;
+
+        void add(long id, double latitude, double longitude) {
+            Geofence geofence = new Geofence("Place " + id, latitude, longitude, 0);
+            geofence.setId(id);
+            mGeofences.put(id, geofence);
+        }
+
+        int countTriggered() {
+            int count = 0;
+            for (Geofence geofence : mGeofences.values()) {
+                if (geofence.isTriggered()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @NonNull
+        @Override
+        public List<Geofence> getGeofences() {
+            return copy(new ArrayList<>(mGeofences.keySet()));
+        }
+
+        @NonNull
+        @Override
+        public List<Geofence> getGeofences(@NonNull List<Long> ids) {
+            mReads++;
+            return copy(ids);
+        }
+
+        @Override
+        public void setTriggered(@NonNull List<Long> ids) {
+            mWrites++;
+            for (Long id : ids) {
+                mGeofences.get(id).setTriggered(true);
+            }
+        }
+
+        @NonNull
+        @Override
+        public List<GeofenceState> getStates() {
+            return new ArrayList<>(mStates.values());
+        }
+
+        @Override
+        public void saveStates(@NonNull List<GeofenceState> states) {
+            for (GeofenceState state : states) {
+                if (state.isEmpty()) {
+                    mStates.remove(state.getGeofenceId());
+                } else {
+                    mStates.put(state.getGeofenceId(), state);
+                }
+            }
+        }
+
+        // Rows are read into new instances like Room does
+        private List<Geofence> copy(List<Long> ids) {
+            List<Geofence> result = new ArrayList<>();
+            for (Long id : ids) {
+                Geofence geofence = mGeofences.get(id);
+                if (geofence != null) {
+                    Geofence copy = new Geofence(geofence.getAddress(), geofence.getLatitude(), geofence.getLongitude(), 0);
+                    copy.setId(id);
+                    copy.setTriggered(geofence.isTriggered());
+                    result.add(copy);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.alimjan.geofence.ui.notification;
+
+import com.example.alimjan.geofence.engine.GeofenceTransition;
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test for {@link GeofenceNotificationDispatcher}, runs against a recording poster and
+ * a test scheduler.
+ */
+public class GeofenceNotificationDispatcherTest {
+
+    private TestScheduler mScheduler;
+    private List<List<GeofenceTransition>> mPosts;
+    private GeofenceNotificationDispatcher.Poster mPoster;
+    private GeofenceNotificationDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        this.mScheduler = new TestScheduler();
+        this.mPosts = new ArrayList<>();
+        this.mPoster = new GeofenceNotificationDispatcher.Poster() {
+            @Override
+            public void post(@NonNull GeofenceTransition transition) {
+                mPosts.add(Collections.singletonList(transition));
+            }
+
+            @Override
+            public void postSummary(@NonNull List<GeofenceTransition> transitions) {
+                mPosts.add(transitions);
+            }
+        };
+        this.mDispatcher = new GeofenceNotificationDispatcher(mPoster, GeofenceNotificationDispatcher.DEFAULT_COOLDOWN, GeofenceNotificationDispatcher.DEFAULT_MAX_BURST,
+                GeofenceNotificationDispatcher.DEFAULT_POST_INTERVAL, mScheduler);
+    }
+
+    @Test
+    public void burst_postedAsHandfulOfNotifications() {
+        // 200 transitions arriving one by one within a second
+        for (int i = 0; i < 200; i++) {
+            mDispatcher.dispatch(Collections.singletonList(transition(i, GeofenceTransition.Type.ENTER)));
+            mScheduler.advanceTimeBy(5, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(GeofenceNotificationDispatcher.DEFAULT_MAX_BURST, mPosts.size());
+
+        // Rest goes out as one summary once rate limit allows
+        mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        assertEquals(GeofenceNotificationDispatcher.DEFAULT_MAX_BURST + 1, mPosts.size());
+        assertEquals(200 - GeofenceNotificationDispatcher.DEFAULT_MAX_BURST, mPosts.get(mPosts.size() - 1).size());
+        assertEquals(mPosts.size(), mDispatcher.getPosts());
+    }
+
+    @Test
+    public void batch_postedAsOneSummary() {
+        List<GeofenceTransition> transitions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            transitions.add(transition(i, GeofenceTransition.Type.EXIT));
+        }
+        mDispatcher.dispatch(transitions);
+        assertEquals(1, mPosts.size());
+        assertEquals(200, mPosts.get(0).size());
+    }
+
+    @Test
+    public void idleCallback_waitsForDelayedPost() {
+        List<String> calls = new ArrayList<>();
+        mDispatcher.whenIdle(() -> calls.add("idle"));
+        assertEquals(1, calls.size());
+
+        // Burst is used up, the last transition waits for a delayed post
+        for (int i = 0; i <= GeofenceNotificationDispatcher.DEFAULT_MAX_BURST; i++) {
+            mDispatcher.dispatch(Collections.singletonList(transition(i, GeofenceTransition.Type.ENTER)));
+        }
+        mDispatcher.whenIdle(() -> calls.add("stopped after " + mPosts.size()));
+        assertEquals(1, calls.size());
+
+        mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        assertEquals("stopped after " + (GeofenceNotificationDispatcher.DEFAULT_MAX_BURST + 1), calls.get(1));
+    }
+
+    @Test
+    public void geofence_notNotifiedAgainWithinCooldown() {
+        mDispatcher.dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.ENTER)));
+        mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        mDispatcher.dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.ENTER)));
+        assertEquals(1, mPosts.size());
+
+        // Other direction has its own cooldown
+        mDispatcher.dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.EXIT)));
+        assertEquals(2, mPosts.size());
+
+        mScheduler.advanceTimeBy(GeofenceNotificationDispatcher.DEFAULT_COOLDOWN, TimeUnit.MILLISECONDS);
+        mDispatcher.dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.ENTER)));
+        assertEquals(3, mPosts.size());
+    }
+
+    @Test
+    public void cooldown_heldAcrossRestart() {
+        Map<Long, Long> stored = new HashMap<>();
+        GeofenceNotificationDispatcher.CooldownStore store = new GeofenceNotificationDispatcher.CooldownStore() {
+            @NonNull
+            @Override
+            public Map<Long, Long> load(long since) {
+                return new HashMap<>(stored);
+            }
+
+            @Override
+            public void save(@NonNull Map<Long, Long> notified, long expiredBefore) {
+                stored.putAll(notified);
+                stored.values().removeIf(time -> time < expiredBefore);
+            }
+        };
+        new GeofenceNotificationDispatcher(mPoster, store, GeofenceNotificationDispatcher.DEFAULT_COOLDOWN, 1, 0, mScheduler)
+                .dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.ENTER)));
+        assertEquals(1, mPosts.size());
+
+        // New process, notified times come from the store
+        GeofenceNotificationDispatcher restarted = new GeofenceNotificationDispatcher(mPoster, store,
+                GeofenceNotificationDispatcher.DEFAULT_COOLDOWN, 1, 0, mScheduler);
+        mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        restarted.dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.ENTER)));
+        assertEquals(1, mPosts.size());
+
+        mScheduler.advanceTimeBy(GeofenceNotificationDispatcher.DEFAULT_COOLDOWN, TimeUnit.MILLISECONDS);
+        restarted.dispatch(Collections.singletonList(transition(1, GeofenceTransition.Type.ENTER)));
+        assertEquals(2, mPosts.size());
+    }
+
+    private GeofenceTransition transition(long id, GeofenceTransition.Type type) {
+        Geofence geofence = new Geofence("Place " + id, 31.2, 121.4, 0);
+        geofence.setId(id);
+        return new GeofenceTransition(geofence, type, mScheduler.now(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.alimjan.geofence.benchmark;
+
+import com.example.alimjan.geofence.geo.GeofenceColumnStore;
+import com.example.alimjan.geofence.geo.Geohash;
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap cost of holding geofences, as objects read from the database and as a
+ * {@link GeofenceColumnStore}. Each operation builds one full set, so gc.alloc.rate.norm of the
+ * gc profiler divided by the geofence count is the cost of a geofence in each model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FootprintBenchmark {
+
+    @Param({"10000"})
+    public int geofences;
+
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private List<Geofence> mObjects;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mLatitudes = new double[geofences];
+        mLongitudes = new double[geofences];
+        for (int i = 0; i < geofences; i++) {
+            mLatitudes[i] = 31 + random.nextDouble();
+            mLongitudes[i] = 121 + random.nextDouble();
+        }
+        mObjects = objects();
+    }
+
+    /**
+     * Geofences as read from the database, address and geohash are loaded.
+     */
+    @Benchmark
+    public List<Geofence> objects() {
+        List<Geofence> list = new ArrayList<>(geofences);
+        for (int i = 0; i < geofences; i++) {
+            Geofence geofence = new Geofence("Place " + i, mLatitudes[i], mLongitudes[i], 0);
+            geofence.setId(i + 1);
+            geofence.setRadius(200);
+            geofence.setGeohash(Geohash.encode(mLatitudes[i], mLongitudes[i], Geohash.PRECISION));
+            list.add(geofence);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public GeofenceColumnStore columns() {
+        GeofenceColumnStore store = new GeofenceColumnStore();
+        store.load(mObjects);
+        return store;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.alimjan.geofence.benchmark;
+
+import com.example.alimjan.geofence.geo.CircleGeometry;
+import com.example.alimjan.geofence.geo.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of circle polygon generation, great-circle distance and containment checks, the
+ * geometry run for every drawn geofence and every location fix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeometryBenchmark {
+    // Number of precomputed coordinates cycled through, keeps inputs from being constant folded.
+    private static final int POINTS = 1024;
+
+    private final double[] mLatitudes = new double[POINTS];
+    private final double[] mLongitudes = new double[POINTS];
+    private double[] mCircleBuffer;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            mLatitudes[i] = 31.2 + GeoMath.latitudeDelta(random.nextDouble() * 2000 - 1000);
+            mLongitudes[i] = 121.4 + GeoMath.longitudeDelta(31.2, random.nextDouble() * 2000 - 1000);
+        }
+    }
+
+    /**
+     * Circle drawn around a tapped point, like {@code polygonCircleForPoint} which reuses its
+     * buffer between taps.
+     */
+    @Benchmark
+    public double[] polygonCircleForPoint() {
+        int i = next();
+        mCircleBuffer = CircleGeometry.circle(mLatitudes[i], mLongitudes[i], 200, CircleGeometry.DEFAULT_VERTEX_COUNT, mCircleBuffer);
+        return mCircleBuffer;
+    }
+
+    /**
+     * Same circle into a new buffer, what a caller without a buffer to reuse pays.
+     */
+    @Benchmark
+    public double[] polygonCircleForPoint_newBuffer() {
+        int i = next();
+        return CircleGeometry.circle(mLatitudes[i], mLongitudes[i], 200, CircleGeometry.DEFAULT_VERTEX_COUNT, null);
+    }
+
+    @Benchmark
+    public double distance() {
+        int i = next();
+        return GeoMath.distance(31.2, 121.4, mLatitudes[i], mLongitudes[i]);
+    }
+
+    /**
+     * Containment of a point in a 200 meter geofence, a distance check against the radius.
+     */
+    @Benchmark
+    public boolean contains() {
+        int i = next();
+        return GeoMath.distance(31.2, 121.4, mLatitudes[i], mLongitudes[i]) <= 200;
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & (POINTS - 1);
+        return mIndex;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.alimjan.geofence.benchmark;
+
+import com.example.alimjan.geofence.engine.GeofenceEngine;
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.GeofenceColumnStore;
+import com.example.alimjan.geofence.geo.GeofenceIndex;
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of geofence lookup by id and by coordinate, in the spatial index and in the column
+ * store, and of a full engine evaluation of a fix, over geofences scattered across a city.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark {
+    private static final int POINTS = 1024;
+    // Geofences are scattered over a square of this many meters.
+    private static final double AREA = 20000;
+
+    @Param({"100", "10000"})
+    public int geofences;
+
+    private final double[] mLatitudes = new double[POINTS];
+    private final double[] mLongitudes = new double[POINTS];
+    private final long[] mIds = new long[POINTS];
+    private GeofenceIndex mIndex;
+    private GeofenceColumnStore mColumns;
+    private GeofenceEngine mEngine;
+    private int mNext;
+    private long mTime;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Geofence> list = new ArrayList<>(geofences);
+        for (int i = 0; i < geofences; i++) {
+            Geofence geofence = new Geofence("Place " + i, 31.2 + GeoMath.latitudeDelta(random.nextDouble() * AREA),
+                    121.4 + GeoMath.longitudeDelta(31.2, random.nextDouble() * AREA), 0);
+            geofence.setId(i + 1);
+            list.add(geofence);
+        }
+        for (int i = 0; i < POINTS; i++) {
+            mLatitudes[i] = 31.2 + GeoMath.latitudeDelta(random.nextDouble() * AREA);
+            mLongitudes[i] = 121.4 + GeoMath.longitudeDelta(31.2, random.nextDouble() * AREA);
+            mIds[i] = 1 + random.nextInt(geofences);
+        }
+        mIndex = new GeofenceIndex();
+        mIndex.load(list);
+        mColumns = new GeofenceColumnStore();
+        mColumns.load(list);
+        mEngine = new GeofenceEngine();
+        mEngine.setGeofences(list);
+    }
+
+    @Benchmark
+    public Geofence byId() {
+        return mIndex.get(mIds[next()]);
+    }
+
+    @Benchmark
+    public List<Geofence> byCoordinate() {
+        int i = next();
+        return mIndex.containing(mLatitudes[i], mLongitudes[i]);
+    }
+
+    @Benchmark
+    public double byId_columns() {
+        return mColumns.getRadius(mIds[next()]);
+    }
+
+    @Benchmark
+    public long[] byCoordinate_columns() {
+        int i = next();
+        return mColumns.containing(mLatitudes[i], mLongitudes[i]);
+    }
+
+    @Benchmark
+    public double distanceToNearestBoundary() {
+        int i = next();
+        return mIndex.distanceToNearestBoundary(mLatitudes[i], mLongitudes[i], 5000);
+    }
+
+    /**
+     * A fix evaluated by the engine, lookup plus transition bookkeeping.
+     */
+    @Benchmark
+    public Object onLocation() {
+        int i = next();
+        mTime += 1000;
+        return mEngine.onLocation(mLatitudes[i], mLongitudes[i], 10, mTime);
+    }
+
+    private int next() {
+        mNext = (mNext + 1) & (POINTS - 1);
+        return mNext;
+    }
+}
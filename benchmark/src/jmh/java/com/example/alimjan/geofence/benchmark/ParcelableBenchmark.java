@@ -0,0 +1,75 @@
+package com.example.alimjan.geofence.benchmark;
+
+import android.os.Parcel;
+
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.ParcelableGeofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link Geofence} Parcelable round trips through {@link ParcelableGeofence}, the
+ * path a geofence takes through intents and saved instance state. Runs on the JVM parcel of this
+ * module, so it measures the adapter's own writing and reading, not the native parcel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParcelableBenchmark {
+    private ParcelableGeofence mGeofence;
+    private byte[] mMarshalled;
+
+    @Setup
+    public void setUp() {
+        Geofence geofence = new Geofence("People's Square, Huangpu, Shanghai", 31.2304, 121.4737, 0);
+        geofence.setId(42);
+        geofence.setRadius(150);
+        mGeofence = new ParcelableGeofence(geofence);
+        Parcel parcel = Parcel.obtain();
+        mGeofence.writeToParcel(parcel, 0);
+        mMarshalled = parcel.marshall();
+        parcel.recycle();
+    }
+
+    @Benchmark
+    public Geofence roundTrip() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            mGeofence.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return ParcelableGeofence.CREATOR.createFromParcel(parcel).getGeofence();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Benchmark
+    public byte[] marshall() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            mGeofence.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Benchmark
+    public Geofence unmarshall() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(mMarshalled, 0, mMarshalled.length);
+            return ParcelableGeofence.CREATOR.createFromParcel(parcel).getGeofence();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package android.os;
+
+import java.util.Arrays;
+
+/**
+ * JVM stand-in for the framework {@code Parcel}, so Parcelable models can be benchmarked off
+ * device. It keeps the layout of the native one, values are little endian and padded to four
+ * bytes, strings are UTF-16 with a length prefix and a terminator, so sizes and copying work are
+ * comparable. Only methods used by the Parcelable adapters are implemented.
+ */
+public final class Parcel {
+    private static final int POOL_SIZE = 6;
+    private static final Parcel[] POOL = new Parcel[POOL_SIZE];
+
+    private byte[] mData = new byte[256];
+    private int mSize;
+    private int mPosition;
+
+    private Parcel() {
+    }
+
+    /**
+     * Returns a parcel from the pool, or a new one if the pool is empty.
+     */
+    public static Parcel obtain() {
+        synchronized (POOL) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                Parcel parcel = POOL[i];
+                if (parcel != null) {
+                    POOL[i] = null;
+                    return parcel;
+                }
+            }
+        }
+        return new Parcel();
+    }
+
+    /**
+     * Empties the parcel and puts it back to the pool.
+     */
+    public void recycle() {
+        mSize = 0;
+        mPosition = 0;
+        synchronized (POOL) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (POOL[i] == null) {
+                    POOL[i] = this;
+                    return;
+                }
+            }
+        }
+    }
+
+    public int dataSize() {
+        return mSize;
+    }
+
+    public int dataPosition() {
+        return mPosition;
+    }
+
+    public void setDataPosition(int position) {
+        mPosition = position;
+    }
+
+    public byte[] marshall() {
+        return Arrays.copyOf(mData, mSize);
+    }
+
+    public void unmarshall(byte[] data, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(data, offset, mData, 0, length);
+        mSize = length;
+        mPosition = 0;
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(mPosition + 4);
+        putInt(mPosition, value);
+        advance(4);
+    }
+
+    public void writeLong(long value) {
+        ensureCapacity(mPosition + 8);
+        putInt(mPosition, (int) value);
+        putInt(mPosition + 4, (int) (value >>> 32));
+        advance(8);
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    public void writeByte(byte value) {
+        writeInt(value);
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        int length = value.length();
+        writeInt(length);
+        int bytes = (length + 1) * 2;
+        int padded = (bytes + 3) & ~3;
+        ensureCapacity(mPosition + padded);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            mData[mPosition + i * 2] = (byte) c;
+            mData[mPosition + i * 2 + 1] = (byte) (c >>> 8);
+        }
+        Arrays.fill(mData, mPosition + length * 2, mPosition + padded, (byte) 0);
+        advance(padded);
+    }
+
+    public int readInt() {
+        if (mPosition + 4 > mSize) {
+            return 0;
+        }
+        int value = getInt(mPosition);
+        mPosition += 4;
+        return value;
+    }
+
+    public long readLong() {
+        if (mPosition + 8 > mSize) {
+            return 0;
+        }
+        long value = (getInt(mPosition) & 0xffffffffL) | ((long) getInt(mPosition + 4) << 32);
+        mPosition += 8;
+        return value;
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public byte readByte() {
+        return (byte) readInt();
+    }
+
+    public String readString() {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        int padded = ((length + 1) * 2 + 3) & ~3;
+        if (mPosition + padded > mSize) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ((mData[mPosition + i * 2] & 0xff) | (mData[mPosition + i * 2 + 1] & 0xff) << 8);
+        }
+        mPosition += padded;
+        return new String(chars);
+    }
+
+    private void advance(int bytes) {
+        mPosition += bytes;
+        mSize = Math.max(mSize, mPosition);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(capacity, mData.length * 2));
+        }
+    }
+
+    private void putInt(int position, int value) {
+        mData[position] = (byte) value;
+        mData[position + 1] = (byte) (value >>> 8);
+        mData[position + 2] = (byte) (value >>> 16);
+        mData[position + 3] = (byte) (value >>> 24);
+    }
+
+    private int getInt(int position) {
+        return (mData[position] & 0xff) | (mData[position + 1] & 0xff) << 8
+                | (mData[position + 2] & 0xff) << 16 | (mData[position + 3] & 0xff) << 24;
+    }
+}
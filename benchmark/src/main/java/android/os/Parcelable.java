@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * JVM stand-in for the framework interface, see {@link Parcel}.
+ */
+public interface Parcelable {
+    int CONTENTS_FILE_DESCRIPTOR = 0x0001;
+
+    int PARCELABLE_WRITE_RETURN_VALUE = 0x0001;
+
+    int describeContents();
+
+    void writeToParcel(Parcel dest, int flags);
+
+    interface Creator<T> {
+        T createFromParcel(Parcel source);
+
+        T[] newArray(int size);
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.alimjan.geofence.engine;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.GeofenceIndex;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+import com.example.alimjan.geofence.model.GeofenceState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An in-process geofence evaluation engine, it takes a single stream of location fixes and checks
+ * each fix against all the geofences it holds, then emits ENTER and EXIT transitions itself. This
+ * replaces registering a separate proximity alert to {@link android.location.LocationManager} for
+ * every geofence.
+ * <p>
+ * Geofences are kept in a {@link GeofenceIndex}, so a fix only tests the geofences whose bounding
+ * box contains it plus the ones it is currently inside of, which keeps evaluation cost independent
+ * of total geofence count.
+ * <p>
+ * Transitions are confirmed according to a {@link TransitionPolicy}, a transition that isn't
+ * confirmed yet is tracked as a candidate until a later fix confirms or cancels it.
+ * <p>
+ * Inside state and candidates only live in memory, changes to them are handed out as
+ * {@link GeofenceState} rows by {@link #drainStateChanges()} so the caller can store them and seed a
+ * restarted engine through {@link #setGeofences(Collection, Collection)}.
+ */
+public class GeofenceEngine {
+    private static GeofenceEngine INSTANCE;
+
+    private final TransitionPolicy mPolicy;
+    // Spatial index of all geofences.
+    private final GeofenceIndex mIndex = new GeofenceIndex();
+    // Geofences that last confirmed transition is inside of.
+    private final Map<Long, Geofence> mInside = new HashMap<>();
+    // Transitions waiting for dwell time keyed by geofence id, direction is the opposite of inside state.
+    private final Map<Long, Candidate> mCandidates = new HashMap<>();
+    // Number of evaluated fixes, tells candidates pointed to by last fix apart.
+    private long mFixes;
+    // Indicates geofences loaded from the data source at least once.
+    private boolean mLoaded;
+    // Changes made before first load keyed by id, null value means removal. They are applied on top
+    // of loaded geofences because the load may have read the data source before they happened.
+    private final Map<Long, Geofence> mPendingChanges = new HashMap<>();
+    // Ids of geofences whose inside state or candidate changed since last drain.
+    private final Set<Long> mChangedStates = new HashSet<>();
+
+    /**
+     * Returns process wide engine instance, transition state has to survive between location
+     * updates so it is shared by every component.
+     */
+    public static GeofenceEngine getInstance() {
+        if (INSTANCE == null) {
+            synchronized (GeofenceEngine.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new GeofenceEngine(TransitionPolicy.DEFAULT);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Creates an engine that confirms every transition right away.
+     */
+    public GeofenceEngine() {
+        this(TransitionPolicy.NONE);
+    }
+
+    public GeofenceEngine(@NonNull TransitionPolicy policy) {
+        this.mPolicy = policy;
+    }
+
+    @NonNull
+    public TransitionPolicy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Returns spatial index of the geofences held by the engine, it can be queried directly but
+     * should only be modified through the engine.
+     */
+    @NonNull
+    public GeofenceIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Returns true when {@link #setGeofences} called at least once.
+     */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Returns number of geofences held by the engine.
+     */
+    public synchronized int size() {
+        return mIndex.size();
+    }
+
+    /**
+     * Replaces all geofences, inside state of geofences that still exist is preserved so reloading
+     * doesn't emit duplicate transitions.
+     *
+     * @param geofences All geofences, typically whole geofence table.
+     */
+    public synchronized void setGeofences(@NonNull Collection<Geofence> geofences) {
+        setGeofences(geofences, Collections.<GeofenceState>emptyList());
+    }
+
+    /**
+     * Replaces all geofences, the first call also seeds inside state and candidates from stored
+     * states. Later calls ignore the states because state held in memory is newer.
+     *
+     * @param geofences All geofences, typically whole geofence table.
+     * @param states    Stored states, states of geofences that don't exist are ignored.
+     */
+    public synchronized void setGeofences(@NonNull Collection<Geofence> geofences,
+                                          @NonNull Collection<GeofenceState> states) {
+        mIndex.load(geofences);
+        for (Map.Entry<Long, Geofence> change : mPendingChanges.entrySet()) {
+            if (change.getValue() != null) {
+                mIndex.add(change.getValue());
+            } else {
+                mIndex.remove(change.getKey());
+            }
+        }
+        mPendingChanges.clear();
+        if (!mLoaded) {
+            for (GeofenceState state : states) {
+                Geofence geofence = mIndex.get(state.getGeofenceId());
+                if (geofence == null) {
+                    // Left for the next drain to delete
+                    mChangedStates.add(state.getGeofenceId());
+                    continue;
+                }
+                if (state.isInside()) {
+                    mInside.put(geofence.getId(), geofence);
+                }
+                if (state.getDwellSince() != null) {
+                    // Next fix has to point to it again like any other candidate
+                    Candidate candidate = new Candidate(state.getDwellSince());
+                    candidate.fix = mFixes;
+                    mCandidates.put(geofence.getId(), candidate);
+                }
+            }
+        }
+        Iterator<Map.Entry<Long, Geofence>> iterator = mInside.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Geofence> entry = iterator.next();
+            Geofence geofence = mIndex.get(entry.getKey());
+            if (geofence != null) {
+                entry.setValue(geofence);
+            } else {
+                iterator.remove();
+                mChangedStates.add(entry.getKey());
+            }
+        }
+        Iterator<Long> candidates = mCandidates.keySet().iterator();
+        while (candidates.hasNext()) {
+            Long id = candidates.next();
+            if (mIndex.get(id) == null) {
+                candidates.remove();
+                mChangedStates.add(id);
+            }
+        }
+        mLoaded = true;
+    }
+
+    /**
+     * Adds a geofence or replaces the geofence with same id.
+     *
+     * @param geofence A geofence that has a valid id.
+     */
+    public synchronized void add(@NonNull Geofence geofence) {
+        mIndex.add(geofence);
+        if (!mLoaded) {
+            mPendingChanges.put(geofence.getId(), geofence);
+        }
+        if (mInside.containsKey(geofence.getId())) {
+            mInside.put(geofence.getId(), geofence);
+        }
+    }
+
+    /**
+     * Adds a batch of geofences or replaces the geofences with same id.
+     *
+     * @param geofences Geofences that have a valid id.
+     */
+    public synchronized void addAll(@NonNull Collection<Geofence> geofences) {
+        mIndex.addAll(geofences);
+        for (Geofence geofence : geofences) {
+            if (!mLoaded) {
+                mPendingChanges.put(geofence.getId(), geofence);
+            }
+            if (mInside.containsKey(geofence.getId())) {
+                mInside.put(geofence.getId(), geofence);
+            }
+        }
+    }
+
+    /**
+     * Applies a set of changes, cost is proportional to number of changed geofences. Applying a
+     * change that the engine already has, for example one made through {@link #add}, is harmless.
+     *
+     * @param changes Changes of the geofence table.
+     */
+    public synchronized void apply(@NonNull GeofenceChangeSet changes) {
+        for (Geofence geofence : changes.getRemoved()) {
+            remove(geofence.getId());
+        }
+        addAll(changes.getAdded());
+        addAll(changes.getUpdated());
+    }
+
+    /**
+     * Removes a geofence, no transition is emitted for a removed geofence.
+     *
+     * @param id A geofence id.
+     * @return True if the last fix was inside of the removed geofence.
+     */
+    public synchronized boolean remove(long id) {
+        mIndex.remove(id);
+        if (!mLoaded) {
+            mPendingChanges.put(id, null);
+        }
+        boolean changed = mCandidates.remove(id) != null;
+        boolean inside = mInside.remove(id) != null;
+        if (changed || inside) {
+            mChangedStates.add(id);
+        }
+        return inside;
+    }
+
+    /**
+     * Returns states of geofences whose inside state or candidate changed since last call, an
+     * {@link GeofenceState#isEmpty() empty} state means the geofence has nothing to store anymore.
+     */
+    @NonNull
+    public synchronized List<GeofenceState> drainStateChanges() {
+        if (mChangedStates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<GeofenceState> states = new ArrayList<>(mChangedStates.size());
+        for (Long id : mChangedStates) {
+            Candidate candidate = mCandidates.get(id);
+            states.add(new GeofenceState(id, mInside.containsKey(id), candidate != null ? candidate.since : null));
+        }
+        mChangedStates.clear();
+        return states;
+    }
+
+    /**
+     * Evaluates a location fix of unknown accuracy against all geofences.
+     *
+     * @see #onLocation(double, double, float, long)
+     */
+    @NonNull
+    public List<GeofenceTransition> onLocation(double latitude, double longitude, long time) {
+        return onLocation(latitude, longitude, -1, time);
+    }
+
+    /**
+     * Evaluates a location fix against all geofences.
+     *
+     * @param latitude  Latitude of the fix.
+     * @param longitude Longitude of the fix.
+     * @param accuracy  Accuracy of the fix in meters, negative when unknown.
+     * @param time      Time of the fix in milliseconds since epoch, fixes are expected in time order.
+     * @return Transitions confirmed by the fix in EXIT then ENTER order, empty if there is none.
+     */
+    @NonNull
+    public synchronized List<GeofenceTransition> onLocation(double latitude, double longitude, float accuracy, long time) {
+        if (!mPolicy.accepts(accuracy)) {
+            return Collections.emptyList();
+        }
+        List<GeofenceTransition> transitions = null;
+        mFixes++;
+
+        // Exits only happen to geofences the previous fix was inside of.
+        Iterator<Geofence> iterator = mInside.values().iterator();
+        while (iterator.hasNext()) {
+            Geofence geofence = iterator.next();
+            if (isExpired(geofence, time)) {
+                // Expired geofences stop silently like an expired proximity alert.
+                iterator.remove();
+                mCandidates.remove(geofence.getId());
+                mChangedStates.add(geofence.getId());
+            } else if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude)
+                    > geofence.getRadius() + mPolicy.getMargin(geofence.getRadius())
+                    && isConfirmed(geofence, time)) {
+                iterator.remove();
+                mChangedStates.add(geofence.getId());
+                if (transitions == null) {
+                    transitions = new ArrayList<>();
+                }
+                transitions.add(new GeofenceTransition(geofence, GeofenceTransition.Type.EXIT, time, accuracy));
+            }
+        }
+
+        // Enters only happen to geofences containing the fix.
+        List<Geofence> containing = mIndex.containing(latitude, longitude);
+        for (int i = 0, size = containing.size(); i < size; i++) {
+            Geofence geofence = containing.get(i);
+            if (!mInside.containsKey(geofence.getId()) && !isExpired(geofence, time)
+                    && GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude)
+                    <= geofence.getRadius() - mPolicy.getMargin(geofence.getRadius())
+                    && isConfirmed(geofence, time)) {
+                mInside.put(geofence.getId(), geofence);
+                mChangedStates.add(geofence.getId());
+                if (transitions == null) {
+                    transitions = new ArrayList<>();
+                }
+                transitions.add(new GeofenceTransition(geofence, GeofenceTransition.Type.ENTER, time, accuracy));
+            }
+        }
+
+        // A candidate this fix didn't point to is cancelled
+        if (!mCandidates.isEmpty()) {
+            Iterator<Map.Entry<Long, Candidate>> candidates = mCandidates.entrySet().iterator();
+            while (candidates.hasNext()) {
+                Map.Entry<Long, Candidate> candidate = candidates.next();
+                if (candidate.getValue().fix != mFixes) {
+                    candidates.remove();
+                    mChangedStates.add(candidate.getKey());
+                }
+            }
+        }
+
+        return transitions != null ? transitions : Collections.<GeofenceTransition>emptyList();
+    }
+
+    /**
+     * Returns number of transitions waiting for dwell time.
+     */
+    public synchronized int getCandidateCount() {
+        return mCandidates.size();
+    }
+
+    /**
+     * Records that current fix points to a transition of a geofence, returns true once the
+     * transition held for dwell time.
+     */
+    private boolean isConfirmed(Geofence geofence, long time) {
+        if (mPolicy.getDwellTime() <= 0) {
+            return true;
+        }
+        Candidate candidate = mCandidates.get(geofence.getId());
+        if (candidate == null) {
+            candidate = new Candidate(time);
+            mCandidates.put(geofence.getId(), candidate);
+            mChangedStates.add(geofence.getId());
+        }
+        if (time - candidate.since >= mPolicy.getDwellTime()) {
+            mCandidates.remove(geofence.getId());
+            mChangedStates.add(geofence.getId());
+            return true;
+        }
+        candidate.fix = mFixes;
+        return false;
+    }
+
+    // Non positive expire time means geofence never expires.
+    private static boolean isExpired(Geofence geofence, long time) {
+        return geofence.getExpireTime() > 0 && time > geofence.getExpireTime();
+    }
+
+    /**
+     * A transition waiting for dwell time.
+     */
+    private static class Candidate {
+        // Time of the fix that started the transition.
+        private final long since;
+        // Last fix that pointed to the transition.
+        private long fix;
+
+        Candidate(long since) {
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.alimjan.geofence.engine;
+
+import com.example.alimjan.geofence.model.Geofence;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A data class that represents a geofence transition emitted by {@link GeofenceEngine}.
+ */
+public class GeofenceTransition {
+
+    /**
+     * Direction of a transition.
+     */
+    public enum Type {
+        ENTER,
+        EXIT
+    }
+
+    private final Geofence geofence;
+    private final Type type;
+    private final long time;
+    // Accuracy of the location fix in meters, negative when unknown.
+    private final float accuracy;
+
+    public GeofenceTransition(@NonNull Geofence geofence, @NonNull Type type, long time) {
+        this(geofence, type, time, -1);
+    }
+
+    public GeofenceTransition(@NonNull Geofence geofence, @NonNull Type type, long time, float accuracy) {
+        this.geofence = geofence;
+        this.type = type;
+        this.time = time;
+        this.accuracy = accuracy;
+    }
+
+    public Geofence getGeofence() {
+        return geofence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "GeofenceTransition {" +
+                "id = '" + this.geofence.getId() + '\'' +
+                ", type = '" + this.type + '\'' +
+                ", time = '" + this.time + '\'' +
+                "}";
+    }
+}
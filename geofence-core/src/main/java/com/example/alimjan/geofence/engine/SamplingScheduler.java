@@ -0,0 +1,199 @@
+package com.example.alimjan.geofence.engine;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Chooses how often and how accurately location is sampled from how soon the device could reach a
+ * geofence boundary. After each fix the distance to the nearest boundary is divided by recent
+ * speed, and the next fix is requested well before that time runs out. A device at rest may drive
+ * off right after a fix, so an interval longer than a minute also ends before a car could reach
+ * the boundary. Far from every geofence the device sleeps for minutes on coarse fixes, near a
+ * boundary it samples fine fixes every few seconds. Slow sampling only delivers a fix once the
+ * device moved a little. Fast sampling delivers every fix, so the scheduler sees the device stop
+ * and slows down, and so does a transition waiting for its dwell time, it needs a fix to be
+ * confirmed.
+ * <p>
+ * Intervals snap to a few fixed levels so the location request, which is costly to replace, only
+ * changes when the level changes.
+ */
+public class SamplingScheduler {
+    // Interval levels in milliseconds, shortest first.
+    static final long[] INTERVALS = {
+            1000 * 5, 1000 * 10, 1000 * 20, 1000 * 30, 1000 * 60, 1000 * 60 * 2, 1000 * 60 * 5, 1000 * 60 * 10};
+    // Speed assumed for a device that seems to stand still, about walking speed.
+    static final double MIN_SPEED = 1.5;
+    // Speed a device at rest may pick up right after a fix, about city driving speed.
+    static final double DRIVING_SPEED = 14;
+    // Share of time to the nearest boundary used as interval, leaves room for a couple of fixes.
+    static final double SAFETY_FACTOR = 0.5;
+    // Boundaries closer than this in meters are sampled with fine accuracy.
+    static final double NEAR_DISTANCE = 1000;
+    // Recent speed halves every this many milliseconds, so a stop doesn't slow sampling at once.
+    static final long SPEED_HALF_LIFE = 1000 * 60;
+    // Smallest move in meters that delivers a fix, a device standing still isn't woken up.
+    static final float MIN_DISTANCE = 20;
+    // Shortest interval whose fixes are filtered by distance.
+    static final long MIN_FILTERED_INTERVAL = 1000 * 60;
+
+    /**
+     * Location request chosen by the scheduler.
+     */
+    public static class Request {
+        /**
+         * Request used before the first fix, samples as often as the legacy fixed cadence.
+         */
+        public static final Request INITIAL = new Request(INTERVALS[1], true, 0);
+
+        private final long interval;
+        private final boolean highAccuracy;
+        private final float minDistance;
+
+        public Request(long interval, boolean highAccuracy, float minDistance) {
+            this.interval = interval;
+            this.highAccuracy = highAccuracy;
+            this.minDistance = minDistance;
+        }
+
+        /**
+         * Returns time between fixes in milliseconds.
+         */
+        public long getInterval() {
+            return interval;
+        }
+
+        /**
+         * Returns true if fine fixes are needed, otherwise coarse low power fixes do.
+         */
+        public boolean isHighAccuracy() {
+            return highAccuracy;
+        }
+
+        /**
+         * Returns smallest move in meters that delivers a fix.
+         */
+        public float getMinDistance() {
+            return minDistance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Request)) {
+                return false;
+            }
+            Request request = (Request) o;
+            return interval == request.interval && highAccuracy == request.highAccuracy && minDistance == request.minDistance;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((int) (interval ^ (interval >>> 32)) * 31 + (highAccuracy ? 1 : 0)) * 31 + Float.floatToIntBits(minDistance);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Request {" +
+                    "interval = '" + this.interval + '\'' +
+                    ", highAccuracy = '" + this.highAccuracy + '\'' +
+                    ", minDistance = '" + this.minDistance + '\'' +
+                    "}";
+        }
+    }
+
+    private final GeofenceEngine mEngine;
+
+    private Request mRequest = Request.INITIAL;
+    // Previous fix, time is negative until first fix.
+    private double mLatitude;
+    private double mLongitude;
+    private long mTime = -1;
+    // Recent speed in meters per second.
+    private double mSpeed;
+
+    /**
+     * @param engine Engine whose geofence boundaries are sampled around, it should have evaluated
+     *               the fix before it is handed to the scheduler.
+     */
+    public SamplingScheduler(@NonNull GeofenceEngine engine) {
+        this.mEngine = engine;
+    }
+
+    /**
+     * Returns current request.
+     */
+    @NonNull
+    public synchronized Request getRequest() {
+        return mRequest;
+    }
+
+    /**
+     * Goes back to initial request, speed is kept.
+     *
+     * @return Initial request.
+     */
+    @NonNull
+    public synchronized Request reset() {
+        mRequest = Request.INITIAL;
+        return mRequest;
+    }
+
+    /**
+     * Chooses the request that follows a fix.
+     *
+     * @param accuracy Accuracy of the fix in meters, negative when unknown.
+     * @param speed    Speed reported with the fix in meters per second, negative when unknown.
+     * @param time     Time of the fix in milliseconds since epoch.
+     * @return Request for next fixes, same instance as before if nothing changed.
+     */
+    @NonNull
+    public synchronized Request onLocation(double latitude, double longitude, float accuracy, float speed, long time) {
+        double measured = Math.max(speed, 0);
+        if (mTime >= 0 && time > mTime) {
+            long elapsed = time - mTime;
+            if (speed < 0) {
+                measured = GeoMath.distance(mLatitude, mLongitude, latitude, longitude) * 1000 / elapsed;
+            }
+            mSpeed *= Math.pow(0.5, (double) elapsed / SPEED_HALF_LIFE);
+        }
+        mSpeed = Math.max(mSpeed, measured);
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mTime = time;
+
+        // Boundary may be closer than it seems by the accuracy of the fix
+        long maxInterval = INTERVALS[INTERVALS.length - 1];
+        double speedBound = Math.max(mSpeed, MIN_SPEED);
+        double maxDistance = Math.max(speedBound / SAFETY_FACTOR, DRIVING_SPEED) * maxInterval / 1000 + Math.max(accuracy, 0);
+        double boundary = mEngine.getIndex().distanceToNearestBoundary(latitude, longitude, maxDistance);
+        double distance = Math.max(0, boundary - Math.max(accuracy, 0));
+        long interval = maxInterval;
+        if (boundary < maxDistance) {
+            // Long intervals end before the device could drive to the boundary
+            long drivingBound = Math.max(MIN_FILTERED_INTERVAL, toLevel(distance / DRIVING_SPEED * 1000));
+            interval = Math.min(toLevel(distance / speedBound * SAFETY_FACTOR * 1000), drivingBound);
+        }
+        boolean filtered = interval >= MIN_FILTERED_INTERVAL && mEngine.getCandidateCount() == 0;
+        Request request = new Request(interval, distance < NEAR_DISTANCE, filtered ? MIN_DISTANCE : 0);
+        if (!request.equals(mRequest)) {
+            mRequest = request;
+        }
+        return mRequest;
+    }
+
+    /**
+     * Returns the longest interval level not above specified interval.
+     */
+    static long toLevel(double interval) {
+        for (int i = INTERVALS.length - 1; i > 0; i--) {
+            if (INTERVALS[i] <= interval) {
+                return INTERVALS[i];
+            }
+        }
+        return INTERVALS[0];
+    }
+}
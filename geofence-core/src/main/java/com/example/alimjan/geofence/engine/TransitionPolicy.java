@@ -0,0 +1,79 @@
+package com.example.alimjan.geofence.engine;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides when {@link GeofenceEngine} confirms a transition, it keeps GPS jitter around a boundary
+ * from flipping a geofence between ENTER and EXIT.
+ * <ul>
+ * <li>Fixes less accurate than {@code minAccuracy} are ignored.</li>
+ * <li>A fix only counts as inside once it is {@code hysteresis} inside of the boundary and only
+ * counts as outside once it is {@code hysteresis} outside of it, a fix in between keeps the current
+ * state. Margin is capped at half of the radius so small geofences can still be entered.</li>
+ * <li>A transition is confirmed by the first fix that still points to it {@code dwellTime} after
+ * the fix that started it, any fix pointing back cancels it.</li>
+ * </ul>
+ */
+public class TransitionPolicy {
+    /**
+     * Confirms every transition right away, like a proximity alert.
+     */
+    public static final TransitionPolicy NONE = new TransitionPolicy(0, 0, Float.MAX_VALUE);
+    /**
+     * Policy for fixes every 10 seconds, a transition takes three consistent fixes.
+     */
+    public static final TransitionPolicy DEFAULT = new TransitionPolicy(1000 * 20, 25, 100);
+
+    private final long dwellTime;
+    private final float hysteresis;
+    private final float minAccuracy;
+
+    /**
+     * @param dwellTime   Time in milliseconds a transition has to hold before it is confirmed.
+     * @param hysteresis  Margin in meters around a boundary.
+     * @param minAccuracy Largest accuracy in meters of a fix that is evaluated.
+     */
+    public TransitionPolicy(long dwellTime, float hysteresis, float minAccuracy) {
+        this.dwellTime = dwellTime;
+        this.hysteresis = hysteresis;
+        this.minAccuracy = minAccuracy;
+    }
+
+    public long getDwellTime() {
+        return dwellTime;
+    }
+
+    public float getHysteresis() {
+        return hysteresis;
+    }
+
+    public float getMinAccuracy() {
+        return minAccuracy;
+    }
+
+    /**
+     * Returns true if a fix is accurate enough to be evaluated, unknown accuracy is accepted.
+     *
+     * @param accuracy Accuracy in meters, negative when unknown.
+     */
+    public boolean accepts(float accuracy) {
+        return accuracy < 0 || accuracy <= minAccuracy;
+    }
+
+    /**
+     * Returns margin in meters applied to a geofence of specified radius.
+     */
+    public double getMargin(double radius) {
+        return Math.min(hysteresis, radius / 2);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TransitionPolicy {" +
+                "dwellTime = '" + this.dwellTime + '\'' +
+                ", hysteresis = '" + this.hysteresis + '\'' +
+                ", minAccuracy = '" + this.minAccuracy + '\'' +
+                "}";
+    }
+}
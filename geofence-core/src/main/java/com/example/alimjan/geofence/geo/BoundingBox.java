@@ -0,0 +1,145 @@
+package com.example.alimjan.geofence.geo;
+
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An immutable latitude and longitude bounding box. A box may cross the antimeridian, in which
+ * case its west edge is greater than its east edge, for example a box from 170 to -170 is 20
+ * degrees wide.
+ */
+public final class BoundingBox {
+    private final double mSouth;
+    private final double mNorth;
+    private final double mWest;
+    // Width in degrees, between 0 and 360.
+    private final double mWidth;
+
+    public BoundingBox(double south, double west, double north, double east) {
+        this.mSouth = Math.max(-90, Math.min(south, north));
+        this.mNorth = Math.min(90, Math.max(south, north));
+        double width = east - west;
+        if (width < 0) {
+            width += 360;
+        }
+        this.mWidth = Math.min(width, 360);
+        this.mWest = this.mWidth >= 360 ? -180 : normalize(west);
+    }
+
+    public double getSouth() {
+        return mSouth;
+    }
+
+    public double getNorth() {
+        return mNorth;
+    }
+
+    /**
+     * Returns west edge between -180 and 180.
+     */
+    public double getWest() {
+        return mWest;
+    }
+
+    /**
+     * Returns east edge between -180 and 180, it is less than west edge if the box crosses the
+     * antimeridian.
+     */
+    public double getEast() {
+        return mWidth >= 360 ? 180 : normalize(mWest + mWidth);
+    }
+
+    /**
+     * Returns width in degrees of longitude.
+     */
+    public double getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Returns height in degrees of latitude.
+     */
+    public double getHeight() {
+        return mNorth - mSouth;
+    }
+
+    /**
+     * Returns area in square degrees, only meaningful to compare boxes at similar latitudes.
+     */
+    public double getArea() {
+        return getWidth() * getHeight();
+    }
+
+    /**
+     * Returns true if the box covers every longitude.
+     */
+    public boolean isFullWidth() {
+        return mWidth >= 360;
+    }
+
+    /**
+     * Returns a box grown by a fraction of its size on each side, latitude is clamped at the poles
+     * and width at 360 degrees.
+     *
+     * @param fraction Margin added to each side relative to width and height, for example 0.5
+     *                 doubles both width and height.
+     */
+    @NonNull
+    public BoundingBox expand(double fraction) {
+        double dLat = getHeight() * fraction;
+        double dLon = mWidth * fraction;
+        if (mWidth + 2 * dLon >= 360) {
+            return new BoundingBox(mSouth - dLat, -180, mNorth + dLat, 180);
+        }
+        return new BoundingBox(mSouth - dLat, mWest - dLon, mNorth + dLat, mWest + mWidth + dLon);
+    }
+
+    /**
+     * Returns true if the other box is completely inside of this box.
+     */
+    public boolean contains(@NonNull BoundingBox other) {
+        if (other.mSouth < mSouth || other.mNorth > mNorth) {
+            return false;
+        }
+        if (isFullWidth()) {
+            return true;
+        }
+        // Offset of the other west edge measured eastwards from this west edge
+        double offset = other.mWest - mWest;
+        if (offset < 0) {
+            offset += 360;
+        }
+        return offset + other.mWidth <= mWidth;
+    }
+
+    /**
+     * Returns true if the point is inside of this box, edges included.
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < mSouth || latitude > mNorth) {
+            return false;
+        }
+        if (isFullWidth()) {
+            return true;
+        }
+        double offset = longitude - mWest;
+        if (offset < 0) {
+            offset += 360;
+        }
+        return offset <= mWidth;
+    }
+
+    private static double normalize(double longitude) {
+        double result = ((longitude + 180) % 360 + 360) % 360 - 180;
+        // Keep 180 instead of folding it to -180
+        return result == -180 && longitude > 0 ? 180 : result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "BoundingBox {south = '%f', west = '%f', north = '%f', east = '%f'}",
+                mSouth, mWest, mNorth, getEast());
+    }
+}
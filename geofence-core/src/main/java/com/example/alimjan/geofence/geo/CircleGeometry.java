@@ -0,0 +1,103 @@
+package com.example.alimjan.geofence.geo;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Computes polygon outlines of geofence circles. Sine and cosine of every vertex bearing are
+ * tabled once per vertex count, and the trigonometry of the center and radius is done once per
+ * circle, so a vertex costs one asin and one atan2. Vertices are written into a caller supplied
+ * buffer which can be reused between circles.
+ */
+public final class CircleGeometry {
+    // Vertex count of a geofence outline, a vertex every 8 degrees.
+    public static final int DEFAULT_VERTEX_COUNT = 45;
+    // Largest distance in pixels an outline edge may fall inside of the true circle.
+    public static final double MAX_PIXEL_ERROR = 0.5;
+    // Vertex counts of level of detail buckets, smallest to largest.
+    private static final int[] LOD_VERTEX_COUNTS = {4, 8, 16, 32, DEFAULT_VERTEX_COUNT};
+
+    // Bearing tables keyed by vertex count.
+    private static final ConcurrentHashMap<Integer, double[][]> TEMPLATES = new ConcurrentHashMap<>();
+
+    private CircleGeometry() {
+    }
+
+    /**
+     * Computes vertices of a circle on the sphere, first vertex is due north and the rest follow
+     * clockwise.
+     *
+     * @param latitude    Latitude of the center.
+     * @param longitude   Longitude of the center.
+     * @param radius      Radius in meters.
+     * @param vertexCount Number of vertices.
+     * @param buffer      Buffer to reuse, a new one is allocated if it is null or too small.
+     * @return Buffer holding latitude and longitude of every vertex interleaved, only the first
+     * {@code vertexCount * 2} elements are written.
+     */
+    @NonNull
+    public static double[] circle(double latitude, double longitude, double radius, int vertexCount, @Nullable double[] buffer) {
+        if (buffer == null || buffer.length < vertexCount * 2) {
+            buffer = new double[vertexCount * 2];
+        }
+        double[][] template = template(vertexCount);
+        double[] sinBearing = template[0];
+        double[] cosBearing = template[1];
+
+        double distance = radius / GeoMath.EARTH_RADIUS;
+        double sinDistance = Math.sin(distance);
+        double cosDistance = Math.cos(distance);
+        double centerLat = Math.toRadians(latitude);
+        double sinCenterLat = Math.sin(centerLat);
+        double cosCenterLat = Math.cos(centerLat);
+        double a = sinCenterLat * cosDistance;
+        double b = cosCenterLat * sinDistance;
+        for (int i = 0; i < vertexCount; i++) {
+            // Sine of vertex latitude is the asin argument, no need to take sine of asin
+            double sinLat = a + b * cosBearing[i];
+            double lat = Math.asin(sinLat);
+            double dLon = Math.atan2(sinBearing[i] * b, cosDistance - sinCenterLat * sinLat);
+            buffer[i * 2] = Math.toDegrees(lat);
+            buffer[i * 2 + 1] = longitude + Math.toDegrees(dLon);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the smallest level of detail vertex count whose outline stays within
+     * {@link #MAX_PIXEL_ERROR} of the circle on screen, so a circle covering a few pixels gets a
+     * handful of vertices and a street level one gets {@link #DEFAULT_VERTEX_COUNT}.
+     *
+     * @param radiusPixels Radius on screen in pixels.
+     */
+    public static int vertexCount(double radiusPixels) {
+        for (int vertexCount : LOD_VERTEX_COUNTS) {
+            // Sagitta of an edge, the gap between edge midpoint and the arc
+            if (radiusPixels * (1 - Math.cos(Math.PI / vertexCount)) <= MAX_PIXEL_ERROR) {
+                return vertexCount;
+            }
+        }
+        return DEFAULT_VERTEX_COUNT;
+    }
+
+    /**
+     * Returns sine and cosine tables of vertex bearings for a vertex count.
+     */
+    private static double[][] template(int vertexCount) {
+        double[][] template = TEMPLATES.get(vertexCount);
+        if (template == null) {
+            double[] sin = new double[vertexCount];
+            double[] cos = new double[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                double bearing = 2 * Math.PI * i / vertexCount;
+                sin[i] = Math.sin(bearing);
+                cos[i] = Math.cos(bearing);
+            }
+            template = new double[][]{sin, cos};
+            TEMPLATES.putIfAbsent(vertexCount, template);
+        }
+        return template;
+    }
+}
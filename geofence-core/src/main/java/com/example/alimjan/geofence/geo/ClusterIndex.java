@@ -0,0 +1,285 @@
+package com.example.alimjan.geofence.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A hierarchical point clustering index in the manner of supercluster. Points are projected to
+ * web mercator and greedily clustered zoom level by zoom level, from {@code maxZoom} down to
+ * {@code minZoom}, every level clustering the one above it within a fixed pixel radius. Each level
+ * keeps its own {@link PointIndex} so a viewport query at any zoom is a single range search.
+ * <p>
+ * The index is immutable, build it off the main thread and rebuild it when points change.
+ *
+ * @param <T> Type of clustered items.
+ */
+public class ClusterIndex<T> {
+    // Zoom levels clustered by default, points are never clustered beyond maximum zoom.
+    public static final int DEFAULT_MIN_ZOOM = 0;
+    public static final int DEFAULT_MAX_ZOOM = 16;
+    // Default cluster radius in pixels.
+    public static final double DEFAULT_RADIUS = 40;
+    // Tile size in pixels the radius is relative to.
+    private static final double EXTENT = 512;
+
+    /**
+     * Reads a coordinate of an item.
+     */
+    public interface Coordinate<T> {
+        double get(T item);
+    }
+
+    private final List<T> mItems;
+    private final int mMinZoom;
+    private final int mMaxZoom;
+    // Levels indexed by zoom, level maxZoom + 1 holds the unclustered points.
+    private final Level[] mLevels;
+
+    public ClusterIndex(@NonNull List<T> items, @NonNull Coordinate<T> latitude, @NonNull Coordinate<T> longitude) {
+        this(items, latitude, longitude, DEFAULT_MIN_ZOOM, DEFAULT_MAX_ZOOM, DEFAULT_RADIUS);
+    }
+
+    /**
+     * Builds the index in O(n log n) per zoom level.
+     *
+     * @param items     Items to cluster, the list must not change afterwards.
+     * @param latitude  Reads latitude of an item.
+     * @param longitude Reads longitude of an item.
+     * @param minZoom   Minimum zoom level clusters are generated for.
+     * @param maxZoom   Maximum zoom level clusters are generated for.
+     * @param radius    Cluster radius in pixels.
+     */
+    public ClusterIndex(@NonNull List<T> items, @NonNull Coordinate<T> latitude, @NonNull Coordinate<T> longitude,
+                        int minZoom, int maxZoom, double radius) {
+        this.mItems = items;
+        this.mMinZoom = minZoom;
+        this.mMaxZoom = maxZoom;
+        this.mLevels = new Level[maxZoom + 2];
+
+        int size = items.size();
+        Level level = new Level(size);
+        for (int i = 0; i < size; i++) {
+            T item = items.get(i);
+            level.add(mercatorX(longitude.get(item)), mercatorY(latitude.get(item)), 1, i);
+        }
+        level.index();
+        mLevels[maxZoom + 1] = level;
+
+        PointIndex.IntList neighbours = new PointIndex.IntList();
+        for (int zoom = maxZoom; zoom >= minZoom; zoom--) {
+            level = cluster(level, zoom, radius / (EXTENT * Math.pow(2, zoom)), neighbours);
+            level.index();
+            mLevels[zoom] = level;
+        }
+    }
+
+    /**
+     * Returns clusters and single points within a bounding box at a zoom level, a box whose west
+     * edge is greater than its east edge crosses the antimeridian.
+     */
+    @NonNull
+    public List<Cluster<T>> getClusters(double west, double south, double east, double north, double zoom) {
+        double minLongitude = ((west + 180) % 360 + 360) % 360 - 180;
+        double maxLongitude = east == 180 ? 180 : ((east + 180) % 360 + 360) % 360 - 180;
+        double minLatitude = Math.max(-90, Math.min(90, south));
+        double maxLatitude = Math.max(-90, Math.min(90, north));
+        List<Cluster<T>> result = new ArrayList<>();
+        if (east - west >= 360) {
+            query(-180, minLatitude, 180, maxLatitude, zoom, result);
+        } else if (minLongitude > maxLongitude) {
+            query(minLongitude, minLatitude, 180, maxLatitude, zoom, result);
+            query(-180, minLatitude, maxLongitude, maxLatitude, zoom, result);
+        } else {
+            query(minLongitude, minLatitude, maxLongitude, maxLatitude, zoom, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns zoom level at which a cluster breaks apart.
+     */
+    public int getExpansionZoom(@NonNull Cluster<T> cluster) {
+        return cluster.isCluster() ? Math.min(cluster.id & 31, mMaxZoom + 1) : mMaxZoom + 1;
+    }
+
+    /**
+     * Returns number of clustered items.
+     */
+    public int size() {
+        return mItems.size();
+    }
+
+    private void query(double minLongitude, double minLatitude, double maxLongitude, double maxLatitude, double zoom,
+                       List<Cluster<T>> result) {
+        Level level = mLevels[Math.max(mMinZoom, Math.min((int) Math.floor(zoom), mMaxZoom + 1))];
+        PointIndex.IntList ids = new PointIndex.IntList();
+        level.tree.range(mercatorX(minLongitude), mercatorY(maxLatitude), mercatorX(maxLongitude), mercatorY(minLatitude), ids);
+        for (int i = 0; i < ids.size(); i++) {
+            int p = ids.get(i);
+            int count = level.count[p];
+            T item = count == 1 ? mItems.get(level.id[p]) : null;
+            result.add(new Cluster<>(level.id[p], latitude(level.y[p]), longitude(level.x[p]), count, item));
+        }
+    }
+
+    /**
+     * Clusters a level into the level below it.
+     *
+     * @param radius Cluster radius in mercator units.
+     */
+    private static Level cluster(Level previous, int zoom, double radius, PointIndex.IntList neighbours) {
+        Level level = new Level(previous.size);
+        for (int i = 0; i < previous.size; i++) {
+            // Already merged into a cluster on this zoom
+            if (previous.zoom[i] <= zoom) {
+                continue;
+            }
+            previous.zoom[i] = zoom;
+
+            double x = previous.x[i];
+            double y = previous.y[i];
+            int count = previous.count[i];
+            double weightedX = x * count;
+            double weightedY = y * count;
+            // Cluster id encodes index on previous level and zoom it was formed at
+            int id = (i << 5) + (zoom + 1);
+
+            neighbours.clear();
+            previous.tree.within(x, y, radius, neighbours);
+            for (int j = 0; j < neighbours.size(); j++) {
+                int n = neighbours.get(j);
+                if (previous.zoom[n] <= zoom) {
+                    continue;
+                }
+                previous.zoom[n] = zoom;
+                int neighbourCount = previous.count[n];
+                weightedX += previous.x[n] * neighbourCount;
+                weightedY += previous.y[n] * neighbourCount;
+                count += neighbourCount;
+            }
+
+            if (count == previous.count[i]) {
+                // No neighbours, carried to this level as it is
+                level.add(x, y, count, previous.id[i]);
+            } else {
+                level.add(weightedX / count, weightedY / count, count, id);
+            }
+        }
+        return level;
+    }
+
+    private static double mercatorX(double longitude) {
+        return longitude / 360 + 0.5;
+    }
+
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(latitude));
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return y < 0 ? 0 : y > 1 ? 1 : y;
+    }
+
+    private static double longitude(double x) {
+        return (x - 0.5) * 360;
+    }
+
+    private static double latitude(double y) {
+        double y2 = Math.toRadians(180 - y * 360);
+        return 360 * Math.atan(Math.exp(y2)) / Math.PI - 90;
+    }
+
+    /**
+     * Points of a zoom level in flat arrays.
+     */
+    private static class Level {
+        private final double[] x;
+        private final double[] y;
+        // Number of items a point stands for.
+        private final int[] count;
+        // Item index for single items, cluster id for clusters.
+        private final int[] id;
+        // Lowest zoom a point is processed on while building the level below.
+        private final int[] zoom;
+        private int size;
+        private PointIndex tree;
+
+        Level(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            count = new int[capacity];
+            id = new int[capacity];
+            zoom = new int[capacity];
+        }
+
+        void add(double x, double y, int count, int id) {
+            this.x[size] = x;
+            this.y[size] = y;
+            this.count[size] = count;
+            this.id[size] = id;
+            this.zoom[size] = Integer.MAX_VALUE;
+            size++;
+        }
+
+        void index() {
+            tree = new PointIndex(x, y, size);
+        }
+    }
+
+    /**
+     * A cluster of items or a single item.
+     *
+     * @param <T> Type of clustered items.
+     */
+    public static class Cluster<T> {
+        private final int id;
+        private final double latitude;
+        private final double longitude;
+        private final int count;
+        private final T item;
+
+        Cluster(int id, double latitude, double longitude, int count, @Nullable T item) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+            this.item = item;
+        }
+
+        /**
+         * Returns cluster id, it is unique among clusters of all zoom levels. For a single item it
+         * is index of the item.
+         */
+        public int getId() {
+            return id;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * Returns number of items in the cluster.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isCluster() {
+            return count > 1;
+        }
+
+        /**
+         * Returns the item if this is a single item, null for a cluster.
+         */
+        @Nullable
+        public T getItem() {
+            return item;
+        }
+    }
+}
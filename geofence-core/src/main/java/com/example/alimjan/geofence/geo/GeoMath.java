@@ -0,0 +1,86 @@
+package com.example.alimjan.geofence.geo;
+
+/**
+ * Spherical geometry helpers shared by geofence evaluation and map rendering. All distances are in
+ * meters and all coordinates are in degrees.
+ */
+public final class GeoMath {
+    // Mean earth radius in meters.
+    public static final double EARTH_RADIUS = 6371000.0;
+    // Length of one degree of latitude in meters.
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+    // Scale of E7 fixed-point coordinates, about a centimeter of resolution.
+    public static final double E7 = 1e7;
+    // Web Mercator meters per pixel at zoom level 0 on the equator, 512 pixel tiles.
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 2 * Math.PI * 6378137.0 / 512;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Returns great-circle distance between two coordinates using haversine formula.
+     *
+     * @param latitude1  Latitude of the first coordinate.
+     * @param longitude1 Longitude of the first coordinate.
+     * @param latitude2  Latitude of the second coordinate.
+     * @param longitude2 Longitude of the second coordinate.
+     * @return Distance in meters.
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Converts degrees to E7 fixed-point integer, both latitude and longitude fit into an int.
+     */
+    public static int toE7(double degrees) {
+        return (int) Math.round(degrees * E7);
+    }
+
+    /**
+     * Converts E7 fixed-point integer to degrees.
+     */
+    public static double fromE7(int degreesE7) {
+        return degreesE7 / E7;
+    }
+
+    /**
+     * Returns latitude span in degrees that covers specified distance.
+     *
+     * @param meters Distance in meters.
+     */
+    public static double latitudeDelta(double meters) {
+        return meters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Returns longitude span in degrees that covers specified distance at given latitude, span is
+     * clamped to whole globe near the poles.
+     *
+     * @param latitude Latitude the span measured at.
+     * @param meters   Distance in meters.
+     */
+    public static double longitudeDelta(double latitude, double meters) {
+        double cos = Math.cos(Math.toRadians(latitude));
+        if (cos < 1e-6) {
+            return 360;
+        }
+        return Math.min(360, meters / (METERS_PER_DEGREE * cos));
+    }
+
+    /**
+     * Returns ground distance covered by a map pixel at given latitude and zoom level.
+     *
+     * @param latitude Latitude the distance measured at.
+     * @param zoom     Map zoom level.
+     */
+    public static double metersPerPixel(double latitude, double zoom) {
+        return METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.alimjan.geofence.geo;
+
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A columnar in-memory geofence store, every attribute that evaluation needs lives in its own
+ * primitive array and a geofence is a slot across them. There is no object per geofence, ids map
+ * to slots through a primitive hash map and slots stay dense, removal moves the last slot into the
+ * freed one. Addresses aren't held, they are read from the database when a geofence is shown.
+ * <p>
+ * A containment scan walks the coordinate columns front to back. Each slot is first tested with a
+ * flat approximation of distance in float that never rejects a containing geofence, the loop has
+ * no branch but its own and the few slots that pass are checked with great-circle distance. So
+ * results match {@link GeofenceIndex#containing} except within a centimeter of a boundary, where
+ * fixed-point centers round. Latitude is kept in E7 and longitude in binary angle, a full turn is
+ * 2^32 units, so subtracting two longitudes wraps around the antimeridian by itself.
+ * <p>
+ * The scan is linear in geofence count and loses to a {@link GeofenceIndex} point query from about
+ * a hundred geofences on, which {@code LookupBenchmark} measures. So the app deliberately doesn't
+ * use the store, the engine evaluates fixes with the index. The store suits hosts that need full
+ * scans or the smaller heap cost per geofence that {@code FootprintBenchmark} measures.
+ */
+public class GeofenceColumnStore {
+    // Binary angle units in a degree of longitude.
+    private static final double ANGLE_PER_DEGREE = 4294967296.0 / 360;
+    // Meters per E7 unit of latitude.
+    private static final double METERS_PER_E7 = GeoMath.METERS_PER_DEGREE / GeoMath.E7;
+    // Scales radius of the flat test, covers curvature and float rounding the flat test ignores.
+    private static final double FLAT_SLACK = 1.01;
+    // Added to radius of the flat test in meters, covers rounding of fixed-point coordinates.
+    private static final double FLAT_MARGIN = 1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mIds;
+    private int[] mLatitudesE7;
+    // Longitude in binary angle units.
+    private int[] mLongitudes;
+    private double[] mRadii;
+    // Squared radius of the flat test in E7 units of latitude.
+    private float[] mLimits;
+    private long[] mExpireTimes;
+    // Triggered state, one bit per slot.
+    private long[] mTriggered;
+    // Candidate slots of a scan, one more than capacity so a scan can write past the last match.
+    private int[] mCandidates;
+    private final LongIntMap mSlots = new LongIntMap();
+    private int mSize;
+    // Largest radius ever stored in meters, bounds latitude span of the flat test.
+    private double mMaxRadius;
+
+    public GeofenceColumnStore() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Replaces all geofences.
+     *
+     * @param geofences All geofences, typically whole geofence table.
+     */
+    public synchronized void load(@NonNull Collection<Geofence> geofences) {
+        mSize = 0;
+        mMaxRadius = 0;
+        mSlots.clear(geofences.size());
+        if (geofences.size() > mIds.length || geofences.size() < mIds.length / 4) {
+            allocate(Math.max(MIN_CAPACITY, geofences.size()));
+        } else {
+            Arrays.fill(mTriggered, 0);
+        }
+        for (Geofence geofence : geofences) {
+            put(geofence);
+        }
+    }
+
+    /**
+     * Adds a geofence or replaces the geofence with same id.
+     */
+    public synchronized void put(@NonNull Geofence geofence) {
+        int slot = mSlots.get(geofence.getId());
+        if (slot == LongIntMap.MISSING) {
+            if (mSize == mIds.length) {
+                grow(mIds.length * 2);
+            }
+            slot = mSize++;
+            mSlots.put(geofence.getId(), slot);
+        }
+        double radius = geofence.getRadius();
+        double limit = (radius * FLAT_SLACK + FLAT_MARGIN) / METERS_PER_E7;
+        mIds[slot] = geofence.getId();
+        mLatitudesE7[slot] = GeoMath.toE7(geofence.getLatitude());
+        mLongitudes[slot] = toAngle(geofence.getLongitude());
+        mRadii[slot] = radius;
+        mLimits[slot] = (float) (limit * limit);
+        mExpireTimes[slot] = geofence.getExpireTime();
+        setBit(slot, geofence.isTriggered());
+        mMaxRadius = Math.max(mMaxRadius, radius);
+    }
+
+    /**
+     * Adds a batch of geofences or replaces the geofences with same id.
+     */
+    public synchronized void putAll(@NonNull Collection<Geofence> geofences) {
+        if (mSize + geofences.size() > mIds.length) {
+            grow(Math.max(mIds.length * 2, mSize + geofences.size()));
+        }
+        for (Geofence geofence : geofences) {
+            put(geofence);
+        }
+    }
+
+    /**
+     * Removes a geofence.
+     *
+     * @return True if there was such geofence.
+     */
+    public synchronized boolean remove(long id) {
+        int slot = mSlots.remove(id);
+        if (slot == LongIntMap.MISSING) {
+            return false;
+        }
+        int last = --mSize;
+        if (slot != last) {
+            mIds[slot] = mIds[last];
+            mLatitudesE7[slot] = mLatitudesE7[last];
+            mLongitudes[slot] = mLongitudes[last];
+            mRadii[slot] = mRadii[last];
+            mLimits[slot] = mLimits[last];
+            mExpireTimes[slot] = mExpireTimes[last];
+            setBit(slot, getBit(last));
+            mSlots.put(mIds[slot], slot);
+        }
+        setBit(last, false);
+        return true;
+    }
+
+    /**
+     * Applies a set of changes of the geofence table.
+     */
+    public synchronized void apply(@NonNull GeofenceChangeSet changes) {
+        for (Geofence geofence : changes.getRemoved()) {
+            remove(geofence.getId());
+        }
+        putAll(changes.getAdded());
+        putAll(changes.getUpdated());
+    }
+
+    /**
+     * Returns number of geofences in the store.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized boolean contains(long id) {
+        return mSlots.get(id) != LongIntMap.MISSING;
+    }
+
+    /**
+     * Returns radius of a geofence in meters, NaN if there is no such geofence.
+     */
+    public synchronized double getRadius(long id) {
+        int slot = mSlots.get(id);
+        return slot != LongIntMap.MISSING ? mRadii[slot] : Double.NaN;
+    }
+
+    /**
+     * Returns expire time of a geofence, 0 if there is no such geofence.
+     */
+    public synchronized long getExpireTime(long id) {
+        int slot = mSlots.get(id);
+        return slot != LongIntMap.MISSING ? mExpireTimes[slot] : 0;
+    }
+
+    /**
+     * Returns triggered state of a geofence, false if there is no such geofence.
+     */
+    public synchronized boolean isTriggered(long id) {
+        int slot = mSlots.get(id);
+        return slot != LongIntMap.MISSING && getBit(slot);
+    }
+
+    /**
+     * Sets triggered state of a geofence, does nothing if there is no such geofence.
+     */
+    public synchronized void setTriggered(long id, boolean triggered) {
+        int slot = mSlots.get(id);
+        if (slot != LongIntMap.MISSING) {
+            setBit(slot, triggered);
+        }
+    }
+
+    /**
+     * Returns ids of geofences whose circle contains the point, in slot order.
+     */
+    @NonNull
+    public synchronized long[] containing(double latitude, double longitude) {
+        int count = scan(latitude, longitude);
+        long[] ids = new long[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = mCandidates[i];
+            if (GeoMath.distance(GeoMath.fromE7(mLatitudesE7[slot]), mLongitudes[slot] / ANGLE_PER_DEGREE, latitude, longitude)
+                    <= mRadii[slot]) {
+                ids[found++] = mIds[slot];
+            }
+        }
+        return found == count ? ids : Arrays.copyOf(ids, found);
+    }
+
+    /**
+     * Returns bytes held by the columns and the id map, about what the store adds to heap.
+     */
+    public synchronized long getHeapBytes() {
+        long capacity = mIds.length;
+        return capacity * (8 + 4 + 4 + 8 + 4 + 8 + 4) + (long) mTriggered.length * 8 + mSlots.getHeapBytes();
+    }
+
+    /**
+     * Collects slots that pass the flat test into candidates.
+     *
+     * @return Number of candidates.
+     */
+    private int scan(double latitude, double longitude) {
+        int latitudeE7 = GeoMath.toE7(latitude);
+        int angle = toAngle(longitude);
+        // Cosine at the latitude farthest from the equator a containing geofence can have, it
+        // shrinks longitude distance at most as much as any containing geofence does
+        double span = Math.toDegrees(mMaxRadius * FLAT_SLACK / GeoMath.EARTH_RADIUS);
+        double cos = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + span)));
+        // Converts binary angle units of longitude to E7 units of latitude at that cosine
+        float scale = (float) (cos * GeoMath.E7 / ANGLE_PER_DEGREE);
+        int[] latitudes = mLatitudesE7;
+        int[] longitudes = mLongitudes;
+        float[] limits = mLimits;
+        int[] candidates = mCandidates;
+        int count = 0;
+        for (int i = 0, size = mSize; i < size; i++) {
+            float dLat = latitudes[i] - latitudeE7;
+            float dLon = (longitudes[i] - angle) * scale;
+            // Every slot is written, only a passing one is kept
+            candidates[count] = i;
+            count += dLat * dLat + dLon * dLon <= limits[i] ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Converts longitude to binary angle, 180 and -180 degrees are the same angle.
+     */
+    private static int toAngle(double longitude) {
+        return (int) Math.round(longitude * ANGLE_PER_DEGREE);
+    }
+
+    private boolean getBit(int slot) {
+        return (mTriggered[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void setBit(int slot, boolean value) {
+        if (value) {
+            mTriggered[slot >>> 6] |= 1L << slot;
+        } else {
+            mTriggered[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+
+    private void allocate(int capacity) {
+        mIds = new long[capacity];
+        mLatitudesE7 = new int[capacity];
+        mLongitudes = new int[capacity];
+        mRadii = new double[capacity];
+        mLimits = new float[capacity];
+        mExpireTimes = new long[capacity];
+        mTriggered = new long[(capacity + 63) >>> 6];
+        mCandidates = new int[capacity + 1];
+    }
+
+    private void grow(int capacity) {
+        mIds = Arrays.copyOf(mIds, capacity);
+        mLatitudesE7 = Arrays.copyOf(mLatitudesE7, capacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        mRadii = Arrays.copyOf(mRadii, capacity);
+        mLimits = Arrays.copyOf(mLimits, capacity);
+        mExpireTimes = Arrays.copyOf(mExpireTimes, capacity);
+        mTriggered = Arrays.copyOf(mTriggered, (capacity + 63) >>> 6);
+        mCandidates = new int[capacity + 1];
+    }
+}
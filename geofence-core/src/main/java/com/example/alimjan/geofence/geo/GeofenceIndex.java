@@ -0,0 +1,212 @@
+package com.example.alimjan.geofence.geo;
+
+import com.example.alimjan.geofence.model.Geofence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * An in-memory spatial index of geofences backed by {@link RTree}, every geofence is indexed by
+ * bounding box of its circle. Index is bulk loaded from the whole geofence table and then kept in
+ * sync incrementally as geofences are added or removed.
+ * <p>
+ * Longitudes of a box that crosses the antimeridian run past 180 or -180 instead of wrapping, so a
+ * query close to the antimeridian is repeated a full turn east or west to reach such boxes.
+ */
+public class GeofenceIndex {
+    // First search window of a nearest boundary query in meters.
+    private static final double NEAREST_BOUNDARY_WINDOW = 256;
+
+    private RTree<Geofence> mTree = new RTree<>();
+    // Tree entries keyed by geofence id, used for removal and id lookup.
+    private final Map<Long, RTree.Entry<Geofence>> mEntries = new HashMap<>();
+    // Largest degrees a box runs past 180 or -180, it only grows until next load.
+    private double mOverhang;
+
+    /**
+     * Replaces all geofences in the index with bulk loading.
+     *
+     * @param geofences All geofences, typically whole geofence table.
+     */
+    public synchronized void load(@NonNull Collection<Geofence> geofences) {
+        mEntries.clear();
+        mOverhang = 0;
+        for (Geofence geofence : geofences) {
+            mEntries.put(geofence.getId(), entryOf(geofence));
+        }
+        mTree = RTree.bulkLoad(new ArrayList<>(mEntries.values()));
+    }
+
+    /**
+     * Adds a geofence or replaces the geofence with same id.
+     */
+    public synchronized void add(@NonNull Geofence geofence) {
+        remove(geofence.getId());
+        RTree.Entry<Geofence> entry = entryOf(geofence);
+        mTree.insert(entry);
+        mEntries.put(geofence.getId(), entry);
+    }
+
+    /**
+     * Adds a batch of geofences, a batch larger than the index is bulk loaded together with
+     * existing geofences which is cheaper than inserting one by one.
+     */
+    public synchronized void addAll(@NonNull Collection<Geofence> geofences) {
+        if (geofences.size() > mEntries.size()) {
+            for (Geofence geofence : geofences) {
+                mEntries.put(geofence.getId(), entryOf(geofence));
+            }
+            mTree = RTree.bulkLoad(new ArrayList<>(mEntries.values()));
+        } else {
+            for (Geofence geofence : geofences) {
+                add(geofence);
+            }
+        }
+    }
+
+    /**
+     * Removes a geofence.
+     *
+     * @param id A geofence id.
+     * @return Removed geofence, null if there is no such geofence.
+     */
+    @Nullable
+    public synchronized Geofence remove(long id) {
+        RTree.Entry<Geofence> entry = mEntries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        mTree.remove(entry);
+        return entry.getValue();
+    }
+
+    /**
+     * Returns geofence associated with id, null if there is no such geofence.
+     */
+    @Nullable
+    public synchronized Geofence get(long id) {
+        RTree.Entry<Geofence> entry = mEntries.get(id);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Returns number of geofences in the index.
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns geofences whose circle contains the point.
+     */
+    @NonNull
+    public synchronized List<Geofence> containing(double latitude, double longitude) {
+        List<Geofence> result = new ArrayList<>();
+        search(latitude, longitude, latitude, longitude, result);
+        Iterator<Geofence> iterator = result.iterator();
+        while (iterator.hasNext()) {
+            Geofence geofence = iterator.next();
+            if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude) > geofence.getRadius()) {
+                iterator.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns geofences whose circle bounding box intersects the query bounding box, for example
+     * geofences visible in a map viewport. A bounding box that crosses the antimeridian has
+     * minLongitude east of maxLongitude.
+     */
+    @NonNull
+    public synchronized List<Geofence> within(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        List<Geofence> result = new ArrayList<>();
+        search(minLatitude, minLongitude, maxLatitude, minLongitude > maxLongitude ? maxLongitude + 360 : maxLongitude, result);
+        return result;
+    }
+
+    /**
+     * Returns geofences whose center is within specified distance of the point.
+     *
+     * @param meters Search radius in meters.
+     */
+    @NonNull
+    public synchronized List<Geofence> nearby(double latitude, double longitude, double meters) {
+        double dLat = GeoMath.latitudeDelta(meters);
+        double dLon = GeoMath.longitudeDelta(latitude, meters);
+        List<Geofence> result = new ArrayList<>();
+        search(latitude - dLat, longitude - dLon, latitude + dLat, longitude + dLon, result);
+        Iterator<Geofence> iterator = result.iterator();
+        while (iterator.hasNext()) {
+            Geofence geofence = iterator.next();
+            if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude) > meters) {
+                iterator.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns distance from the point to the closest geofence boundary, inside or outside of the
+     * geofence. Search window starts small and doubles, so a point among geofences is answered by
+     * a small search.
+     *
+     * @param maxMeters Largest distance of interest in meters.
+     * @return Distance in meters, or maxMeters if no boundary is closer.
+     */
+    public synchronized double distanceToNearestBoundary(double latitude, double longitude, double maxMeters) {
+        List<Geofence> result = new ArrayList<>();
+        for (double window = Math.min(NEAREST_BOUNDARY_WINDOW, maxMeters); ; window = Math.min(window * 2, maxMeters)) {
+            double dLat = GeoMath.latitudeDelta(window);
+            double dLon = GeoMath.longitudeDelta(latitude, window);
+            result.clear();
+            search(latitude - dLat, longitude - dLon, latitude + dLat, longitude + dLon, result);
+            double nearest = maxMeters;
+            for (int i = 0, size = result.size(); i < size; i++) {
+                Geofence geofence = result.get(i);
+                double distance = GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude);
+                nearest = Math.min(nearest, Math.abs(distance - geofence.getRadius()));
+            }
+            // Every boundary closer than the window has its bounding box in the window
+            if (nearest <= window || window >= maxMeters) {
+                return nearest;
+            }
+        }
+    }
+
+    /**
+     * Searches the tree, longitudes may run past 180 or -180 by less than a turn. Parts of the query
+     * box and of the tree boxes past the antimeridian are matched against its other side.
+     */
+    private void search(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                        List<Geofence> result) {
+        mTree.search(minLatitude, minLongitude, maxLatitude, maxLongitude, result);
+        if (minLongitude < -180 + mOverhang) {
+            mTree.search(minLatitude, minLongitude + 360, maxLatitude, maxLongitude + 360, result);
+        }
+        if (maxLongitude > 180 - mOverhang) {
+            mTree.search(minLatitude, minLongitude - 360, maxLatitude, maxLongitude - 360, result);
+        }
+    }
+
+    /**
+     * Creates a tree entry bounding the geofence circle, a box crossing the antimeridian keeps the
+     * longitude of the center and runs past 180 or -180.
+     */
+    private RTree.Entry<Geofence> entryOf(Geofence geofence) {
+        double dLat = GeoMath.latitudeDelta(geofence.getRadius());
+        double dLon = GeoMath.longitudeDelta(geofence.getLatitude(), geofence.getRadius());
+        double minLongitude = geofence.getLongitude() - dLon;
+        double maxLongitude = geofence.getLongitude() + dLon;
+        mOverhang = Math.max(mOverhang, Math.max(maxLongitude - 180, -180 - minLongitude));
+        return new RTree.Entry<>(geofence.getLatitude() - dLat, minLongitude,
+                geofence.getLatitude() + dLat, maxLongitude, geofence);
+    }
+}
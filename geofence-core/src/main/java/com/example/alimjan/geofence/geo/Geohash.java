@@ -0,0 +1,224 @@
+package com.example.alimjan.geofence.geo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Geohash encoding helpers. A geohash is a hierarchical cell id, every extra character splits a
+ * cell into 32 sub cells, so cells sharing a prefix are spatially close and a prefix matches a
+ * contiguous range of sorted geohashes which a database index can scan.
+ */
+public final class Geohash {
+    // Precision of the geohash stored with every geofence, about 4.8m x 4.8m.
+    public static final int PRECISION = 9;
+    // Smallest string that sorts after every geohash sharing a prefix when appended to the prefix.
+    public static final String RANGE_END = "{";
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] DECODE = new int['z' + 1];
+
+    static {
+        for (int i = 0; i < DECODE.length; i++) {
+            DECODE[i] = -1;
+        }
+        for (int i = 0; i < BASE32.length; i++) {
+            DECODE[BASE32[i]] = i;
+        }
+    }
+
+    private Geohash() {
+    }
+
+    /**
+     * Encodes a coordinate.
+     *
+     * @param precision Geohash length.
+     */
+    @NonNull
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+        char[] hash = new char[precision];
+        boolean even = true;
+        int bit = 0;
+        int value = 0;
+        int index = 0;
+        while (index < precision) {
+            if (even) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLon = mid;
+                } else {
+                    value = value << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLat = mid;
+                } else {
+                    value = value << 1;
+                    maxLat = mid;
+                }
+            }
+            even = !even;
+            if (++bit == 5) {
+                hash[index++] = BASE32[value];
+                bit = 0;
+                value = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Decodes a geohash to its cell bounds.
+     *
+     * @return An array of minimum latitude, minimum longitude, maximum latitude and maximum
+     * longitude.
+     */
+    @NonNull
+    public static double[] bounds(@NonNull String geohash) {
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+        boolean even = true;
+        for (int i = 0; i < geohash.length(); i++) {
+            char c = geohash.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + geohash);
+            }
+            for (int mask = 16; mask > 0; mask >>= 1) {
+                if (even) {
+                    double mid = (minLon + maxLon) / 2;
+                    if ((value & mask) != 0) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if ((value & mask) != 0) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                even = !even;
+            }
+        }
+        return new double[]{minLat, minLon, maxLat, maxLon};
+    }
+
+    /**
+     * Returns the cell and its neighbours at the same precision, cells beyond the poles are left
+     * out and longitude wraps around the antimeridian.
+     */
+    @NonNull
+    public static List<String> withNeighbours(@NonNull String geohash) {
+        double[] bounds = bounds(geohash);
+        double height = bounds[2] - bounds[0];
+        double width = bounds[3] - bounds[1];
+        double centerLat = (bounds[0] + bounds[2]) / 2;
+        double centerLon = (bounds[1] + bounds[3]) / 2;
+        Set<String> cells = new LinkedHashSet<>();
+        for (int dLat = -1; dLat <= 1; dLat++) {
+            double latitude = centerLat + dLat * height;
+            if (latitude < -90 || latitude > 90) {
+                continue;
+            }
+            for (int dLon = -1; dLon <= 1; dLon++) {
+                cells.add(encode(latitude, wrapLongitude(centerLon + dLon * width), geohash.length()));
+            }
+        }
+        return new ArrayList<>(cells);
+    }
+
+    /**
+     * Returns the longest precision whose cells are at least specified size at given latitude, so
+     * a cell and its neighbours cover every point within that distance of the cell.
+     *
+     * @param meters Minimum cell size in meters.
+     */
+    public static int precisionFor(double latitude, double meters) {
+        int precision = PRECISION;
+        while (precision > 1) {
+            int latBits = precision * 5 / 2;
+            int lonBits = precision * 5 - latBits;
+            double height = 180.0 / (1L << latBits) * GeoMath.METERS_PER_DEGREE;
+            double width = 360.0 / (1L << lonBits) * GeoMath.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+            if (height >= meters && width >= meters) {
+                break;
+            }
+            precision--;
+        }
+        return precision;
+    }
+
+    /**
+     * Returns cells covering a bounding box at the longest precision that needs no more than
+     * specified number of cells. Minimum longitude greater than maximum longitude means the box
+     * crosses the antimeridian.
+     *
+     * @param maxCells Maximum number of cells.
+     */
+    @NonNull
+    public static List<String> cover(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int maxCells) {
+        if (maxLongitude < minLongitude) {
+            // Continue east of 180, cell centers are wrapped back
+            maxLongitude += 360;
+        }
+        for (int precision = PRECISION; precision > 1; precision--) {
+            List<String> cells = cover(minLatitude, minLongitude, maxLatitude, maxLongitude, precision, maxCells);
+            if (cells != null) {
+                return cells;
+            }
+        }
+        return cover(minLatitude, minLongitude, maxLatitude, maxLongitude, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns cells covering a bounding box at given precision, null if more than maximum number
+     * of cells needed.
+     */
+    private static List<String> cover(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                                      int precision, int maxCells) {
+        double[] cell = bounds(encode(minLatitude, minLongitude, precision));
+        double height = cell[2] - cell[0];
+        double width = cell[3] - cell[1];
+        long rows = (long) Math.floor((maxLatitude - cell[0]) / height) + 1;
+        long columns = (long) Math.floor((maxLongitude - cell[1]) / width) + 1;
+        if (rows * columns > maxCells) {
+            return null;
+        }
+        List<String> cells = new ArrayList<>((int) (rows * columns));
+        for (long row = 0; row < rows; row++) {
+            double latitude = Math.min(90, cell[0] + (row + 0.5) * height);
+            for (long column = 0; column < columns; column++) {
+                double longitude = wrapLongitude(cell[1] + (column + 0.5) * width);
+                cells.add(encode(latitude, longitude, precision));
+            }
+        }
+        return cells;
+    }
+
+    private static double wrapLongitude(double longitude) {
+        if (longitude >= 180) {
+            return longitude - 360;
+        }
+        if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.alimjan.geofence.geo;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A static k-d tree for nearest neighbour queries over coordinates. Coordinates are mapped to
+ * points on the unit sphere, so straight line distance between them orders exactly like
+ * great-circle distance and there are no special cases at the antimeridian or the poles.
+ * <p>
+ * The tree is implicit, nodes live in flat arrays and the median of a range is its root, so it
+ * takes no per node objects and a query touches contiguous memory.
+ */
+public class KdTree {
+    // Unit sphere coordinates in tree order.
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mZ;
+    // Original index of a point in tree order.
+    private final int[] mIndex;
+
+    /**
+     * Builds a tree in O(n log n).
+     *
+     * @param latitudes  Latitudes of points.
+     * @param longitudes Longitudes of points, same length as latitudes.
+     */
+    public KdTree(@NonNull double[] latitudes, @NonNull double[] longitudes) {
+        int size = latitudes.length;
+        mX = new double[size];
+        mY = new double[size];
+        mZ = new double[size];
+        mIndex = new int[size];
+        for (int i = 0; i < size; i++) {
+            double lat = Math.toRadians(latitudes[i]);
+            double lon = Math.toRadians(longitudes[i]);
+            mX[i] = Math.cos(lat) * Math.cos(lon);
+            mY[i] = Math.cos(lat) * Math.sin(lon);
+            mZ[i] = Math.sin(lat);
+            mIndex[i] = i;
+        }
+        build(0, size - 1, 0);
+    }
+
+    /**
+     * Returns number of points in the tree.
+     */
+    public int size() {
+        return mIndex.length;
+    }
+
+    /**
+     * Returns index of the point nearest to a coordinate.
+     *
+     * @return Index in the arrays the tree is built from, -1 if the tree is empty.
+     */
+    public int nearest(double latitude, double longitude) {
+        if (mIndex.length == 0) {
+            return -1;
+        }
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double[] query = {Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+        Nearest nearest = new Nearest();
+        search(0, mIndex.length - 1, 0, query, nearest);
+        return mIndex[nearest.node];
+    }
+
+    private void build(int low, int high, int axis) {
+        if (low >= high) {
+            return;
+        }
+        int median = (low + high) >>> 1;
+        select(low, high, median, axis);
+        build(low, median - 1, (axis + 1) % 3);
+        build(median + 1, high, (axis + 1) % 3);
+    }
+
+    private void search(int low, int high, int axis, double[] query, Nearest nearest) {
+        if (low > high) {
+            return;
+        }
+        int median = (low + high) >>> 1;
+        double dx = mX[median] - query[0];
+        double dy = mY[median] - query[1];
+        double dz = mZ[median] - query[2];
+        double distance = dx * dx + dy * dy + dz * dz;
+        if (distance < nearest.distance) {
+            nearest.distance = distance;
+            nearest.node = median;
+        }
+
+        double delta = query[axis] - coordinate(median, axis);
+        int next = (axis + 1) % 3;
+        // Closer side first, far side only if the splitting plane is closer than the best match
+        if (delta < 0) {
+            search(low, median - 1, next, query, nearest);
+            if (delta * delta < nearest.distance) {
+                search(median + 1, high, next, query, nearest);
+            }
+        } else {
+            search(median + 1, high, next, query, nearest);
+            if (delta * delta < nearest.distance) {
+                search(low, median - 1, next, query, nearest);
+            }
+        }
+    }
+
+    /**
+     * Quickselect, moves kth smallest point of a range on an axis to k.
+     */
+    private void select(int low, int high, int k, int axis) {
+        while (low < high) {
+            double pivot = coordinate((low + high) >>> 1, axis);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (coordinate(i, axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double coordinate(int i, int axis) {
+        return axis == 0 ? mX[i] : axis == 1 ? mY[i] : mZ[i];
+    }
+
+    private void swap(int i, int j) {
+        double x = mX[i];
+        mX[i] = mX[j];
+        mX[j] = x;
+        double y = mY[i];
+        mY[i] = mY[j];
+        mY[j] = y;
+        double z = mZ[i];
+        mZ[i] = mZ[j];
+        mZ[j] = z;
+        int index = mIndex[i];
+        mIndex[i] = mIndex[j];
+        mIndex[j] = index;
+    }
+
+    private static class Nearest {
+        private int node;
+        private double distance = Double.POSITIVE_INFINITY;
+    }
+}
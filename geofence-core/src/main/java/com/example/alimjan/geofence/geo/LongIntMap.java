@@ -0,0 +1,162 @@
+package com.example.alimjan.geofence.geo;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from long keys to non negative int values, keys and values live in
+ * two flat arrays so there is no boxing and no entry object per mapping. Collisions are resolved
+ * with linear probing and removal shifts following entries back, so there are no tombstones.
+ * <p>
+ * This class is not thread safe, callers synchronize access.
+ */
+class LongIntMap {
+    // Returned for a missing key.
+    static final int MISSING = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    // Value plus one, zero marks an empty bucket so every long is a valid key.
+    private int[] mValues;
+    private int mMask;
+    private int mSize;
+
+    LongIntMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize Number of mappings that fit without growing.
+     */
+    LongIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns value of a key, {@link #MISSING} if there is no such key.
+     */
+    int get(long key) {
+        for (int i = hash(key) & mMask; ; i = (i + 1) & mMask) {
+            int value = mValues[i];
+            if (value == 0) {
+                return MISSING;
+            }
+            if (mKeys[i] == key) {
+                return value - 1;
+            }
+        }
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @param value A non negative value.
+     * @return Previous value, {@link #MISSING} if there was none.
+     */
+    int put(long key, int value) {
+        int i = hash(key) & mMask;
+        for (; mValues[i] != 0; i = (i + 1) & mMask) {
+            if (mKeys[i] == key) {
+                int previous = mValues[i] - 1;
+                mValues[i] = value + 1;
+                return previous;
+            }
+        }
+        mKeys[i] = key;
+        mValues[i] = value + 1;
+        // Load factor stays at or below one half so probe sequences stay short
+        if (++mSize * 2 > mValues.length) {
+            rehash(mValues.length * 2);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @return Removed value, {@link #MISSING} if there was no such key.
+     */
+    int remove(long key) {
+        int i = hash(key) & mMask;
+        for (; ; i = (i + 1) & mMask) {
+            if (mValues[i] == 0) {
+                return MISSING;
+            }
+            if (mKeys[i] == key) {
+                break;
+            }
+        }
+        int removed = mValues[i] - 1;
+        // Shift back entries whose probe sequence passes through the freed bucket
+        for (int j = (i + 1) & mMask; mValues[j] != 0; j = (j + 1) & mMask) {
+            int home = hash(mKeys[j]) & mMask;
+            if (((j - home) & mMask) >= ((j - i) & mMask)) {
+                mKeys[i] = mKeys[j];
+                mValues[i] = mValues[j];
+                i = j;
+            }
+        }
+        mValues[i] = 0;
+        mSize--;
+        return removed;
+    }
+
+    /**
+     * Removes all mappings, keeps at least room for expected size.
+     */
+    void clear(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity != mValues.length) {
+            allocate(capacity);
+        } else {
+            Arrays.fill(mValues, 0);
+        }
+        mSize = 0;
+    }
+
+    /**
+     * Returns bytes held by the arrays of the map.
+     */
+    long getHeapBytes() {
+        return (long) mKeys.length * 8 + (long) mValues.length * 4;
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        allocate(capacity);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                int j = hash(keys[i]) & mMask;
+                while (mValues[j] != 0) {
+                    j = (j + 1) & mMask;
+                }
+                mKeys[j] = keys[i];
+                mValues[j] = values[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2 + 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Ids are sequential, mixing spreads them over the whole table.
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
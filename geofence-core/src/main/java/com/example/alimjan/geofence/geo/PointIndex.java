@@ -0,0 +1,210 @@
+package com.example.alimjan.geofence.geo;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A static 2D k-d tree over planar points for range and radius queries, points are sorted into
+ * flat arrays and leaves hold up to {@link #NODE_SIZE} points which are scanned linearly.
+ */
+class PointIndex {
+    // Maximum number of points in a leaf.
+    static final int NODE_SIZE = 64;
+
+    // Point indices in tree order.
+    private final int[] mIds;
+    // Interleaved x and y of points in tree order.
+    private final double[] mCoords;
+
+    /**
+     * @param xs   X of points.
+     * @param ys   Y of points.
+     * @param size Number of points to index, from the start of the arrays.
+     */
+    PointIndex(@NonNull double[] xs, @NonNull double[] ys, int size) {
+        mIds = new int[size];
+        mCoords = new double[size * 2];
+        for (int i = 0; i < size; i++) {
+            mIds[i] = i;
+            mCoords[i * 2] = xs[i];
+            mCoords[i * 2 + 1] = ys[i];
+        }
+        sort(0, size - 1, 0);
+    }
+
+    /**
+     * Appends indices of points within a box to result.
+     */
+    void range(double minX, double minY, double maxX, double maxY, @NonNull IntList result) {
+        int[] stack = new int[96];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = mIds.length - 1;
+        stack[top++] = 0;
+        while (top > 0) {
+            int axis = stack[--top];
+            int right = stack[--top];
+            int left = stack[--top];
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i++) {
+                    double x = mCoords[i * 2];
+                    double y = mCoords[i * 2 + 1];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        result.add(mIds[i]);
+                    }
+                }
+                continue;
+            }
+            int m = (left + right) >>> 1;
+            double x = mCoords[m * 2];
+            double y = mCoords[m * 2 + 1];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                result.add(mIds[m]);
+            }
+            if (axis == 0 ? minX <= x : minY <= y) {
+                stack = push(stack, top, left, m - 1, 1 - axis);
+                top += 3;
+            }
+            if (axis == 0 ? maxX >= x : maxY >= y) {
+                stack = push(stack, top, m + 1, right, 1 - axis);
+                top += 3;
+            }
+        }
+    }
+
+    /**
+     * Appends indices of points within a radius of a point to result.
+     */
+    void within(double qx, double qy, double r, @NonNull IntList result) {
+        double r2 = r * r;
+        int[] stack = new int[96];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = mIds.length - 1;
+        stack[top++] = 0;
+        while (top > 0) {
+            int axis = stack[--top];
+            int right = stack[--top];
+            int left = stack[--top];
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i++) {
+                    if (distanceSquared(i, qx, qy) <= r2) {
+                        result.add(mIds[i]);
+                    }
+                }
+                continue;
+            }
+            int m = (left + right) >>> 1;
+            double x = mCoords[m * 2];
+            double y = mCoords[m * 2 + 1];
+            if (distanceSquared(m, qx, qy) <= r2) {
+                result.add(mIds[m]);
+            }
+            if (axis == 0 ? qx - r <= x : qy - r <= y) {
+                stack = push(stack, top, left, m - 1, 1 - axis);
+                top += 3;
+            }
+            if (axis == 0 ? qx + r >= x : qy + r >= y) {
+                stack = push(stack, top, m + 1, right, 1 - axis);
+                top += 3;
+            }
+        }
+    }
+
+    private double distanceSquared(int i, double qx, double qy) {
+        double dx = mCoords[i * 2] - qx;
+        double dy = mCoords[i * 2 + 1] - qy;
+        return dx * dx + dy * dy;
+    }
+
+    private static int[] push(int[] stack, int top, int left, int right, int axis) {
+        if (top + 3 > stack.length) {
+            int[] grown = new int[stack.length * 2];
+            System.arraycopy(stack, 0, grown, 0, top);
+            stack = grown;
+        }
+        stack[top] = left;
+        stack[top + 1] = right;
+        stack[top + 2] = axis;
+        return stack;
+    }
+
+    private void sort(int left, int right, int axis) {
+        if (right - left <= NODE_SIZE) {
+            return;
+        }
+        int m = (left + right) >>> 1;
+        select(m, left, right, axis);
+        sort(left, m - 1, 1 - axis);
+        sort(m + 1, right, 1 - axis);
+    }
+
+    /**
+     * Quickselect, moves kth smallest point of a range on an axis to k.
+     */
+    private void select(int k, int left, int right, int axis) {
+        while (left < right) {
+            double pivot = mCoords[((left + right) >>> 1) * 2 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (mCoords[i * 2 + axis] < pivot) {
+                    i++;
+                }
+                while (mCoords[j * 2 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = mIds[i];
+        mIds[i] = mIds[j];
+        mIds[j] = id;
+        double x = mCoords[i * 2];
+        mCoords[i * 2] = mCoords[j * 2];
+        mCoords[j * 2] = x;
+        double y = mCoords[i * 2 + 1];
+        mCoords[i * 2 + 1] = mCoords[j * 2 + 1];
+        mCoords[j * 2 + 1] = y;
+    }
+
+    /**
+     * A growable list of primitive ints.
+     */
+    static final class IntList {
+        private int[] mValues = new int[16];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                int[] grown = new int[mSize * 2];
+                System.arraycopy(mValues, 0, grown, 0, mSize);
+                mValues = grown;
+            }
+            mValues[mSize++] = value;
+        }
+
+        int get(int index) {
+            return mValues[index];
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        void clear() {
+            mSize = 0;
+        }
+    }
+}
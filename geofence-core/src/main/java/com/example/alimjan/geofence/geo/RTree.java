@@ -0,0 +1,443 @@
+package com.example.alimjan.geofence.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An in-memory R-tree of latitude/longitude rectangles. A tree is built in one pass with
+ * Sort-Tile-Recursive bulk loading via {@link #bulkLoad}, and afterwards kept up to date with
+ * incremental {@link #insert} and {@link #remove} using quadratic split and condense-tree.
+ * <p>
+ * This class is not thread safe, callers synchronize access.
+ *
+ * @param <T> Type of the values stored with the rectangles.
+ */
+public class RTree<T> {
+    // Maximum and minimum children count of a node.
+    static final int MAX_ENTRIES = 16;
+    static final int MIN_ENTRIES = MAX_ENTRIES * 2 / 5;
+
+    private Node mRoot = new Node(true);
+    private int mSize;
+
+    /**
+     * Builds a tree from entries with Sort-Tile-Recursive packing, which produces nearly full
+     * nodes with little overlap, much better than inserting entries one by one.
+     *
+     * @param entries Entries to build the tree from, entries must not belong to another tree.
+     * @return A new tree.
+     */
+    @NonNull
+    public static <T> RTree<T> bulkLoad(@NonNull List<Entry<T>> entries) {
+        RTree<T> tree = new RTree<>();
+        if (entries.isEmpty()) {
+            return tree;
+        }
+        List<Box> level = new ArrayList<Box>(entries);
+        boolean leaf = true;
+        while (true) {
+            List<Box> nodes = pack(level, leaf);
+            if (nodes.size() == 1) {
+                tree.mRoot = (Node) nodes.get(0);
+                break;
+            }
+            level = nodes;
+            leaf = false;
+        }
+        tree.mSize = entries.size();
+        return tree;
+    }
+
+    /**
+     * Returns number of entries in the tree.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Inserts an entry, the entry is later used to remove it.
+     *
+     * @param entry An entry that doesn't belong to any tree.
+     */
+    public void insert(@NonNull Entry<T> entry) {
+        insertEntry(entry);
+        mSize++;
+    }
+
+    /**
+     * Removes an entry previously passed to {@link #insert} or {@link #bulkLoad}.
+     *
+     * @return True if the entry was in the tree.
+     */
+    public boolean remove(@NonNull Entry<T> entry) {
+        Node leaf = entry.parent;
+        if (leaf == null) {
+            return false;
+        }
+        int index = leaf.indexOf(entry);
+        if (index < 0) {
+            return false;
+        }
+        leaf.removeAt(index);
+        mSize--;
+        condense(leaf);
+        return true;
+    }
+
+    /**
+     * Collects values of every rectangle intersecting the query rectangle.
+     *
+     * @param result List the values are added to.
+     */
+    public void search(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                       @NonNull List<? super T> result) {
+        if (mSize > 0) {
+            search(mRoot, minLatitude, minLongitude, maxLatitude, maxLongitude, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void search(Node node, double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                        List<? super T> result) {
+        for (int i = 0; i < node.count; i++) {
+            Box child = node.children[i];
+            if (child.intersects(minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+                if (node.leaf) {
+                    result.add(((Entry<T>) child).value);
+                } else {
+                    search((Node) child, minLatitude, minLongitude, maxLatitude, maxLongitude, result);
+                }
+            }
+        }
+    }
+
+    private void insertEntry(Entry<?> entry) {
+        Node node = mRoot;
+        // Descend to the leaf that needs least enlargement
+        while (!node.leaf) {
+            Box best = null;
+            double bestEnlargement = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < node.count; i++) {
+                Box child = node.children[i];
+                double area = child.area();
+                double enlargement = child.enlargement(entry);
+                if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = child;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = (Node) best;
+        }
+        node.add(entry);
+        adjust(node);
+    }
+
+    /**
+     * Walks up from a modified node, splitting overflowed nodes and fixing bounds.
+     */
+    private void adjust(Node node) {
+        while (true) {
+            Node sibling = null;
+            if (node.count > MAX_ENTRIES) {
+                sibling = split(node);
+            } else {
+                node.recompute();
+            }
+            Node parent = node.parent;
+            if (parent == null) {
+                if (sibling != null) {
+                    // Grow the tree
+                    Node root = new Node(false);
+                    root.add(node);
+                    root.add(sibling);
+                    root.recompute();
+                    mRoot = root;
+                }
+                return;
+            }
+            if (sibling != null) {
+                parent.add(sibling);
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Quadratic split, keeps one group in the node and returns the other as a new sibling.
+     */
+    private Node split(Node node) {
+        Box[] boxes = Arrays.copyOf(node.children, node.count);
+        int total = boxes.length;
+
+        // Pick the pair that would waste most area when grouped together
+        int seedA = 0;
+        int seedB = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < total; i++) {
+            for (int j = i + 1; j < total; j++) {
+                double waste = boxes[i].unionArea(boxes[j]) - boxes[i].area() - boxes[j].area();
+                if (waste > worst) {
+                    worst = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+
+        Node sibling = new Node(node.leaf);
+        node.clear();
+        node.add(boxes[seedA]);
+        node.extend(boxes[seedA]);
+        sibling.add(boxes[seedB]);
+        sibling.extend(boxes[seedB]);
+        boolean[] assigned = new boolean[total];
+        assigned[seedA] = true;
+        assigned[seedB] = true;
+        int remaining = total - 2;
+
+        while (remaining > 0) {
+            // A group takes all the rest if it needs them to reach minimum fill
+            Node forced = node.count + remaining == MIN_ENTRIES ? node
+                    : sibling.count + remaining == MIN_ENTRIES ? sibling : null;
+            if (forced != null) {
+                for (int i = 0; i < total; i++) {
+                    if (!assigned[i]) {
+                        forced.add(boxes[i]);
+                        forced.extend(boxes[i]);
+                    }
+                }
+                break;
+            }
+
+            // Pick the box with strongest preference for one group
+            int next = -1;
+            double maxDifference = -1;
+            double nextEnlargementA = 0;
+            double nextEnlargementB = 0;
+            for (int i = 0; i < total; i++) {
+                if (!assigned[i]) {
+                    double enlargementA = node.enlargement(boxes[i]);
+                    double enlargementB = sibling.enlargement(boxes[i]);
+                    double difference = Math.abs(enlargementA - enlargementB);
+                    if (difference > maxDifference) {
+                        maxDifference = difference;
+                        next = i;
+                        nextEnlargementA = enlargementA;
+                        nextEnlargementB = enlargementB;
+                    }
+                }
+            }
+
+            Node target;
+            if (nextEnlargementA != nextEnlargementB) {
+                target = nextEnlargementA < nextEnlargementB ? node : sibling;
+            } else if (node.area() != sibling.area()) {
+                target = node.area() < sibling.area() ? node : sibling;
+            } else {
+                target = node.count <= sibling.count ? node : sibling;
+            }
+            target.add(boxes[next]);
+            target.extend(boxes[next]);
+            assigned[next] = true;
+            remaining--;
+        }
+        return sibling;
+    }
+
+    /**
+     * Removes underflowed nodes on the path to root and reinserts their entries.
+     */
+    private void condense(Node node) {
+        List<Entry<?>> orphans = new ArrayList<>();
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (node.count < MIN_ENTRIES) {
+                parent.removeAt(parent.indexOf(node));
+                collect(node, orphans);
+            } else {
+                node.recompute();
+            }
+            node = parent;
+        }
+        node.recompute();
+
+        // Shrink the tree
+        while (!mRoot.leaf && mRoot.count == 1) {
+            mRoot = (Node) mRoot.children[0];
+            mRoot.parent = null;
+        }
+        if (!mRoot.leaf && mRoot.count == 0) {
+            mRoot = new Node(true);
+        }
+
+        for (Entry<?> orphan : orphans) {
+            insertEntry(orphan);
+        }
+    }
+
+    private static void collect(Node node, List<Entry<?>> result) {
+        for (int i = 0; i < node.count; i++) {
+            Box child = node.children[i];
+            if (node.leaf) {
+                child.parent = null;
+                result.add((Entry<?>) child);
+            } else {
+                collect((Node) child, result);
+            }
+        }
+    }
+
+    /**
+     * Packs one level of boxes into nodes, boxes are sorted into vertical slices by longitude and
+     * then each slice is tiled by latitude.
+     */
+    private static List<Box> pack(List<Box> boxes, boolean leaf) {
+        int count = boxes.size();
+        int nodeCount = (count + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * MAX_ENTRIES;
+
+        Collections.sort(boxes, (a, b) -> Double.compare(a.centerLongitude(), b.centerLongitude()));
+        List<Box> nodes = new ArrayList<>(nodeCount);
+        for (int start = 0; start < count; start += sliceSize) {
+            List<Box> slice = boxes.subList(start, Math.min(start + sliceSize, count));
+            Collections.sort(slice, (a, b) -> Double.compare(a.centerLatitude(), b.centerLatitude()));
+            for (int i = 0; i < slice.size(); i += MAX_ENTRIES) {
+                Node node = new Node(leaf);
+                for (int j = i, end = Math.min(i + MAX_ENTRIES, slice.size()); j < end; j++) {
+                    node.add(slice.get(j));
+                }
+                node.recompute();
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * A bounding rectangle, base of both entries and nodes.
+     */
+    abstract static class Box {
+        double minLatitude;
+        double minLongitude;
+        double maxLatitude;
+        double maxLongitude;
+        Node parent;
+
+        double area() {
+            return (maxLatitude - minLatitude) * (maxLongitude - minLongitude);
+        }
+
+        double unionArea(Box box) {
+            return (Math.max(maxLatitude, box.maxLatitude) - Math.min(minLatitude, box.minLatitude))
+                    * (Math.max(maxLongitude, box.maxLongitude) - Math.min(minLongitude, box.minLongitude));
+        }
+
+        double enlargement(Box box) {
+            return unionArea(box) - area();
+        }
+
+        double centerLatitude() {
+            return (minLatitude + maxLatitude) / 2;
+        }
+
+        double centerLongitude() {
+            return (minLongitude + maxLongitude) / 2;
+        }
+
+        boolean intersects(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+            return this.minLatitude <= maxLatitude && this.maxLatitude >= minLatitude
+                    && this.minLongitude <= maxLongitude && this.maxLongitude >= minLongitude;
+        }
+
+        void extend(Box box) {
+            minLatitude = Math.min(minLatitude, box.minLatitude);
+            minLongitude = Math.min(minLongitude, box.minLongitude);
+            maxLatitude = Math.max(maxLatitude, box.maxLatitude);
+            maxLongitude = Math.max(maxLongitude, box.maxLongitude);
+        }
+    }
+
+    /**
+     * A rectangle and its value stored in a leaf.
+     *
+     * @param <T> Type of the value.
+     */
+    public static final class Entry<T> extends Box {
+        final T value;
+
+        public Entry(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, T value) {
+            this.minLatitude = minLatitude;
+            this.minLongitude = minLongitude;
+            this.maxLatitude = maxLatitude;
+            this.maxLongitude = maxLongitude;
+            this.value = value;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * An inner or leaf node, leaf node children are entries.
+     */
+    static final class Node extends Box {
+        final boolean leaf;
+        final Box[] children = new Box[MAX_ENTRIES + 1];
+        int count;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+            reset();
+        }
+
+        // Capacity has one spare slot for the overflowing child that triggers a split.
+        void add(Box box) {
+            children[count++] = box;
+            box.parent = this;
+        }
+
+        void removeAt(int index) {
+            children[index].parent = null;
+            children[index] = children[--count];
+            children[count] = null;
+        }
+
+        int indexOf(Box box) {
+            for (int i = 0; i < count; i++) {
+                if (children[i] == box) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void clear() {
+            Arrays.fill(children, 0, count, null);
+            count = 0;
+            reset();
+        }
+
+        void recompute() {
+            reset();
+            for (int i = 0; i < count; i++) {
+                extend(children[i]);
+            }
+        }
+
+        private void reset() {
+            minLatitude = Double.POSITIVE_INFINITY;
+            minLongitude = Double.POSITIVE_INFINITY;
+            maxLatitude = Double.NEGATIVE_INFINITY;
+            maxLongitude = Double.NEGATIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.alimjan.geofence.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A model class that represents a cached reverse geocoding result, results are keyed by geohash
+ * so that nearby coordinates share one entry.
+ */
+@Entity(tableName = "geocode_cache")
+public class CachedPlace {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "geohash")
+    private String geohash;
+
+    // Null when there is no known place in the cell.
+    @ColumnInfo(name = "address")
+    private String address;
+
+    // Time the result was fetched in milliseconds since epoch.
+    @ColumnInfo(name = "createdAt", index = true)
+    private long createdAt;
+
+    public CachedPlace(@NonNull String geohash, String address, long createdAt) {
+        this.geohash = geohash;
+        this.address = address;
+        this.createdAt = createdAt;
+    }
+
+    @NonNull
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(@NonNull String geohash) {
+        this.geohash = geohash;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CachedPlace {" +
+                "geohash = '" + geohash + '\'' +
+                ", address = '" + address + '\'' +
+                ", createdAt = '" + createdAt + '\'' +
+                '}';
+    }
+}
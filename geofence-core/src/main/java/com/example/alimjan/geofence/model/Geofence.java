@@ -1,20 +1,23 @@
 package com.example.alimjan.geofence.model;
 
-import android.os.Parcel;
-import android.os.Parcelable;
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.geo.Geohash;
 
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
  * A model class that represents a table in room database, and also used by many other components
  * throughout application for data handling.
  */
-@Entity(tableName = "geofence")
-public class Geofence implements Parcelable {
+@Entity(tableName = "geofence", indices = {@Index(value = {"latitudeE7", "longitudeE7"})})
+public class Geofence {
+    // Default radius of a geofence in meters.
+    public static final double DEFAULT_RADIUS = 200;
 
     @PrimaryKey(autoGenerate = true)
     private long id;
@@ -28,12 +31,27 @@ public class Geofence implements Parcelable {
     @ColumnInfo(name = "longitude")
     private double longitude;
 
+    // Coordinate in E7 fixed-point, indexed together for exact and range lookups.
+    @ColumnInfo(name = "latitudeE7", defaultValue = "0")
+    private int latitudeE7;
+
+    @ColumnInfo(name = "longitudeE7", defaultValue = "0")
+    private int longitudeE7;
+
+    // Radius in meters.
+    @ColumnInfo(name = "radius", defaultValue = "200")
+    private double radius = DEFAULT_RADIUS;
+
     @ColumnInfo(name = "expireTime")
     private long expireTime;
 
     @ColumnInfo(name = "isTriggered")
     private boolean isTriggered;
 
+    // Geohash of the coordinate, indexed for cell range queries.
+    @ColumnInfo(name = "geohash", index = true)
+    private String geohash;
+
     @Ignore
     public Geofence() {
     }
@@ -42,46 +60,11 @@ public class Geofence implements Parcelable {
         this.address = address;
         this.latitude = latitude;
         this.longitude = longitude;
+        this.latitudeE7 = GeoMath.toE7(latitude);
+        this.longitudeE7 = GeoMath.toE7(longitude);
         this.expireTime = expireTime;
     }
 
-
-    protected Geofence(Parcel in) {
-        id = in.readLong();
-        address = in.readString();
-        latitude = in.readDouble();
-        longitude = in.readDouble();
-        expireTime = in.readLong();
-        isTriggered = in.readByte() != 0;
-    }
-
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeLong(id);
-        dest.writeString(address);
-        dest.writeDouble(latitude);
-        dest.writeDouble(longitude);
-        dest.writeLong(expireTime);
-        dest.writeByte((byte) (isTriggered ? 1 : 0));
-    }
-
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    public static final Creator<Geofence> CREATOR = new Creator<Geofence>() {
-        @Override
-        public Geofence createFromParcel(Parcel in) {
-            return new Geofence(in);
-        }
-
-        @Override
-        public Geofence[] newArray(int size) {
-            return new Geofence[size];
-        }
-    };
-
     public void setId(long id) {
         this.id = id;
     }
@@ -104,6 +87,8 @@ public class Geofence implements Parcelable {
 
     public void setLatitude(double latitude) {
         this.latitude = latitude;
+        this.latitudeE7 = GeoMath.toE7(latitude);
+        this.geohash = null;
     }
 
     public double getLongitude() {
@@ -112,6 +97,32 @@ public class Geofence implements Parcelable {
 
     public void setLongitude(double longitude) {
         this.longitude = longitude;
+        this.longitudeE7 = GeoMath.toE7(longitude);
+        this.geohash = null;
+    }
+
+    public int getLatitudeE7() {
+        return latitudeE7;
+    }
+
+    public void setLatitudeE7(int latitudeE7) {
+        this.latitudeE7 = latitudeE7;
+    }
+
+    public int getLongitudeE7() {
+        return longitudeE7;
+    }
+
+    public void setLongitudeE7(int longitudeE7) {
+        this.longitudeE7 = longitudeE7;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public void setRadius(double radius) {
+        this.radius = radius;
     }
 
     public long getExpireTime() {
@@ -130,6 +141,21 @@ public class Geofence implements Parcelable {
         isTriggered = triggered;
     }
 
+    /**
+     * Returns geohash of the coordinate, it is computed from the coordinate when it is not set so
+     * every inserted geofence has one.
+     */
+    public String getGeohash() {
+        if (geohash == null) {
+            geohash = Geohash.encode(latitude, longitude, Geohash.PRECISION);
+        }
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
     @NonNull
     @Override
     public String toString() {
@@ -138,6 +164,7 @@ public class Geofence implements Parcelable {
                 ", address = '" + this.address + '\'' +
                 ", latitude = '" + this.latitude + '\'' +
                 ", longitude = '" + this.longitude + '\'' +
+                ", radius = '" + this.radius + '\'' +
                 ", expireTime = '" + this.expireTime + '\'' +
                 ", isTriggered = '" + this.isTriggered + '\'' +
                 "}";
@@ -0,0 +1,158 @@
+package com.example.alimjan.geofence.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A set of changes between two states of the geofence table keyed by geofence id, it lets a
+ * consumer apply only what changed instead of rebuilding from the whole table.
+ */
+public class GeofenceChangeSet {
+    private final List<Geofence> added;
+    private final List<Geofence> updated;
+    private final List<Geofence> removed;
+
+    public GeofenceChangeSet(@NonNull List<Geofence> added, @NonNull List<Geofence> updated, @NonNull List<Geofence> removed) {
+        this.added = added;
+        this.updated = updated;
+        this.removed = removed;
+    }
+
+    /**
+     * Returns changes of a write that inserted geofences.
+     */
+    @NonNull
+    public static GeofenceChangeSet added(@NonNull List<Geofence> geofences) {
+        return new GeofenceChangeSet(geofences, Collections.<Geofence>emptyList(), Collections.<Geofence>emptyList());
+    }
+
+    /**
+     * Returns changes of a write that updated geofences.
+     */
+    @NonNull
+    public static GeofenceChangeSet updated(@NonNull List<Geofence> geofences) {
+        return new GeofenceChangeSet(Collections.<Geofence>emptyList(), geofences, Collections.<Geofence>emptyList());
+    }
+
+    /**
+     * Returns changes of a write that deleted geofences.
+     */
+    @NonNull
+    public static GeofenceChangeSet removed(@NonNull List<Geofence> geofences) {
+        return new GeofenceChangeSet(Collections.<Geofence>emptyList(), Collections.<Geofence>emptyList(), geofences);
+    }
+
+    /**
+     * Computes changes from a previous state to current state in O(n).
+     *
+     * @param previous Previous geofences keyed by id.
+     * @param current  Current geofences.
+     */
+    @NonNull
+    public static GeofenceChangeSet diff(@NonNull Map<Long, Geofence> previous, @NonNull Collection<Geofence> current) {
+        List<Geofence> added = new ArrayList<>();
+        List<Geofence> updated = new ArrayList<>();
+        int kept = 0;
+        for (Geofence geofence : current) {
+            Geofence old = previous.get(geofence.getId());
+            if (old == null) {
+                added.add(geofence);
+            } else {
+                kept++;
+                if (!isSame(old, geofence)) {
+                    updated.add(geofence);
+                }
+            }
+        }
+
+        List<Geofence> removed;
+        if (kept == previous.size()) {
+            removed = Collections.emptyList();
+        } else {
+            Set<Long> ids = new HashSet<>(current.size() * 2);
+            for (Geofence geofence : current) {
+                ids.add(geofence.getId());
+            }
+            removed = new ArrayList<>(previous.size() - kept);
+            for (Geofence geofence : previous.values()) {
+                if (!ids.contains(geofence.getId())) {
+                    removed.add(geofence);
+                }
+            }
+        }
+        return new GeofenceChangeSet(added, updated, removed);
+    }
+
+    /**
+     * Returns true if two geofences have the same content.
+     */
+    public static boolean isSame(@NonNull Geofence a, @NonNull Geofence b) {
+        return a.getId() == b.getId()
+                && a.getLatitude() == b.getLatitude()
+                && a.getLongitude() == b.getLongitude()
+                && a.getRadius() == b.getRadius()
+                && a.getExpireTime() == b.getExpireTime()
+                && a.isTriggered() == b.isTriggered()
+                && (a.getAddress() == null ? b.getAddress() == null : a.getAddress().equals(b.getAddress()));
+    }
+
+    /**
+     * Applies the changes to a state keyed by id.
+     */
+    public void applyTo(@NonNull Map<Long, Geofence> geofences) {
+        for (Geofence geofence : removed) {
+            geofences.remove(geofence.getId());
+        }
+        for (Geofence geofence : added) {
+            geofences.put(geofence.getId(), geofence);
+        }
+        for (Geofence geofence : updated) {
+            geofences.put(geofence.getId(), geofence);
+        }
+    }
+
+    /**
+     * Returns geofences that didn't exist before.
+     */
+    @NonNull
+    public List<Geofence> getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns new state of geofences whose content changed.
+     */
+    @NonNull
+    public List<Geofence> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Returns last state of geofences that no longer exist.
+     */
+    @NonNull
+    public List<Geofence> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "GeofenceChangeSet {" +
+                "added = '" + added.size() + '\'' +
+                ", updated = '" + updated.size() + '\'' +
+                ", removed = '" + removed.size() + '\'' +
+                "}";
+    }
+}
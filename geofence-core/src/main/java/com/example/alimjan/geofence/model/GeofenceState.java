@@ -0,0 +1,80 @@
+package com.example.alimjan.geofence.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A model class that represents transition state of a geofence held by the engine, it is stored so
+ * a restarted process carries on where the previous one stopped instead of repeating or missing
+ * transitions. Only geofences that are inside or have a transition waiting for dwell time have a
+ * stored state.
+ */
+@Entity(tableName = "geofence_state")
+public class GeofenceState {
+
+    @PrimaryKey
+    @ColumnInfo(name = "geofenceId")
+    private long geofenceId;
+
+    // Indicates last confirmed transition is an enter.
+    @ColumnInfo(name = "inside")
+    private boolean inside;
+
+    // Time in milliseconds since epoch a transition waiting for dwell time started, null if there
+    // is none. Direction of the transition is the opposite of inside state.
+    @Nullable
+    @ColumnInfo(name = "dwellSince")
+    private Long dwellSince;
+
+    public GeofenceState(long geofenceId, boolean inside, @Nullable Long dwellSince) {
+        this.geofenceId = geofenceId;
+        this.inside = inside;
+        this.dwellSince = dwellSince;
+    }
+
+    public long getGeofenceId() {
+        return geofenceId;
+    }
+
+    public void setGeofenceId(long geofenceId) {
+        this.geofenceId = geofenceId;
+    }
+
+    public boolean isInside() {
+        return inside;
+    }
+
+    public void setInside(boolean inside) {
+        this.inside = inside;
+    }
+
+    @Nullable
+    public Long getDwellSince() {
+        return dwellSince;
+    }
+
+    public void setDwellSince(@Nullable Long dwellSince) {
+        this.dwellSince = dwellSince;
+    }
+
+    /**
+     * Returns true for the state of a geofence that is outside and has nothing waiting, such a
+     * state isn't stored.
+     */
+    public boolean isEmpty() {
+        return !inside && dwellSince == null;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "GeofenceState {" +
+                "geofenceId = '" + geofenceId + '\'' +
+                ", inside = '" + inside + '\'' +
+                ", dwellSince = '" + dwellSince + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.alimjan.geofence.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A model class that represents the last time a geofence was notified for a direction, stored so
+ * the notification cooldown holds across process restarts.
+ */
+@Entity(tableName = "notification_cooldown")
+public class NotificationCooldown {
+
+    // Geofence id shifted left by one, low bit set for exit.
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    private long id;
+
+    // Time in milliseconds since epoch.
+    @ColumnInfo(name = "time", index = true)
+    private long time;
+
+    public NotificationCooldown(long id, long time) {
+        this.id = id;
+        this.time = time;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "NotificationCooldown {" +
+                "id = '" + id + '\'' +
+                ", time = '" + time + '\'' +
+                '}';
+    }
+}
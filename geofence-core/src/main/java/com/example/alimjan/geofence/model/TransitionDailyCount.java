@@ -0,0 +1,78 @@
+package com.example.alimjan.geofence.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * A model class that represents number of transitions of a geofence in a UTC day, compacted from
+ * {@link TransitionEvent} rows past retention.
+ */
+@Entity(tableName = "transition_daily", primaryKeys = {"day", "geofenceId"})
+public class TransitionDailyCount {
+    // Length of a day in milliseconds.
+    public static final long DAY = 1000 * 60 * 60 * 24;
+
+    // Days since epoch in UTC.
+    @ColumnInfo(name = "day")
+    private long day;
+
+    @ColumnInfo(name = "geofenceId")
+    private long geofenceId;
+
+    @ColumnInfo(name = "enters")
+    private int enters;
+
+    @ColumnInfo(name = "exits")
+    private int exits;
+
+    public TransitionDailyCount(long day, long geofenceId, int enters, int exits) {
+        this.day = day;
+        this.geofenceId = geofenceId;
+        this.enters = enters;
+        this.exits = exits;
+    }
+
+    public long getDay() {
+        return day;
+    }
+
+    public void setDay(long day) {
+        this.day = day;
+    }
+
+    public long getGeofenceId() {
+        return geofenceId;
+    }
+
+    public void setGeofenceId(long geofenceId) {
+        this.geofenceId = geofenceId;
+    }
+
+    public int getEnters() {
+        return enters;
+    }
+
+    public void setEnters(int enters) {
+        this.enters = enters;
+    }
+
+    public int getExits() {
+        return exits;
+    }
+
+    public void setExits(int exits) {
+        this.exits = exits;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TransitionDailyCount {" +
+                "day = '" + day + '\'' +
+                ", geofenceId = '" + geofenceId + '\'' +
+                ", enters = '" + enters + '\'' +
+                ", exits = '" + exits + '\'' +
+                '}';
+    }
+}
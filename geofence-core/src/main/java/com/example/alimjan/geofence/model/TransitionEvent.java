@@ -0,0 +1,101 @@
+package com.example.alimjan.geofence.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * A model class that represents a logged geofence transition, the log is append only and old
+ * events are rolled into {@link TransitionDailyCount} rows.
+ */
+@Entity(tableName = "transition_event")
+public class TransitionEvent {
+    // Transition directions.
+    public static final int DIRECTION_ENTER = 1;
+    public static final int DIRECTION_EXIT = 2;
+    // Accuracy of a transition whose location fix had no accuracy.
+    public static final float UNKNOWN_ACCURACY = -1;
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @ColumnInfo(name = "geofenceId", index = true)
+    private long geofenceId;
+
+    // One of DIRECTION_ENTER or DIRECTION_EXIT.
+    @ColumnInfo(name = "direction")
+    private int direction;
+
+    // Time of the transition in milliseconds since epoch.
+    @ColumnInfo(name = "time", index = true)
+    private long time;
+
+    // Accuracy of the location fix in meters.
+    @ColumnInfo(name = "accuracy")
+    private float accuracy;
+
+    @Ignore
+    public TransitionEvent() {
+    }
+
+    public TransitionEvent(long geofenceId, int direction, long time, float accuracy) {
+        this.geofenceId = geofenceId;
+        this.direction = direction;
+        this.time = time;
+        this.accuracy = accuracy;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getGeofenceId() {
+        return geofenceId;
+    }
+
+    public void setGeofenceId(long geofenceId) {
+        this.geofenceId = geofenceId;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    public void setDirection(int direction) {
+        this.direction = direction;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public void setAccuracy(float accuracy) {
+        this.accuracy = accuracy;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TransitionEvent {" +
+                "id = '" + id + '\'' +
+                ", geofenceId = '" + geofenceId + '\'' +
+                ", direction = '" + direction + '\'' +
+                ", time = '" + time + '\'' +
+                ", accuracy = '" + accuracy + '\'' +
+                '}';
+    }
+}
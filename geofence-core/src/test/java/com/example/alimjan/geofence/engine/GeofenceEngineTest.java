@@ -0,0 +1,242 @@
+package com.example.alimjan.geofence.engine;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.model.Geofence;
+import com.example.alimjan.geofence.model.GeofenceChangeSet;
+import com.example.alimjan.geofence.model.GeofenceState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link GeofenceEngine}.
+ */
+public class GeofenceEngineTest {
+
+    private GeofenceEngine mEngine;
+
+    @Before
+    public void setUp() {
+        this.mEngine = new GeofenceEngine();
+        List<Geofence> geofences = new ArrayList<>();
+        geofences.add(geofence(1, 31.2397, 121.4998));
+        geofences.add(geofence(2, 31.2410, 121.4998));
+        this.mEngine.setGeofences(geofences);
+    }
+
+    @Test
+    public void enterAndExit_emittedOnce() {
+        List<GeofenceTransition> transitions = mEngine.onLocation(31.2397, 121.4998, 1);
+        assertEquals(2, transitions.size());
+        assertEquals(GeofenceTransition.Type.ENTER, transitions.get(0).getType());
+
+        // Staying inside emits nothing
+        assertTrue(mEngine.onLocation(31.2398, 121.4998, 2).isEmpty());
+
+        // Moving ~1.1km north exits both
+        transitions = mEngine.onLocation(31.2497, 121.4998, 3);
+        assertEquals(2, transitions.size());
+        assertEquals(GeofenceTransition.Type.EXIT, transitions.get(0).getType());
+    }
+
+    @Test
+    public void removedGeofence_emitsNothing() {
+        mEngine.onLocation(31.2397, 121.4998, 1);
+        mEngine.remove(1);
+        List<GeofenceTransition> transitions = mEngine.onLocation(31.2497, 121.4998, 2);
+        assertEquals(1, transitions.size());
+        assertEquals(2, transitions.get(0).getGeofence().getId());
+    }
+
+    @Test
+    public void expiredGeofence_isIgnored() {
+        Geofence geofence = geofence(3, 10, 10);
+        geofence.setExpireTime(100);
+        mEngine.add(geofence);
+        assertEquals(1, mEngine.onLocation(10, 10, 50).size());
+        assertTrue(mEngine.onLocation(20, 20, 200).isEmpty());
+        assertTrue(mEngine.onLocation(10, 10, 300).isEmpty());
+    }
+
+    @Test
+    public void changeSet_appliedToIndex() {
+        mEngine.onLocation(31.2397, 121.4998, 1);
+        Geofence moved = geofence(2, 10, 10);
+        List<Geofence> current = new ArrayList<>();
+        current.add(moved);
+        current.add(geofence(3, 31.2397, 121.4998));
+        Map<Long, Geofence> previous = new HashMap<>();
+        previous.put(1L, geofence(1, 31.2397, 121.4998));
+        previous.put(2L, geofence(2, 31.2410, 121.4998));
+        mEngine.apply(GeofenceChangeSet.diff(previous, current));
+
+        assertEquals(2, mEngine.size());
+        // Removed one leaves silently, moved one exits and added one enters
+        List<GeofenceTransition> transitions = mEngine.onLocation(31.2397, 121.4998, 2);
+        assertEquals(2, transitions.size());
+        assertEquals(GeofenceTransition.Type.EXIT, transitions.get(0).getType());
+        assertEquals(2, transitions.get(0).getGeofence().getId());
+        assertEquals(3, transitions.get(1).getGeofence().getId());
+    }
+
+    @Test
+    public void jitterAtBoundary_suppressedByPolicy() {
+        GeofenceEngine unfiltered = new GeofenceEngine();
+        GeofenceEngine filtered = new GeofenceEngine(TransitionPolicy.DEFAULT);
+        List<Geofence> geofences = new ArrayList<>();
+        geofences.add(geofence(1, 10, 10));
+        unfiltered.setGeofences(geofences);
+        filtered.setGeofences(geofences);
+
+        // Parked right on the boundary for an hour with a fix every 10 seconds, 15m GPS noise and
+        // an occasional fix far off with poor accuracy
+        Random random = new Random(7);
+        double radius = geofences.get(0).getRadius();
+        int unfilteredCount = 0;
+        int filteredCount = 0;
+        long time = 0;
+        for (int i = 0; i < 360; i++, time += 10_000) {
+            boolean outlier = i % 50 == 49;
+            double north = radius + random.nextGaussian() * 15 + (outlier ? 300 : 0);
+            double east = random.nextGaussian() * 15;
+            float accuracy = outlier ? 150 : 10 + random.nextFloat() * 10;
+            double latitude = 10 + GeoMath.latitudeDelta(north);
+            double longitude = 10 + GeoMath.longitudeDelta(10, east);
+            unfilteredCount += unfiltered.onLocation(latitude, longitude, accuracy, time).size();
+            filteredCount += filtered.onLocation(latitude, longitude, accuracy, time).size();
+        }
+        assertTrue("Unfiltered " + unfilteredCount, unfilteredCount > 100);
+        assertTrue("Filtered " + filteredCount, filteredCount <= 2);
+
+        // Leaving for good is confirmed once dwell time passed
+        double latitude = 10 + GeoMath.latitudeDelta(radius + 200);
+        boolean inside = filteredCount % 2 == 1;
+        filtered.onLocation(latitude, 10, 10, time);
+        List<GeofenceTransition> transitions = filtered.onLocation(latitude, 10, 10, time + TransitionPolicy.DEFAULT.getDwellTime());
+        assertEquals(inside ? 1 : 0, transitions.size());
+        assertEquals(0, filtered.getCandidateCount());
+    }
+
+    @Test
+    public void transition_cancelledByFixPointingBack() {
+        GeofenceEngine engine = new GeofenceEngine(new TransitionPolicy(20_000, 0, 100));
+        List<Geofence> geofences = new ArrayList<>();
+        geofences.add(geofence(1, 10, 10));
+        engine.setGeofences(geofences);
+        double outside = 10 + GeoMath.latitudeDelta(1000);
+
+        assertTrue(engine.onLocation(10, 10, 10, 0).isEmpty());
+        assertEquals(1, engine.getCandidateCount());
+        assertTrue(engine.onLocation(outside, 10, 10, 10_000).isEmpty());
+        assertEquals(0, engine.getCandidateCount());
+        // Poor fixes neither start nor cancel a transition
+        assertTrue(engine.onLocation(10, 10, 10, 20_000).isEmpty());
+        assertTrue(engine.onLocation(outside, 10, 500, 30_000).isEmpty());
+        assertEquals(1, engine.onLocation(10, 10, 10, 40_000).size());
+    }
+
+    @Test
+    public void reloadMidTrace_matchesUninterruptedRun() {
+        TransitionPolicy policy = new TransitionPolicy(20_000, 25, 100);
+        List<Geofence> geofences = new ArrayList<>();
+        geofences.add(geofence(1, 10, 10));
+        geofences.add(geofence(2, 10 + GeoMath.latitudeDelta(600), 10));
+
+        // Walking north through both geofences with a fix every 5 seconds and 15m GPS noise
+        Random random = new Random(11);
+        int count = 200;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 10 + GeoMath.latitudeDelta(-300 + i * 6 + random.nextGaussian() * 15);
+            longitudes[i] = 10 + GeoMath.longitudeDelta(10, random.nextGaussian() * 15);
+        }
+        GeofenceEngine uninterrupted = new GeofenceEngine(policy);
+        uninterrupted.setGeofences(geofences);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expected.addAll(describe(uninterrupted.onLocation(latitudes[i], longitudes[i], 10, i * 5_000L)));
+        }
+        assertEquals(4, expected.size());
+
+        // Process dies after any fix, the next one carries on from stored states
+        for (int split = 1; split < count; split++) {
+            Map<Long, GeofenceState> stored = new HashMap<>();
+            GeofenceEngine engine = new GeofenceEngine(policy);
+            engine.setGeofences(geofences);
+            List<String> actual = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (i == split) {
+                    engine = new GeofenceEngine(policy);
+                    engine.setGeofences(geofences, stored.values());
+                }
+                actual.addAll(describe(engine.onLocation(latitudes[i], longitudes[i], 10, i * 5_000L)));
+                for (GeofenceState state : engine.drainStateChanges()) {
+                    if (state.isEmpty()) {
+                        stored.remove(state.getGeofenceId());
+                    } else {
+                        stored.put(state.getGeofenceId(), state);
+                    }
+                }
+            }
+            assertEquals("Reloaded after fix " + split, expected, actual);
+        }
+    }
+
+    @Test
+    public void evaluation_withHundredThousandGeofences_matchesBruteForce() {
+        Random random = new Random(42);
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            geofences.add(geofence(i, 30 + random.nextDouble(), 120 + random.nextDouble()));
+        }
+        GeofenceEngine engine = new GeofenceEngine(TransitionPolicy.NONE);
+        engine.setGeofences(geofences);
+
+        // Without dwell time and hysteresis inside state follows containment fix by fix
+        Set<Long> inside = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            double latitude = 30 + random.nextDouble();
+            double longitude = 120 + random.nextDouble();
+            for (GeofenceTransition transition : engine.onLocation(latitude, longitude, i)) {
+                if (transition.getType() == GeofenceTransition.Type.ENTER) {
+                    inside.add(transition.getGeofence().getId());
+                } else {
+                    inside.remove(transition.getGeofence().getId());
+                }
+            }
+            Set<Long> expected = new HashSet<>();
+            for (Geofence geofence : geofences) {
+                if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude) <= geofence.getRadius()) {
+                    expected.add(geofence.getId());
+                }
+            }
+            assertEquals(expected, inside);
+        }
+    }
+
+    private static List<String> describe(List<GeofenceTransition> transitions) {
+        List<String> descriptions = new ArrayList<>();
+        for (GeofenceTransition transition : transitions) {
+            descriptions.add(transition.getType() + " " + transition.getGeofence().getId() + " at " + transition.getTime());
+        }
+        return descriptions;
+    }
+
+    private static Geofence geofence(long id, double latitude, double longitude) {
+        Geofence geofence = new Geofence("", latitude, longitude, 0);
+        geofence.setId(id);
+        return geofence;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.alimjan.geofence.engine;
+
+import com.example.alimjan.geofence.geo.GeoMath;
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link SamplingScheduler}, replays a simulated commute with fixed and with
+ * adaptive sampling.
+ */
+public class SamplingSchedulerTest {
+    // Legacy fixed cadence.
+    private static final long FIXED_INTERVAL = 1000 * 10;
+    // Distance filter of the legacy request.
+    private static final double MIN_DISTANCE = 20;
+    // Commute: parked 40 minutes, drives 18km north at 15 m/s, then parks inside the geofence.
+    private static final long PARKED = 1000 * 60 * 40;
+    private static final double SPEED = 15;
+    private static final double DESTINATION = 18000;
+    private static final long END = 1000 * 60 * 120;
+
+    private List<Geofence> mGeofences;
+
+    @Before
+    public void setUp() {
+        this.mGeofences = new ArrayList<>();
+        Geofence geofence = new Geofence("Office", 31.2 + GeoMath.latitudeDelta(DESTINATION), 121.4, 0);
+        geofence.setId(1);
+        this.mGeofences.add(geofence);
+    }
+
+    @Test
+    public void request_followsDistanceToBoundary() {
+        GeofenceEngine engine = new GeofenceEngine();
+        engine.setGeofences(mGeofences);
+        SamplingScheduler scheduler = new SamplingScheduler(engine);
+
+        SamplingScheduler.Request far = scheduler.onLocation(31.2, 121.4, 20, 0, 0);
+        assertEquals(SamplingScheduler.INTERVALS[SamplingScheduler.INTERVALS.length - 1], far.getInterval());
+        assertFalse(far.isHighAccuracy());
+
+        // Driving toward the boundary shortens interval
+        double near = 31.2 + GeoMath.latitudeDelta(DESTINATION - Geofence.DEFAULT_RADIUS - 100);
+        SamplingScheduler.Request close = scheduler.onLocation(near, 121.4, 10, (float) SPEED, 60_000);
+        assertEquals(SamplingScheduler.INTERVALS[0], close.getInterval());
+        assertTrue(close.isHighAccuracy());
+        assertTrue(close == scheduler.onLocation(near, 121.4, 10, (float) SPEED, 61_000));
+    }
+
+    @Test
+    public void restingDevice_intervalCoversDrivingOff() {
+        GeofenceEngine engine = new GeofenceEngine();
+        engine.setGeofences(mGeofences);
+        SamplingScheduler scheduler = new SamplingScheduler(engine);
+
+        // Parked 5km short of the boundary, it may start driving right after a fix
+        double gap = 5000;
+        double latitude = 31.2 + GeoMath.latitudeDelta(DESTINATION - Geofence.DEFAULT_RADIUS - gap);
+        SamplingScheduler.Request request = null;
+        for (long time = 0; time <= 1000 * 60 * 30; time += 1000 * 60) {
+            request = scheduler.onLocation(latitude, 121.4, 20, 0, time);
+        }
+        assertTrue(request.getInterval() / 1000.0 * SPEED < gap);
+    }
+
+    @Test
+    public void commute_sampledFarLessOften() {
+        Replay fixed = replay(false);
+        Replay adaptive = replay(true);
+
+        // Arrival is still detected, within a minute of fixed sampling
+        assertTrue(fixed.enterTime > 0);
+        assertTrue(adaptive.enterTime > 0);
+        assertTrue(adaptive.enterTime - fixed.enterTime <= 60_000);
+        assertTrue(adaptive.samples * 4 < fixed.samples);
+        assertTrue(adaptive.wakeups * 2 < fixed.wakeups);
+    }
+
+    private Replay replay(boolean adaptive) {
+        // Fixed sampling stands for the legacy request that confirmed transitions right away
+        GeofenceEngine engine = new GeofenceEngine(adaptive ? TransitionPolicy.DEFAULT : TransitionPolicy.NONE);
+        engine.setGeofences(mGeofences);
+        SamplingScheduler scheduler = new SamplingScheduler(engine);
+        Replay replay = new Replay();
+        double delivered = Double.NaN;
+        for (long time = 0; time < END; ) {
+            double north = Math.min(DESTINATION, Math.max(0, time - PARKED) / 1000.0 * SPEED);
+            double latitude = 31.2 + GeoMath.latitudeDelta(north);
+            replay.samples++;
+            long interval = FIXED_INTERVAL;
+            // Fixes that didn't move far enough aren't delivered and don't wake the app up
+            double minDistance = adaptive ? scheduler.getRequest().getMinDistance() : MIN_DISTANCE;
+            if (Double.isNaN(delivered) || Math.abs(north - delivered) >= minDistance) {
+                delivered = north;
+                replay.wakeups++;
+                for (GeofenceTransition transition : engine.onLocation(latitude, 121.4, 10, time)) {
+                    if (transition.getType() == GeofenceTransition.Type.ENTER && replay.enterTime < 0) {
+                        replay.enterTime = time;
+                    }
+                }
+                if (adaptive) {
+                    scheduler.onLocation(latitude, 121.4, 10, -1, time);
+                }
+            }
+            if (adaptive) {
+                interval = scheduler.getRequest().getInterval();
+            }
+            time += interval;
+        }
+        return replay;
+    }
+
+    private static class Replay {
+        private int samples;
+        private int wakeups;
+        private long enterTime = -1;
+
+        @Override
+        public String toString() {
+            return samples + " samples, " + wakeups + " wakeups, enter at " + (enterTime < 0 ? "never" : enterTime / 1000 + "s");
+        }
+    }
+}
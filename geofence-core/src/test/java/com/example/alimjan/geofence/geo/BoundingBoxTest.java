@@ -0,0 +1,55 @@
+package com.example.alimjan.geofence.geo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link BoundingBox}.
+ */
+public class BoundingBoxTest {
+
+    @Test
+    public void expand_containsSmallPans() {
+        BoundingBox visible = new BoundingBox(31.0, 121.0, 31.2, 121.4);
+        BoundingBox queried = visible.expand(0.5);
+
+        assertEquals(30.9, queried.getSouth(), 1e-9);
+        assertEquals(121.6, queried.getEast(), 1e-9);
+        assertTrue(queried.contains(visible));
+        assertTrue(queried.contains(new BoundingBox(31.05, 121.15, 31.25, 121.55)));
+        assertFalse(queried.contains(new BoundingBox(31.05, 121.25, 31.25, 121.65)));
+    }
+
+    @Test
+    public void antimeridian() {
+        BoundingBox visible = new BoundingBox(-10, 170, 10, -170);
+        assertEquals(20, visible.getWidth(), 1e-9);
+        assertEquals(-170, visible.getEast(), 1e-9);
+
+        BoundingBox queried = visible.expand(0.5);
+        assertEquals(160, queried.getWest(), 1e-9);
+        assertEquals(-160, queried.getEast(), 1e-9);
+        assertTrue(queried.contains(new BoundingBox(-5, 175, 5, 179)));
+        assertTrue(queried.contains(new BoundingBox(-5, -179, 5, -165)));
+        assertFalse(queried.contains(new BoundingBox(-5, 0, 5, 10)));
+
+        assertTrue(visible.contains(0, 180));
+        assertTrue(visible.contains(0, -175));
+        assertFalse(visible.contains(0, 165));
+        assertFalse(visible.contains(11, 175));
+    }
+
+    @Test
+    public void expand_clampsToWorld() {
+        BoundingBox queried = new BoundingBox(-80, -150, 80, 150).expand(0.5);
+        assertTrue(queried.isFullWidth());
+        assertEquals(-90, queried.getSouth(), 0);
+        assertEquals(90, queried.getNorth(), 0);
+        assertEquals(-180, queried.getWest(), 0);
+        assertEquals(180, queried.getEast(), 0);
+        assertTrue(queried.contains(new BoundingBox(-5, 175, 5, -175)));
+    }
+}
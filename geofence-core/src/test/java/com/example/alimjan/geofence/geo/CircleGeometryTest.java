@@ -0,0 +1,84 @@
+package com.example.alimjan.geofence.geo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link CircleGeometry} against the per vertex computation it replaced.
+ */
+public class CircleGeometryTest {
+
+    @Test
+    public void circle_matchesLegacyComputation() {
+        Random random = new Random(1);
+        double[] buffer = null;
+        for (int i = 0; i < 1000; i++) {
+            double latitude = random.nextDouble() * 170 - 85;
+            double longitude = random.nextDouble() * 360 - 180;
+            double radius = 10 + random.nextDouble() * 5000;
+            buffer = CircleGeometry.circle(latitude, longitude, radius, 45, buffer);
+            List<double[]> expected = legacyCircle(latitude, longitude, radius);
+            for (int j = 0; j < 45; j++) {
+                assertEquals(expected.get(j)[0], buffer[j * 2], 1e-9);
+                assertEquals(expected.get(j)[1], buffer[j * 2 + 1], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void vertexCount_fallsWithZoom() {
+        // A 200m geofence in Shanghai
+        int street = CircleGeometry.vertexCount(200 / GeoMath.metersPerPixel(31.2397, 17));
+        int city = CircleGeometry.vertexCount(200 / GeoMath.metersPerPixel(31.2397, 13));
+        int country = CircleGeometry.vertexCount(200 / GeoMath.metersPerPixel(31.2397, 9));
+        assertEquals(CircleGeometry.DEFAULT_VERTEX_COUNT, street);
+        assertTrue(city < street);
+        assertTrue(country * 10 <= street);
+
+        // Every bucket stays within the pixel error
+        for (double radius = 0.5; radius < 2000; radius *= 1.1) {
+            int vertexCount = CircleGeometry.vertexCount(radius);
+            if (vertexCount < CircleGeometry.DEFAULT_VERTEX_COUNT) {
+                assertTrue(radius * (1 - Math.cos(Math.PI / vertexCount)) <= CircleGeometry.MAX_PIXEL_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void circle_vertexCountAndRadius() {
+        double[] buffer = CircleGeometry.circle(31.2397, 121.4998, 500, 12, null);
+        assertEquals(24, buffer.length);
+        for (int i = 0; i < 12; i++) {
+            assertEquals(500, GeoMath.distance(31.2397, 121.4998, buffer[i * 2], buffer[i * 2 + 1]), 1e-3);
+        }
+        // A large enough buffer is reused
+        assertTrue(buffer == CircleGeometry.circle(0, 0, 100, 8, buffer));
+    }
+
+    /**
+     * The computation {@link CircleGeometry} replaced, with a double array standing for LatLng.
+     */
+    private static List<double[]> legacyCircle(double latitude, double longitude, double radius) {
+        int degreesBetweenPoints = 8; //45 sides
+        int numberOfPoints = (int) Math.floor(360 / degreesBetweenPoints);
+        double distRadians = radius / 6371000.0; // earth radius in meters
+        double centerLatRadians = latitude * Math.PI / 180;
+        double centerLonRadians = longitude * Math.PI / 180;
+        List<double[]> polygons = new ArrayList<>();
+        for (int index = 0; index < numberOfPoints; index++) {
+            double degrees = index * degreesBetweenPoints;
+            double degreeRadians = degrees * Math.PI / 180;
+            double pointLatRadians = Math.asin(Math.sin(centerLatRadians) * Math.cos(distRadians) + Math.cos(centerLatRadians) * Math.sin(distRadians) * Math.cos(degreeRadians));
+            double pointLonRadians = centerLonRadians + Math.atan2(Math.sin(degreeRadians) * Math.sin(distRadians) * Math.cos(centerLatRadians),
+                    Math.cos(distRadians) - Math.sin(centerLatRadians) * Math.sin(pointLatRadians));
+            polygons.add(new double[]{pointLatRadians * 180 / Math.PI, pointLonRadians * 180 / Math.PI});
+        }
+        return polygons;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.alimjan.geofence.geo;
+
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link ClusterIndex}.
+ */
+public class ClusterIndexTest {
+
+    @Test
+    public void clusters_preserveCountAndExpand() {
+        List<Geofence> geofences = randomGeofences(50000, 18, 53, 73, 135);
+        ClusterIndex<Geofence> index = new ClusterIndex<>(geofences, Geofence::getLatitude, Geofence::getLongitude);
+
+        // Every zoom level accounts for every item exactly once
+        for (int zoom = 0; zoom <= 18; zoom += 3) {
+            int count = 0;
+            for (ClusterIndex.Cluster<Geofence> cluster : index.getClusters(-180, -90, 180, 90, zoom)) {
+                count += cluster.getCount();
+                assertEquals(cluster.isCluster(), cluster.getItem() == null);
+            }
+            assertEquals(geofences.size(), count);
+        }
+
+        // Country zoom renders few markers
+        List<ClusterIndex.Cluster<Geofence>> country = index.getClusters(73, 18, 135, 53, 4);
+        assertTrue(country.size() < 500);
+
+        // Zooming into a cluster splits it
+        ClusterIndex.Cluster<Geofence> cluster = country.get(0);
+        int zoom = index.getExpansionZoom(cluster);
+        assertTrue(zoom > 4);
+        double delta = 1.0 / (1 << zoom);
+        assertTrue(index.getClusters(cluster.getLongitude() - delta * 360, cluster.getLatitude() - delta * 180,
+                cluster.getLongitude() + delta * 360, cluster.getLatitude() + delta * 180, zoom).size() > 1);
+
+        // Beyond maximum zoom nothing is clustered
+        for (ClusterIndex.Cluster<Geofence> single : index.getClusters(100, 30, 101, 31, 17)) {
+            assertFalse(single.isCluster());
+        }
+    }
+
+    @Test
+    public void antimeridianBox_coversBothSides() {
+        List<Geofence> geofences = new ArrayList<>();
+        geofences.add(geofence(1, -17, 179.5));
+        geofences.add(geofence(2, -17, -179.5));
+        geofences.add(geofence(3, -17, 0));
+        ClusterIndex<Geofence> index = new ClusterIndex<>(geofences, Geofence::getLatitude, Geofence::getLongitude);
+
+        assertEquals(2, index.getClusters(179, -18, -179, -16, 17).size());
+    }
+
+    private static List<Geofence> randomGeofences(int count, double minLat, double maxLat, double minLon, double maxLon) {
+        Random random = new Random(3);
+        List<Geofence> geofences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            geofences.add(geofence(i, minLat + random.nextDouble() * (maxLat - minLat), minLon + random.nextDouble() * (maxLon - minLon)));
+        }
+        return geofences;
+    }
+
+    private static Geofence geofence(long id, double latitude, double longitude) {
+        Geofence geofence = new Geofence("Place " + id, latitude, longitude, 0);
+        geofence.setId(id);
+        return geofence;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.alimjan.geofence.geo;
+
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Local unit test for {@link GeofenceColumnStore} and {@link LongIntMap}, results are compared
+ * against {@link GeofenceIndex}.
+ */
+public class GeofenceColumnStoreTest {
+
+    private final Random mRandom = new Random(7);
+
+    @Test
+    public void containing_matchesIndex() {
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Geofence geofence = geofence(i, 31 + mRandom.nextDouble() * 0.2, 121 + mRandom.nextDouble() * 0.2, 50 + mRandom.nextInt(1000));
+            geofence.setTriggered(i % 3 == 0);
+            geofences.add(geofence);
+        }
+        // Across the antimeridian and around the pole
+        geofences.add(geofence(5000, 0, 179.999, 500));
+        geofences.add(geofence(5001, 89.9, 0, 50000));
+        GeofenceColumnStore store = new GeofenceColumnStore();
+        store.load(geofences);
+        GeofenceIndex index = new GeofenceIndex();
+        index.load(geofences);
+
+        // Removal moves last slot, triggered state has to move with it
+        for (int i = 0; i < 2000; i++) {
+            long id = mRandom.nextInt(5000);
+            store.remove(id);
+            index.remove(id);
+        }
+        for (int i = 6000; i < 7000; i++) {
+            Geofence geofence = geofence(i, 31 + mRandom.nextDouble() * 0.2, 121 + mRandom.nextDouble() * 0.2, 200);
+            geofence.setTriggered(i % 2 == 0);
+            store.put(geofence);
+            index.add(geofence);
+        }
+        assertEquals(index.size(), store.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(index.get(i) != null, store.contains(i));
+            if (store.contains(i)) {
+                assertEquals(i % 3 == 0, store.isTriggered(i));
+            }
+        }
+        for (int i = 6000; i < 7000; i++) {
+            assertEquals(i % 2 == 0, store.isTriggered(i));
+        }
+        assertFalse(store.remove(-1));
+        assertFalse(store.contains(-1));
+
+        for (int i = 0; i < 500; i++) {
+            assertSame(index, store, 31 + mRandom.nextDouble() * 0.2, 121 + mRandom.nextDouble() * 0.2);
+        }
+        assertSame(index, store, 89.99, 135);
+        assertEquals(1, store.containing(89.99, 135).length);
+        // Index boxes don't wrap around the antimeridian, the scan does
+        assertEquals(1, store.containing(0, -179.999).length);
+        assertEquals(5000, store.containing(0, -179.999)[0]);
+    }
+
+    @Test
+    public void longIntMap_removalKeepsProbing() {
+        LongIntMap map = new LongIntMap();
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            long key = mRandom.nextInt(20000) - 10000L;
+            if (mRandom.nextBoolean()) {
+                map.put(key, (int) (key & 0xffff));
+                keys.add(key);
+            } else {
+                assertEquals(keys.remove(key) ? (int) (key & 0xffff) : LongIntMap.MISSING, map.remove(key));
+            }
+        }
+        assertEquals(keys.size(), map.size());
+        for (long key = -10000; key < 10000; key++) {
+            assertEquals(keys.contains(key) ? (int) (key & 0xffff) : LongIntMap.MISSING, map.get(key));
+        }
+    }
+
+    private static void assertSame(GeofenceIndex index, GeofenceColumnStore store, double latitude, double longitude) {
+        Set<Long> expected = new HashSet<>();
+        for (Geofence geofence : index.containing(latitude, longitude)) {
+            expected.add(geofence.getId());
+        }
+        Set<Long> actual = new HashSet<>();
+        for (long id : store.containing(latitude, longitude)) {
+            actual.add(id);
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static Geofence geofence(long id, double latitude, double longitude, double radius) {
+        Geofence geofence = new Geofence("Geofence " + id, latitude, longitude, 0);
+        geofence.setId(id);
+        geofence.setRadius(radius);
+        return geofence;
+    }
+}
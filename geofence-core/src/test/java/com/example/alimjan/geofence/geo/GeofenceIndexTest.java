@@ -0,0 +1,146 @@
+package com.example.alimjan.geofence.geo;
+
+import com.example.alimjan.geofence.model.Geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link GeofenceIndex} and {@link RTree}, results are compared against a
+ * linear scan.
+ */
+public class GeofenceIndexTest {
+
+    private final Random mRandom = new Random(7);
+    private List<Geofence> mGeofences;
+    private GeofenceIndex mIndex;
+
+    @Before
+    public void setUp() {
+        this.mGeofences = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            mGeofences.add(geofence(i, 31 + mRandom.nextDouble() * 0.2, 121 + mRandom.nextDouble() * 0.2));
+        }
+        this.mIndex = new GeofenceIndex();
+        this.mIndex.load(mGeofences);
+    }
+
+    @Test
+    public void bulkLoadedQueries_matchLinearScan() {
+        assertQueriesMatch();
+    }
+
+    @Test
+    public void incrementalUpdates_matchLinearScan() {
+        // Remove a half and add new ones, enough to cause splits and condensing
+        for (int i = 0; i < 2500; i++) {
+            Geofence removed = mGeofences.remove(mRandom.nextInt(mGeofences.size()));
+            assertEquals(removed, mIndex.remove(removed.getId()));
+        }
+        for (int i = 5000; i < 7000; i++) {
+            Geofence geofence = geofence(i, 31 + mRandom.nextDouble() * 0.2, 121 + mRandom.nextDouble() * 0.2);
+            mGeofences.add(geofence);
+            mIndex.add(geofence);
+        }
+        assertEquals(mGeofences.size(), mIndex.size());
+        assertNull(mIndex.remove(-1));
+        assertQueriesMatch();
+    }
+
+    @Test
+    public void emptyIndex_returnsNothing() {
+        GeofenceIndex index = new GeofenceIndex();
+        assertEquals(0, index.containing(31, 121).size());
+        index.add(geofence(1, 31, 121));
+        index.remove(1);
+        assertEquals(0, index.nearby(31, 121, 1000).size());
+    }
+
+    @Test
+    public void antimeridian_queriesMatchLinearScan() {
+        // Geofences within about 5km of the antimeridian, longitudes wrapped to [-180, 180]
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            geofences.add(geofence(i, -17 + mRandom.nextDouble() * 0.1, wrap(180 + (mRandom.nextDouble() - 0.5) * 0.1)));
+        }
+        geofences.add(geofence(2000, -17, 179.9995));
+        GeofenceIndex index = new GeofenceIndex();
+        index.load(geofences.subList(0, 1000));
+        index.addAll(geofences.subList(1000, geofences.size()));
+
+        // Fix a hundred meters across the antimeridian
+        assertTrue(ids(index.containing(-17, -179.9995)).contains(2000L));
+        assertTrue(ids(index.within(-17.001, 179.9999, -16.999, -179.9999)).contains(2000L));
+        for (int i = 0; i < 200; i++) {
+            double latitude = -17 + mRandom.nextDouble() * 0.1;
+            double longitude = wrap(180 + (mRandom.nextDouble() - 0.5) * 0.1);
+            Set<Long> containing = new HashSet<>();
+            Set<Long> nearby = new HashSet<>();
+            double nearest = 5000;
+            for (Geofence geofence : geofences) {
+                double distance = GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude);
+                if (distance <= geofence.getRadius()) {
+                    containing.add(geofence.getId());
+                }
+                if (distance <= 1000) {
+                    nearby.add(geofence.getId());
+                }
+                nearest = Math.min(nearest, Math.abs(distance - geofence.getRadius()));
+            }
+            assertEquals(containing, ids(index.containing(latitude, longitude)));
+            assertEquals(nearby, ids(index.nearby(latitude, longitude, 1000)));
+            assertEquals(nearest, index.distanceToNearestBoundary(latitude, longitude, 5000), 1e-9);
+        }
+    }
+
+    private static double wrap(double longitude) {
+        return longitude > 180 ? longitude - 360 : longitude;
+    }
+
+    private void assertQueriesMatch() {
+        for (int i = 0; i < 200; i++) {
+            double latitude = 31 + mRandom.nextDouble() * 0.2;
+            double longitude = 121 + mRandom.nextDouble() * 0.2;
+
+            Set<Long> expected = new HashSet<>();
+            for (Geofence geofence : mGeofences) {
+                if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude) <= Geofence.DEFAULT_RADIUS) {
+                    expected.add(geofence.getId());
+                }
+            }
+            assertEquals(expected, ids(mIndex.containing(latitude, longitude)));
+
+            expected.clear();
+            for (Geofence geofence : mGeofences) {
+                if (GeoMath.distance(geofence.getLatitude(), geofence.getLongitude(), latitude, longitude) <= 1000) {
+                    expected.add(geofence.getId());
+                }
+            }
+            assertEquals(expected, ids(mIndex.nearby(latitude, longitude, 1000)));
+        }
+    }
+
+    private static Set<Long> ids(List<Geofence> geofences) {
+        Set<Long> ids = new HashSet<>();
+        for (Geofence geofence : geofences) {
+            ids.add(geofence.getId());
+        }
+        return ids;
+    }
+
+    private static Geofence geofence(long id, double latitude, double longitude) {
+        Geofence geofence = new Geofence("", latitude, longitude, 0);
+        geofence.setId(id);
+        return geofence;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.alimjan.geofence.geo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link Geohash}.
+ */
+public class GeohashTest {
+
+    @Test
+    public void encode_knownValues() {
+        assertEquals("ezs42", Geohash.encode(42.6, -5.6, 5));
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        // Shorter precision is a prefix of longer one
+        assertTrue(Geohash.encode(31.2397, 121.4998, Geohash.PRECISION).startsWith(Geohash.encode(31.2397, 121.4998, 4)));
+
+        double[] bounds = Geohash.bounds("ezs42");
+        assertArrayEquals(new double[]{42.583, -5.625, 42.627, -5.581}, bounds, 1e-3);
+    }
+
+    @Test
+    public void withNeighbours_surroundsCell() {
+        assertEquals(new HashSet<>(Arrays.asList("ezefx", "ezs48", "ezs49", "ezefr", "ezs42", "ezs43", "ezefp", "ezs40", "ezs41")),
+                new HashSet<>(Geohash.withNeighbours("ezs42")));
+
+        // Longitude wraps around the antimeridian
+        List<String> antimeridian = Geohash.withNeighbours(Geohash.encode(0.01, 179.99, 4));
+        assertEquals(9, antimeridian.size());
+        assertTrue(antimeridian.contains(Geohash.encode(0.01, -179.99, 4)));
+
+        // Cells beyond the pole are left out
+        assertEquals(6, Geohash.withNeighbours(Geohash.encode(89.99, 0.01, 3)).size());
+    }
+
+    @Test
+    public void cover_acrossAntimeridian() {
+        List<String> cells = Geohash.cover(-1, 179, 1, -179, 32);
+        assertTrue(cells.size() <= 32);
+        assertCovered(cells, 0, 179.5);
+        assertCovered(cells, 0, -179.5);
+        assertCovered(cells, 0.9, 179.99);
+        assertCovered(cells, -0.9, -179.01);
+    }
+
+    private static void assertCovered(List<String> cells, double latitude, double longitude) {
+        for (String cell : cells) {
+            if (Geohash.encode(latitude, longitude, cell.length()).equals(cell)) {
+                return;
+            }
+        }
+        throw new AssertionError(latitude + ", " + longitude + " not in " + cells);
+    }
+}
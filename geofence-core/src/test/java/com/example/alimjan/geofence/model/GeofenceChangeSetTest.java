@@ -0,0 +1,48 @@
+package com.example.alimjan.geofence.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link GeofenceChangeSet}.
+ */
+public class GeofenceChangeSetTest {
+
+    @Test
+    public void diff_addedUpdatedRemoved() {
+        Map<Long, Geofence> previous = new HashMap<>();
+        previous.put(1L, geofence(1, false));
+        previous.put(2L, geofence(2, false));
+        previous.put(3L, geofence(3, false));
+
+        List<Geofence> current = new ArrayList<>();
+        current.add(geofence(1, false));
+        current.add(geofence(2, true));
+        current.add(geofence(4, false));
+        GeofenceChangeSet changes = GeofenceChangeSet.diff(previous, current);
+
+        assertEquals(1, changes.getAdded().size());
+        assertEquals(4, changes.getAdded().get(0).getId());
+        assertEquals(1, changes.getUpdated().size());
+        assertEquals(2, changes.getUpdated().get(0).getId());
+        assertEquals(1, changes.getRemoved().size());
+        assertEquals(3, changes.getRemoved().get(0).getId());
+
+        changes.applyTo(previous);
+        assertTrue(GeofenceChangeSet.diff(previous, current).isEmpty());
+    }
+
+    private static Geofence geofence(long id, boolean triggered) {
+        Geofence geofence = new Geofence("Place " + id, id, id, 0);
+        geofence.setId(id);
+        geofence.setTriggered(triggered);
+        return geofence;
+    }
+}